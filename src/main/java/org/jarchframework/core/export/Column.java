@@ -0,0 +1,77 @@
+package org.jarchframework.core.export;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jarchframework.core.util.PropertyAccessor;
+
+/**
+ * A column of a delimited export compiled for a class, either a property path
+ * or an expression template like {@code "[name] ([group.name])"}
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class Column {
+
+	private static final Pattern PROPERTY = Pattern.compile("\\[.*?]");
+
+	/**
+	 * Literals preceding the properties of a template, null for a path
+	 */
+	private final String[] literals;
+	private final PropertyAccessor[] accessors;
+
+	private Column(String[] literals, PropertyAccessor[] accessors) {
+		this.literals = literals;
+		this.accessors = accessors;
+	}
+
+	/**
+	 * @param type
+	 * @param definition
+	 *            a property path, or a template having properties in brackets
+	 * @return the compiled column
+	 */
+	static Column of(Class<?> type, String definition) {
+		if (definition.indexOf('[') < 0) {
+			return new Column(null, new PropertyAccessor[] { PropertyAccessor.of(type, definition) });
+		}
+		// text after the last property is left out as by UtilsForReflection.getValueByExpression
+		List<String> literals = new ArrayList<>();
+		List<PropertyAccessor> accessors = new ArrayList<>();
+		Matcher matcher = PROPERTY.matcher(definition);
+		int end = 0;
+		while (matcher.find()) {
+			literals.add(definition.substring(end, matcher.start()));
+			accessors.add(PropertyAccessor.of(type, definition.substring(matcher.start() + 1, matcher.end() - 1)));
+			end = matcher.end();
+		}
+		return new Column(literals.toArray(new String[literals.size()]),
+				accessors.toArray(new PropertyAccessor[accessors.size()]));
+	}
+
+	/**
+	 * @param row
+	 * @param builder
+	 *            reused to render a template
+	 * @param nullValue
+	 *            rendered for the null properties of a template
+	 * @return value of the path, or the rendered template
+	 */
+	Object value(Object row, StringBuilder builder, String nullValue) {
+		if (literals == null) {
+			return accessors[0].get(row);
+		}
+		builder.setLength(0);
+		for (int i = 0; i < accessors.length; i++) {
+			Object value = accessors[i].get(row);
+			builder.append(literals[i]).append(value == null ? nullValue : value.toString());
+		}
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,333 @@
+package org.jarchframework.core.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Exports objects as CSV or TSV rows in UTF-8 to a
+ * {@link WritableByteChannel}, typically a {@link FileChannel}. Columns are
+ * property paths or expression templates like {@code "[name] ([group.name])"},
+ * they are compiled once per class of the rows. Values are encoded into a
+ * reused byte buffer which is written when it is full, so no string is built
+ * per row.
+ * <p>
+ * In {@link #parallel(int) parallel} mode rows are encoded in chunks
+ * concurrently and the chunks are written in the order of the rows.
+ * <p>
+ * CSV values are quoted as in RFC 4180 when needed. TSV values can not hold
+ * tabs and line breaks, these and backslashes are escaped as {@code \t},
+ * {@code \n}, {@code \r} and {@code \\}.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * DelimitedExporter.csv("id", "name", "[group.code] - [group.name]").header("Id", "Name", "Group").export(users, path);
+ * </code>
+ * <p>
+ * An exporter is not thread safe while it is configured, but once configured
+ * it can export any number of times concurrently.
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class DelimitedExporter {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	public enum Format {
+		CSV(','), TSV('\t');
+
+		private final char delimiter;
+
+		Format(char delimiter) {
+			this.delimiter = delimiter;
+		}
+
+		public char getDelimiter() {
+			return delimiter;
+		}
+	}
+
+	private final Format format;
+	private final String[] columns;
+	private final ConcurrentMap<Class<?>, Column[]> compiled = new ConcurrentHashMap<>();
+
+	private String[] header;
+	private String nullValue = "";
+	private String lineSeparator = "\n";
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private int chunkSize;
+	private Executor executor;
+
+	private DelimitedExporter(Format format, String[] columns) {
+		if (format == null) {
+			throw new IllegalArgumentException("format should not be null");
+		}
+		if (columns.length == 0) {
+			throw new IllegalArgumentException("at least one column should be given");
+		}
+		for (String column : columns) {
+			if (column == null || column.trim().length() == 0) {
+				throw new IllegalArgumentException("column should not be empty");
+			}
+		}
+		this.format = format;
+		this.columns = columns.clone();
+	}
+
+	/**
+	 * @param columns
+	 *            property paths or expression templates
+	 * @return a CSV exporter without a header
+	 */
+	public static DelimitedExporter csv(String... columns) {
+		return new DelimitedExporter(Format.CSV, columns);
+	}
+
+	/**
+	 * @param columns
+	 *            property paths or expression templates
+	 * @return a TSV exporter without a header
+	 */
+	public static DelimitedExporter tsv(String... columns) {
+		return new DelimitedExporter(Format.TSV, columns);
+	}
+
+	public static DelimitedExporter of(Format format, String... columns) {
+		return new DelimitedExporter(format, columns);
+	}
+
+	/**
+	 * Writes a header row of given names, or of the column definitions if no
+	 * name is given
+	 * 
+	 * @param names
+	 * @return this exporter
+	 */
+	public DelimitedExporter header(String... names) {
+		if (names.length != 0 && names.length != columns.length) {
+			throw new IllegalArgumentException(
+					String.format("%d header names given for %d columns", names.length, columns.length));
+		}
+		this.header = names.length == 0 ? columns.clone() : names.clone();
+		return this;
+	}
+
+	/**
+	 * @param nullValue
+	 *            written for null values, empty by default
+	 * @return this exporter
+	 */
+	public DelimitedExporter nullValue(String nullValue) {
+		if (nullValue == null) {
+			throw new IllegalArgumentException("nullValue should not be null");
+		}
+		this.nullValue = nullValue;
+		return this;
+	}
+
+	/**
+	 * @param lineSeparator
+	 *            an ASCII line separator, {@code \n} by default
+	 * @return this exporter
+	 */
+	public DelimitedExporter lineSeparator(String lineSeparator) {
+		if (lineSeparator == null || lineSeparator.isEmpty()) {
+			throw new IllegalArgumentException("lineSeparator should not be empty");
+		}
+		this.lineSeparator = lineSeparator;
+		return this;
+	}
+
+	/**
+	 * @param bufferSize
+	 *            bytes to encode before writing to the channel
+	 * @return this exporter
+	 */
+	public DelimitedExporter bufferSize(int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize should be positive: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * Encodes chunks of given size concurrently on the common fork join pool
+	 * 
+	 * @param chunkSize
+	 *            rows per chunk
+	 * @return this exporter
+	 */
+	public DelimitedExporter parallel(int chunkSize) {
+		return parallel(chunkSize, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Encodes chunks of given size concurrently on given executor
+	 * 
+	 * @param chunkSize
+	 *            rows per chunk
+	 * @param executor
+	 * @return this exporter
+	 */
+	public DelimitedExporter parallel(int chunkSize, Executor executor) {
+		if (chunkSize < 1 || executor == null) {
+			throw new IllegalArgumentException("a positive chunk size and an executor should be given");
+		}
+		this.chunkSize = chunkSize;
+		this.executor = executor;
+		return this;
+	}
+
+	/**
+	 * Writes given rows to given file, which is created or truncated
+	 * 
+	 * @param rows
+	 * @param file
+	 * @return number of rows written, excluding the header
+	 * @throws IOException
+	 */
+	public long export(Iterable<?> rows, Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			return export(rows, channel);
+		}
+	}
+
+	/**
+	 * Writes given rows to given channel, which is not closed. A null row is
+	 * written as a row of null values.
+	 * 
+	 * @param rows
+	 * @param channel
+	 * @return number of rows written, excluding the header
+	 * @throws IOException
+	 */
+	public long export(Iterable<?> rows, WritableByteChannel channel) throws IOException {
+		RowEncoder encoder = new RowEncoder(this, bufferSize, channel);
+		if (header != null) {
+			encoder.header(header);
+		}
+		long count;
+		if (chunkSize > 0) {
+			encoder.flush();
+			count = exportParallel(rows.iterator(), channel);
+		} else {
+			count = 0;
+			for (Object row : rows) {
+				encoder.row(row);
+				count++;
+			}
+			encoder.flush();
+		}
+		return count;
+	}
+
+	/**
+	 * Encodes chunks ahead up to twice the parallelism while the encoded ones
+	 * are written in order
+	 */
+	private long exportParallel(Iterator<?> rows, WritableByteChannel channel) throws IOException {
+		int window = Math.max(2, 2 * Runtime.getRuntime().availableProcessors());
+		Deque<CompletableFuture<ByteBuffer>> pending = new ArrayDeque<>();
+		long count = 0;
+		try {
+			while (rows.hasNext() || !pending.isEmpty()) {
+				while (rows.hasNext() && pending.size() < window) {
+					List<Object> chunk = new ArrayList<>(chunkSize);
+					while (rows.hasNext() && chunk.size() < chunkSize) {
+						chunk.add(rows.next());
+					}
+					count += chunk.size();
+					pending.add(CompletableFuture.supplyAsync(() -> encode(chunk), executor));
+				}
+				ByteBuffer encoded = pending.removeFirst().join();
+				while (encoded.hasRemaining()) {
+					channel.write(encoded);
+				}
+			}
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw cause instanceof RuntimeException ? (RuntimeException) cause : e;
+		} finally {
+			for (CompletableFuture<ByteBuffer> future : pending) {
+				future.cancel(false);
+			}
+		}
+		return count;
+	}
+
+	private ByteBuffer encode(List<Object> chunk) {
+		RowEncoder encoder = new RowEncoder(this, bufferSize, null);
+		try {
+			for (Object row : chunk) {
+				encoder.row(row);
+			}
+		} catch (IOException e) {
+			// nothing is written without a channel
+			throw new UncheckedIOException(e);
+		}
+		return encoder.drain();
+	}
+
+	/**
+	 * @param type
+	 * @return columns compiled for given class
+	 */
+	Column[] getColumns(Class<?> type) {
+		Column[] result = compiled.get(type);
+		if (result == null) {
+			result = compiled.computeIfAbsent(type, key -> {
+				Column[] created = new Column[columns.length];
+				for (int i = 0; i < columns.length; i++) {
+					created[i] = Column.of(key, columns[i]);
+				}
+				return created;
+			});
+		}
+		return result;
+	}
+
+	Format getFormat() {
+		return format;
+	}
+
+	String getNullValue() {
+		return nullValue;
+	}
+
+	String getLineSeparator() {
+		return lineSeparator;
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	@Override
+	public String toString() {
+		return "DelimitedExporter[" + format + Arrays.toString(columns) + "]";
+	}
+
+}
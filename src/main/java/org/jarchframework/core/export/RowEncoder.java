@@ -0,0 +1,233 @@
+package org.jarchframework.core.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Encodes delimited rows in UTF-8 into a byte buffer. The buffer is written to
+ * the channel whenever it is full, or grows when there is no channel, which is
+ * the case while a chunk is encoded in parallel.
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class RowEncoder {
+
+	private final DelimitedExporter exporter;
+	private final WritableByteChannel channel;
+	private final StringBuilder expression = new StringBuilder();
+	private ByteBuffer buffer;
+
+	/**
+	 * Columns of the last encoded class
+	 */
+	private Class<?> lastType;
+	private Column[] lastColumns;
+
+	RowEncoder(DelimitedExporter exporter, int capacity, WritableByteChannel channel) {
+		this.exporter = exporter;
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocate(capacity);
+	}
+
+	void header(String[] names) throws IOException {
+		for (int i = 0; i < names.length; i++) {
+			if (i > 0) {
+				delimiter();
+			}
+			cell(names[i]);
+		}
+		line();
+	}
+
+	void row(Object row) throws IOException {
+		if (row == null) {
+			for (int i = 0; i < exporter.getColumnCount(); i++) {
+				if (i > 0) {
+					delimiter();
+				}
+				cell(exporter.getNullValue());
+			}
+			line();
+			return;
+		}
+		Class<?> type = row.getClass();
+		if (type != lastType) {
+			lastColumns = exporter.getColumns(type);
+			lastType = type;
+		}
+		Column[] columns = lastColumns;
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				delimiter();
+			}
+			Object value = columns[i].value(row, expression, exporter.getNullValue());
+			if (value == null) {
+				cell(exporter.getNullValue());
+			} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+					|| value instanceof Byte) {
+				number(((Number) value).longValue());
+			} else {
+				cell(value.toString());
+			}
+		}
+		line();
+	}
+
+	private void delimiter() throws IOException {
+		ensure(1);
+		buffer.put((byte) exporter.getFormat().getDelimiter());
+	}
+
+	private void line() throws IOException {
+		ascii(exporter.getLineSeparator());
+	}
+
+	private void number(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			ascii(Long.toString(value));
+			return;
+		}
+		ensure(20);
+		if (value < 0) {
+			buffer.put((byte) '-');
+			value = -value;
+		}
+		byte[] array = buffer.array();
+		int start = buffer.arrayOffset() + buffer.position();
+		int end = start;
+		do {
+			array[end++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		for (int i = start, j = end - 1; i < j; i++, j--) {
+			byte digit = array[i];
+			array[i] = array[j];
+			array[j] = digit;
+		}
+		buffer.position(buffer.position() + end - start);
+	}
+
+	private void ascii(String value) throws IOException {
+		ensure(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			buffer.put((byte) value.charAt(i));
+		}
+	}
+
+	private void cell(String value) throws IOException {
+		// escaping at most doubles the characters, a character takes at most 3 bytes
+		ensure(6 * value.length() + 2);
+		DelimitedExporter.Format format = exporter.getFormat();
+		if (format == DelimitedExporter.Format.CSV) {
+			boolean quoted = needsQuotes(value, format.getDelimiter());
+			if (quoted) {
+				buffer.put((byte) '"');
+			}
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					buffer.put((byte) '"');
+				}
+				i = put(value, i, c);
+			}
+			if (quoted) {
+				buffer.put((byte) '"');
+			}
+		} else {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '\t':
+					buffer.put((byte) '\\').put((byte) 't');
+					break;
+				case '\n':
+					buffer.put((byte) '\\').put((byte) 'n');
+					break;
+				case '\r':
+					buffer.put((byte) '\\').put((byte) 'r');
+					break;
+				case '\\':
+					buffer.put((byte) '\\').put((byte) '\\');
+					break;
+				default:
+					i = put(value, i, c);
+				}
+			}
+		}
+	}
+
+	private static boolean needsQuotes(String value, char delimiter) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Puts given character in UTF-8
+	 * 
+	 * @return index of the last character read, which is the next one for a
+	 *         surrogate pair
+	 */
+	private int put(String value, int index, char c) {
+		if (c < 0x80) {
+			buffer.put((byte) c);
+		} else if (c < 0x800) {
+			buffer.put((byte) (0xc0 | (c >> 6))).put((byte) (0x80 | (c & 0x3f)));
+		} else if (Character.isHighSurrogate(c) && index + 1 < value.length()
+				&& Character.isLowSurrogate(value.charAt(index + 1))) {
+			int codePoint = Character.toCodePoint(c, value.charAt(index + 1));
+			buffer.put((byte) (0xf0 | (codePoint >> 18))).put((byte) (0x80 | ((codePoint >> 12) & 0x3f)))
+					.put((byte) (0x80 | ((codePoint >> 6) & 0x3f))).put((byte) (0x80 | (codePoint & 0x3f)));
+			return index + 1;
+		} else if (Character.isSurrogate(c)) {
+			buffer.put((byte) '?');
+		} else {
+			buffer.put((byte) (0xe0 | (c >> 12))).put((byte) (0x80 | ((c >> 6) & 0x3f)))
+					.put((byte) (0x80 | (c & 0x3f)));
+		}
+		return index;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return;
+		}
+		if (channel != null) {
+			flush();
+		}
+		if (buffer.remaining() < bytes) {
+			int capacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+			ByteBuffer grown = ByteBuffer.allocate(capacity);
+			buffer.flip();
+			grown.put(buffer);
+			buffer = grown;
+		}
+	}
+
+	/**
+	 * Writes the encoded bytes to the channel
+	 */
+	void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * @return the encoded bytes, ready to be written
+	 */
+	ByteBuffer drain() {
+		buffer.flip();
+		return buffer;
+	}
+
+}
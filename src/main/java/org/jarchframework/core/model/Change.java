@@ -0,0 +1,67 @@
+package org.jarchframework.core.model;
+
+import java.io.Serializable;
+
+/**
+ * A single property change, see
+ * {@link org.jarchframework.core.util.UtilsForObject#diff(Object, Object, String...)}
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class Change implements Serializable {
+
+	public enum Kind {
+		/**
+		 * value of the property is changed
+		 */
+		MODIFIED,
+		/**
+		 * an element is added to a collection
+		 */
+		ADDED,
+		/**
+		 * an element is removed from a collection
+		 */
+		REMOVED
+	}
+
+	private final Kind kind;
+	private final String path;
+	private final Object oldValue;
+	private final Object newValue;
+
+	public Change(Kind kind, String path, Object oldValue, Object newValue) {
+		this.kind = kind;
+		this.path = path;
+		this.oldValue = oldValue;
+		this.newValue = newValue;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * @return path of the changed property, elements of collections are
+	 *         addressed by their identity values like {@code lines[3].amount}
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	public Object getOldValue() {
+		return oldValue;
+	}
+
+	public Object getNewValue() {
+		return newValue;
+	}
+
+	@Override
+	public String toString() {
+		return kind + " " + path + ": " + oldValue + " -> " + newValue;
+	}
+
+}
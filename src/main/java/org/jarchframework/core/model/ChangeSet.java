@@ -0,0 +1,58 @@
+package org.jarchframework.core.model;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Immutable list of property changes between two states of an object
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class ChangeSet implements Iterable<Change>, Serializable {
+
+	private final List<Change> changes;
+
+	public ChangeSet(List<Change> changes) {
+		this.changes = Collections.unmodifiableList(changes);
+	}
+
+	public List<Change> getChanges() {
+		return changes;
+	}
+
+	/**
+	 * @param path
+	 * @return change of given path or null if the path is not changed
+	 */
+	public Change getChange(String path) {
+		for (Change change : changes) {
+			if (change.getPath().equals(path)) {
+				return change;
+			}
+		}
+		return null;
+	}
+
+	public boolean isEmpty() {
+		return changes.isEmpty();
+	}
+
+	public int size() {
+		return changes.size();
+	}
+
+	@Override
+	public Iterator<Change> iterator() {
+		return changes.iterator();
+	}
+
+	@Override
+	public String toString() {
+		return changes.toString();
+	}
+
+}
@@ -0,0 +1,67 @@
+package org.jarchframework.core.model;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jarchframework.core.util.UtilsForObject;
+
+/**
+ * Flat copy of the {@link Identity} and {@link ToString} property values of an
+ * object, used to detect changes without copying the whole object. Values are
+ * kept by reference.
+ * 
+ * @see UtilsForObject#snapshot(Object)
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class Snapshot {
+
+	private final Class<?> type;
+	private final List<String> paths;
+	private final Object[] values;
+
+	/**
+	 * @param type
+	 * @param paths
+	 *            shared paths of the type
+	 * @param values
+	 *            values in the order of paths
+	 */
+	public Snapshot(Class<?> type, List<String> paths, Object[] values) {
+		this.type = type;
+		this.paths = paths;
+		this.values = values;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public List<String> getPaths() {
+		return paths;
+	}
+
+	public List<Object> getValues() {
+		return Collections.unmodifiableList(Arrays.asList(values));
+	}
+
+	public Object getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * @param current
+	 * @return true if any snapshot property of given object has changed
+	 */
+	public boolean isDirty(Object current) {
+		return !UtilsForObject.diff(this, current).isEmpty();
+	}
+
+	@Override
+	public String toString() {
+		return "Snapshot[" + type.getName() + Arrays.toString(values) + "]";
+	}
+
+}
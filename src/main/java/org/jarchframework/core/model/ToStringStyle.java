@@ -1,13 +1,16 @@
 package org.jarchframework.core.model;
 
 /**
+ * Styles of {@link ToString}, mapped to commons-lang styles. {@link #JSON}
+ * renders the properties as a JSON object, see
+ * {@link org.jarchframework.core.util.JsonRenderer}.
  * 
  * @author Yavuz S.Tas
  * @since 1.0
  * @version 1.0
  */
 public enum ToStringStyle {
-	DEFAULT, MULTILINE, NO_FIELD_NAMES, SHORT_PREFIX, SIMPLE;
+	DEFAULT, MULTILINE, NO_FIELD_NAMES, SHORT_PREFIX, SIMPLE, JSON;
 
 	public org.apache.commons.lang3.builder.ToStringStyle getToStringStyle() {
 		switch (this) {
@@ -21,6 +24,8 @@ public enum ToStringStyle {
 			return org.apache.commons.lang3.builder.ToStringStyle.SHORT_PREFIX_STYLE;
 		case SIMPLE:
 			return org.apache.commons.lang3.builder.ToStringStyle.SIMPLE_STYLE;
+		case JSON:
+			return org.apache.commons.lang3.builder.ToStringStyle.JSON_STYLE;
 		default:
 			throw new IllegalArgumentException("Invalid style type :" + this);
 		}
@@ -0,0 +1,434 @@
+package org.jarchframework.core.offheap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.jarchframework.core.util.UtilsForObject;
+import org.jarchframework.core.util.UtilsForReflection;
+
+/**
+ * Compact fixed width binary layout of a class. Every record starts with the
+ * 64-bit hash of its identity properties, followed by the identity properties
+ * and then the remaining properties. Every property has a fixed slot so that
+ * a single property can be decoded without touching the others.
+ * <p>
+ * Supported property types are primitives, their wrappers, {@link String},
+ * enums and {@link Date}. Non primitive slots start with a presence byte,
+ * strings are stored as UTF-8 with a length prefix and a fixed maximum
+ * length.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class BinaryLayout {
+
+	static final int HASH_SIZE = 8;
+
+	private final Class<?> type;
+	private final Property[] properties;
+	private final Map<String, Property> propertiesByName;
+	private final int identityCount;
+	private final int identityWidth;
+	private final int recordSize;
+	private final long fingerprint;
+
+	private BinaryLayout(Class<?> type, List<Property> properties, int identityCount, int maxStringBytes) {
+		this.type = type;
+		this.properties = properties.toArray(new Property[properties.size()]);
+		this.identityCount = identityCount;
+		this.propertiesByName = new HashMap<>();
+
+		StringBuilder signature = new StringBuilder(type.getName()).append('|').append(maxStringBytes);
+		int offset = HASH_SIZE;
+		int identityEnd = HASH_SIZE;
+		for (int i = 0; i < this.properties.length; i++) {
+			Property property = this.properties[i];
+			property.offset = offset;
+			offset += property.width;
+			if (i < identityCount) {
+				identityEnd = offset;
+			}
+			propertiesByName.put(property.name, property);
+			signature.append('|').append(property.name).append(':').append(property.type.getName()).append(':')
+					.append(property.width);
+			if (property.type.isEnum()) {
+				// enums are stored by ordinal, so reordered or renamed constants change the layout
+				signature.append(':');
+				for (Object constant : property.type.getEnumConstants()) {
+					signature.append(((Enum<?>) constant).name()).append(',');
+				}
+			}
+		}
+		this.identityWidth = identityEnd - HASH_SIZE;
+		this.recordSize = offset;
+		this.fingerprint = Hashing.hash64(signature);
+	}
+
+	/**
+	 * Builds the layout of given type. If no properties are specified all
+	 * fields having both a getter and a setter are used.
+	 *
+	 * @param type
+	 * @param maxStringBytes
+	 *            maximum UTF-8 length of string properties
+	 * @param propertyNames
+	 *            properties to store, optional
+	 * @return the layout
+	 */
+	static BinaryLayout of(Class<?> type, int maxStringBytes, String... propertyNames) {
+		if (maxStringBytes < 0 || maxStringBytes > Short.MAX_VALUE) {
+			throw new IllegalArgumentException("maxStringBytes should be between 0 and " + Short.MAX_VALUE);
+		}
+
+		Set<String> names = new LinkedHashSet<>();
+		for (String identityKey : UtilsForObject.getIdentityKeys(type)) {
+			if (identityKey.length() > 0) {
+				names.add(identityKey);
+			}
+		}
+		int identityCount = names.size();
+
+		if (propertyNames != null && propertyNames.length > 0) {
+			Collections.addAll(names, propertyNames);
+		} else {
+			names.addAll(getAccessibleFieldNames(type));
+		}
+
+		List<Property> properties = new ArrayList<>();
+		for (String name : names) {
+			if (name.indexOf('.') > -1 || name.indexOf('[') > -1) {
+				throw new IllegalArgumentException(
+						String.format("Nested property %s of Class: %s can not be stored", name, type));
+			}
+			properties.add(new Property(type, name, maxStringBytes));
+		}
+		return new BinaryLayout(type, properties, identityCount, maxStringBytes);
+	}
+
+	private static List<String> getAccessibleFieldNames(Class<?> type) {
+		List<String> names = new ArrayList<>();
+		for (Field field : UtilsForReflection.getAllFields(type)) {
+			int modifiers = field.getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)) {
+				continue;
+			}
+			Method getter = findGetter(type, field.getName());
+			if (getter != null && findSetter(type, field.getName(), getter.getReturnType()) != null) {
+				names.add(field.getName());
+			}
+		}
+		return names;
+	}
+
+	private static Method findGetter(Class<?> type, String property) {
+		return UtilsForReflection.findGetterMethod(type, property);
+	}
+
+	private static Method findSetter(Class<?> type, String property, Class<?> parameterType) {
+		try {
+			return type.getMethod("set" + Character.toUpperCase(property.charAt(0)) + property.substring(1),
+					parameterType);
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	Class<?> getType() {
+		return type;
+	}
+
+	Property[] getProperties() {
+		return properties;
+	}
+
+	Property getProperty(String name) {
+		return propertiesByName.get(name);
+	}
+
+	int getIdentityCount() {
+		return identityCount;
+	}
+
+	/**
+	 * @return byte width of identity slots, which are laid out contiguously
+	 *         right after the hash
+	 */
+	int getIdentityWidth() {
+		return identityWidth;
+	}
+
+	int getRecordSize() {
+		return recordSize;
+	}
+
+	long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Writes all properties of given object into the record at given offset
+	 * and fills in the identity hash
+	 */
+	void write(Object object, ByteBuffer buffer, int offset) {
+		for (Property property : properties) {
+			property.write(buffer, offset + property.offset, property.invokeGetter(object));
+		}
+		buffer.putLong(offset, identityHash(buffer, offset));
+	}
+
+	/**
+	 * Writes given identity values into the record at given offset and fills
+	 * in the identity hash, used to build lookup keys
+	 */
+	void writeIdentity(Object[] identityValues, ByteBuffer buffer, int offset) {
+		if (identityValues.length != identityCount) {
+			throw new IllegalArgumentException(
+					String.format("%d identity values expected for Class: %s", identityCount, type));
+		}
+		for (int i = 0; i < identityCount; i++) {
+			properties[i].write(buffer, offset + properties[i].offset, identityValues[i]);
+		}
+		buffer.putLong(offset, identityHash(buffer, offset));
+	}
+
+	long identityHash(ByteBuffer buffer, int offset) {
+		return Hashing.hash64(buffer, offset + HASH_SIZE, identityWidth);
+	}
+
+	boolean identityEquals(ByteBuffer buffer, int offset, ByteBuffer otherBuffer, int otherOffset) {
+		if (buffer.getLong(offset) != otherBuffer.getLong(otherOffset)) {
+			return false;
+		}
+		int i = HASH_SIZE;
+		int end = HASH_SIZE + identityWidth;
+		for (; i + 8 <= end; i += 8) {
+			if (buffer.getLong(offset + i) != otherBuffer.getLong(otherOffset + i)) {
+				return false;
+			}
+		}
+		for (; i < end; i++) {
+			if (buffer.get(offset + i) != otherBuffer.get(otherOffset + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Creates a new instance of the type and sets all properties decoded from
+	 * the record at given offset
+	 */
+	Object read(ByteBuffer buffer, int offset) {
+		try {
+			Object object = newInstance();
+			for (Property property : properties) {
+				property.setter.invoke(object, property.read(buffer, offset + property.offset));
+			}
+			return object;
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private Object newInstance() throws ReflectiveOperationException {
+		Constructor<?> constructor = type.getDeclaredConstructor();
+		constructor.setAccessible(true);
+		return constructor.newInstance();
+	}
+
+	enum SlotType {
+		BOOLEAN(1), BYTE(1), SHORT(2), CHAR(2), INT(4), LONG(8), FLOAT(4), DOUBLE(8), STRING(2), ENUM(4), DATE(8);
+
+		private final int width;
+
+		SlotType(int width) {
+			this.width = width;
+		}
+
+		static SlotType of(Class<?> type) {
+			Class<?> primitive = type.isPrimitive() ? type : ClassUtils.wrapperToPrimitive(type);
+			if (primitive == boolean.class) {
+				return BOOLEAN;
+			} else if (primitive == byte.class) {
+				return BYTE;
+			} else if (primitive == short.class) {
+				return SHORT;
+			} else if (primitive == char.class) {
+				return CHAR;
+			} else if (primitive == int.class) {
+				return INT;
+			} else if (primitive == long.class) {
+				return LONG;
+			} else if (primitive == float.class) {
+				return FLOAT;
+			} else if (primitive == double.class) {
+				return DOUBLE;
+			} else if (type == String.class) {
+				return STRING;
+			} else if (type.isEnum()) {
+				return ENUM;
+			} else if (type == Date.class) {
+				return DATE;
+			}
+			return null;
+		}
+	}
+
+	static final class Property {
+
+		final String name;
+		final Class<?> type;
+		final SlotType slotType;
+		final boolean nullable;
+		final int maxStringBytes;
+		final int width;
+		final Method getter;
+		final Method setter;
+		int offset;
+
+		Property(Class<?> owner, String name, int maxStringBytes) {
+			this.name = name;
+			this.getter = findGetter(owner, name);
+			if (getter == null) {
+				throw new IllegalArgumentException(String.format("No getter found for %s of Class: %s", name, owner));
+			}
+			this.type = getter.getReturnType();
+			this.setter = findSetter(owner, name, type);
+			if (setter == null) {
+				throw new IllegalArgumentException(String.format("No setter found for %s of Class: %s", name, owner));
+			}
+			this.slotType = SlotType.of(type);
+			if (slotType == null) {
+				throw new IllegalArgumentException(
+						String.format("Unsupported type %s of %s for Class: %s", type.getName(), name, owner));
+			}
+			this.getter.setAccessible(true);
+			this.setter.setAccessible(true);
+			this.nullable = !type.isPrimitive();
+			this.maxStringBytes = maxStringBytes;
+			this.width = (nullable ? 1 : 0) + slotType.width + (slotType == SlotType.STRING ? maxStringBytes : 0);
+		}
+
+		Object invokeGetter(Object object) {
+			try {
+				return getter.invoke(object);
+			} catch (ReflectiveOperationException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void write(ByteBuffer buffer, int offset, Object value) {
+			int position = offset;
+			if (nullable) {
+				if (value == null) {
+					for (int i = 0; i < width; i++) {
+						buffer.put(offset + i, (byte) 0);
+					}
+					return;
+				}
+				buffer.put(position++, (byte) 1);
+			}
+			switch (slotType) {
+			case BOOLEAN:
+				buffer.put(position, (byte) (((Boolean) value).booleanValue() ? 1 : 0));
+				break;
+			case BYTE:
+				buffer.put(position, ((Number) value).byteValue());
+				break;
+			case SHORT:
+				buffer.putShort(position, ((Number) value).shortValue());
+				break;
+			case CHAR:
+				buffer.putChar(position, ((Character) value).charValue());
+				break;
+			case INT:
+				buffer.putInt(position, ((Number) value).intValue());
+				break;
+			case LONG:
+				buffer.putLong(position, ((Number) value).longValue());
+				break;
+			case FLOAT:
+				buffer.putFloat(position, ((Number) value).floatValue());
+				break;
+			case DOUBLE:
+				buffer.putDouble(position, ((Number) value).doubleValue());
+				break;
+			case STRING:
+				byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+				if (bytes.length > maxStringBytes) {
+					throw new IllegalArgumentException(String.format("Value of %s exceeds %d bytes: %s", name,
+							maxStringBytes, value));
+				}
+				buffer.putShort(position, (short) bytes.length);
+				position += 2;
+				for (int i = 0; i < maxStringBytes; i++) {
+					buffer.put(position + i, i < bytes.length ? bytes[i] : 0);
+				}
+				break;
+			case ENUM:
+				buffer.putInt(position, ((Enum<?>) value).ordinal());
+				break;
+			case DATE:
+				buffer.putLong(position, ((Date) value).getTime());
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid slot type :" + slotType);
+			}
+		}
+
+		Object read(ByteBuffer buffer, int offset) {
+			int position = offset;
+			if (nullable) {
+				if (buffer.get(position++) == 0) {
+					return null;
+				}
+			}
+			switch (slotType) {
+			case BOOLEAN:
+				return buffer.get(position) != 0;
+			case BYTE:
+				return buffer.get(position);
+			case SHORT:
+				return buffer.getShort(position);
+			case CHAR:
+				return buffer.getChar(position);
+			case INT:
+				return buffer.getInt(position);
+			case LONG:
+				return buffer.getLong(position);
+			case FLOAT:
+				return buffer.getFloat(position);
+			case DOUBLE:
+				return buffer.getDouble(position);
+			case STRING:
+				byte[] bytes = new byte[buffer.getShort(position)];
+				position += 2;
+				for (int i = 0; i < bytes.length; i++) {
+					bytes[i] = buffer.get(position + i);
+				}
+				return new String(bytes, StandardCharsets.UTF_8);
+			case ENUM:
+				return type.getEnumConstants()[buffer.getInt(position)];
+			case DATE:
+				return new Date(buffer.getLong(position));
+			default:
+				throw new IllegalArgumentException("Invalid slot type :" + slotType);
+			}
+		}
+	}
+
+}
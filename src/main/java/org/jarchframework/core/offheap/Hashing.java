@@ -0,0 +1,61 @@
+package org.jarchframework.core.offheap;
+
+import java.nio.ByteBuffer;
+
+import org.jarchframework.core.util.Hash64;
+
+/**
+ * 64-bit hashing of binary encoded keys, fed word by word to
+ * {@link Hash64#MURMUR3}
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class Hashing {
+
+	private static final Hash64 MURMUR3 = Hash64.MURMUR3;
+
+	private Hashing() {
+	}
+
+	/**
+	 * Hashes {@code length} bytes of the given buffer starting from the
+	 * absolute {@code offset}. Buffer position and limit are not touched.
+	 *
+	 * @param buffer
+	 * @param offset
+	 * @param length
+	 * @return 64-bit hash of the given range
+	 */
+	static long hash64(ByteBuffer buffer, int offset, int length) {
+		long h = MURMUR3.start();
+		int i = 0;
+		for (; i + 8 <= length; i += 8) {
+			h = MURMUR3.mix(h, buffer.getLong(offset + i));
+		}
+		if (i < length) {
+			long k = 0;
+			for (int shift = 0; i < length; i++, shift += 8) {
+				k |= (buffer.get(offset + i) & 0xffL) << shift;
+			}
+			h = MURMUR3.mix(h, k);
+		}
+		return MURMUR3.finish(h, length);
+	}
+
+	/**
+	 * Hashes a string by its characters, used for layout fingerprints
+	 *
+	 * @param value
+	 * @return 64-bit hash of the given string
+	 */
+	static long hash64(CharSequence value) {
+		long h = MURMUR3.start();
+		for (int i = 0; i < value.length(); i++) {
+			h = MURMUR3.mix(h, value.charAt(i));
+		}
+		return MURMUR3.finish(h, value.length());
+	}
+
+}
@@ -0,0 +1,480 @@
+package org.jarchframework.core.offheap;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.util.PropertyAccessor;
+import org.jarchframework.core.util.UtilsForObject;
+
+/**
+ * Set of {@link Identity} keys kept in direct memory, for deduplicating more
+ * objects than the heap can hold. The identity values of an object are encoded
+ * into a binary key and only the key is stored, nothing is kept on the heap
+ * per element.
+ * <p>
+ * Keys are stored in an open addressing table with linear probing, every slot
+ * holding the 64-bit hash of its key. When all identity properties are of a
+ * fixed width type, such as primitives, their wrappers, enums or
+ * {@link Date}, the key is stored in the slot itself. Otherwise the slot
+ * points to the key in an append only key area.
+ * <p>
+ * Identity properties with primitive getters are read without boxing, so
+ * adding or looking up objects keyed by them allocates nothing on the heap.
+ * Values of other types are read as objects, and the ones which are not
+ * strings, numbers, enums or dates are encoded by their {@code toString()}.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * try (OffHeapIdentitySet&lt;User&gt; seen = OffHeapIdentitySet.create(User.class, 100000000)) {<br>
+ * &nbsp;&nbsp;for (User user : users) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if (seen.addIfAbsent(user)) { ... }<br>
+ * &nbsp;&nbsp;}<br>
+ * }
+ * </code>
+ * <p>
+ * All operations are synchronized. The direct memory is released when the set
+ * is closed and garbage collected.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class OffHeapIdentitySet<T extends BaseObject> implements Closeable {
+
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int KEY_AREA_CHUNK_SIZE = 1 << 24;
+	private static final int HASH_SIZE = 8;
+	private static final int POINTER_SIZE = 8;
+	private static final int LENGTH_SIZE = 4;
+	private static final double LOAD_FACTOR = 0.7;
+
+	private static final byte TAG_NULL = 0;
+	private static final byte TAG_BOOLEAN = 1;
+	private static final byte TAG_INTEGRAL = 2;
+	private static final byte TAG_DECIMAL = 3;
+	private static final byte TAG_CHAR = 4;
+	private static final byte TAG_STRING = 5;
+	private static final byte TAG_ENUM = 6;
+	private static final byte TAG_DATE = 7;
+
+	private final Class<T> type;
+	private final PropertyAccessor[] accessors;
+	/**
+	 * tag of each accessor if it reads a primitive value, -1 otherwise
+	 */
+	private final byte[] primitiveTags;
+	/**
+	 * key width if all identity properties are of fixed width types, -1
+	 * otherwise
+	 */
+	private final int fixedKeyWidth;
+	private final int slotSize;
+
+	private ByteBuffer scratch = ByteBuffer.allocate(256);
+	private ByteBuffer[] segments;
+	private int slotsPerSegment;
+	private long capacity;
+	private long size;
+
+	private final List<ByteBuffer> keyArea = new ArrayList<>();
+	private int keyAreaOffset;
+	private long keyBytes;
+	private boolean closed;
+
+	private OffHeapIdentitySet(Class<T> type, long expectedSize) {
+		String[] identityKeys = UtilsForObject.getIdentityKeys(type);
+		List<PropertyAccessor> resolved = new ArrayList<>();
+		int width = 0;
+		for (String identityKey : identityKeys) {
+			if (identityKey.length() == 0) {
+				continue;
+			}
+			PropertyAccessor accessor = PropertyAccessor.of(type, identityKey);
+			resolved.add(accessor);
+			int valueWidth = fixedWidthOf(accessor.getValueType());
+			width = width < 0 || valueWidth < 0 ? -1 : width + valueWidth;
+		}
+		if (resolved.isEmpty()) {
+			throw new IllegalArgumentException("No identity properties defined for Class: " + type);
+		}
+		this.type = type;
+		this.accessors = resolved.toArray(new PropertyAccessor[resolved.size()]);
+		this.primitiveTags = new byte[accessors.length];
+		for (int i = 0; i < accessors.length; i++) {
+			primitiveTags[i] = primitiveTagOf(accessors[i].getPrimitiveType());
+		}
+		this.fixedKeyWidth = width;
+		int slotWidth = HASH_SIZE + (width < 0 ? POINTER_SIZE : width);
+		this.slotSize = (slotWidth + 7) & ~7;
+		allocateTable(tableCapacityFor(Math.max(16, expectedSize)));
+	}
+
+	/**
+	 * @param type
+	 *            a class with {@link Identity} properties
+	 * @param expectedSize
+	 *            number of keys to size the table for, the table grows beyond
+	 * @return an empty set
+	 */
+	public static <T extends BaseObject> OffHeapIdentitySet<T> create(Class<T> type, long expectedSize) {
+		return new OffHeapIdentitySet<>(type, expectedSize);
+	}
+
+	/**
+	 * @return width of encoded values of given type, -1 if it is not fixed
+	 */
+	private static int fixedWidthOf(Class<?> valueType) {
+		if (valueType == null) {
+			return -1;
+		} else if (valueType == boolean.class || valueType == Boolean.class) {
+			return 2;
+		} else if (valueType == char.class || valueType == Character.class) {
+			return 3;
+		} else if (valueType.isEnum()) {
+			return 5;
+		} else if (valueType.isPrimitive() || valueType == Long.class || valueType == Integer.class
+				|| valueType == Short.class || valueType == Byte.class || valueType == Double.class
+				|| valueType == Float.class || valueType == Date.class) {
+			return 9;
+		}
+		return -1;
+	}
+
+	private static byte primitiveTagOf(Class<?> primitiveType) {
+		if (primitiveType == null) {
+			return -1;
+		} else if (primitiveType == boolean.class) {
+			return TAG_BOOLEAN;
+		} else if (primitiveType == char.class) {
+			return TAG_CHAR;
+		} else if (primitiveType == double.class || primitiveType == float.class) {
+			return TAG_DECIMAL;
+		}
+		return TAG_INTEGRAL;
+	}
+
+	private static long tableCapacityFor(long keys) {
+		long required = (long) Math.ceil(keys / LOAD_FACTOR);
+		return Long.highestOneBit(required - 1) << 1;
+	}
+
+	private void allocateTable(long newCapacity) {
+		int perSegment = (int) Math.min(newCapacity, Integer.highestOneBit(SEGMENT_SIZE / slotSize));
+		ByteBuffer[] newSegments = new ByteBuffer[(int) (newCapacity / perSegment)];
+		for (int i = 0; i < newSegments.length; i++) {
+			newSegments[i] = ByteBuffer.allocateDirect(perSegment * slotSize);
+		}
+		this.segments = newSegments;
+		this.slotsPerSegment = perSegment;
+		this.capacity = newCapacity;
+	}
+
+	/**
+	 * Adds the identity key of given object unless it exists
+	 *
+	 * @param obj
+	 * @return true if the key is added, false if it already exists
+	 */
+	public synchronized boolean addIfAbsent(T obj) {
+		checkOpen();
+		int length = encode(obj);
+		long hash = hashOf(length);
+		long slot = find(hash, length);
+		if (slot >= 0) {
+			return false;
+		}
+		if (size + 1 > capacity * LOAD_FACTOR) {
+			grow();
+			slot = find(hash, length);
+		}
+		insert(-slot - 1, hash, length);
+		size++;
+		return true;
+	}
+
+	/**
+	 * @param obj
+	 * @return true if the identity key of given object exists
+	 */
+	public synchronized boolean contains(T obj) {
+		checkOpen();
+		int length = encode(obj);
+		return find(hashOf(length), length) >= 0;
+	}
+
+	/**
+	 * Encodes the identity values of given object into the scratch buffer
+	 *
+	 * @return length of the key
+	 */
+	private int encode(T obj) {
+		if (obj == null) {
+			throw new IllegalArgumentException("object should not be null");
+		}
+		scratch.clear();
+		for (int i = 0; i < accessors.length; i++) {
+			if (primitiveTags[i] < 0) {
+				encodeValue(accessors[i].get(obj));
+			} else {
+				encodePrimitive(primitiveTags[i], accessors[i], obj);
+			}
+		}
+		if (fixedKeyWidth < 0) {
+			return scratch.position();
+		}
+		// padding keeps keys of the same width, values are self delimiting
+		while (scratch.position() < fixedKeyWidth) {
+			scratch.put(TAG_NULL);
+		}
+		return fixedKeyWidth;
+	}
+
+	/**
+	 * Encodes a primitive value as {@link #encodeValue(Object)} encodes its
+	 * boxed value
+	 */
+	private void encodePrimitive(byte tag, PropertyAccessor accessor, T obj) {
+		ensureScratch(9);
+		long bits = accessor.getAsLongBits(obj);
+		switch (tag) {
+		case TAG_BOOLEAN:
+			scratch.put(TAG_BOOLEAN).put((byte) bits);
+			break;
+		case TAG_CHAR:
+			scratch.put(TAG_CHAR).putChar((char) bits);
+			break;
+		case TAG_DECIMAL:
+			double value = accessor.getPrimitiveType() == float.class ? Float.intBitsToFloat((int) bits)
+					: Double.longBitsToDouble(bits);
+			scratch.put(TAG_DECIMAL).putLong(Double.doubleToLongBits(value));
+			break;
+		default:
+			scratch.put(TAG_INTEGRAL).putLong(bits);
+		}
+	}
+
+	private void encodeValue(Object value) {
+		ensureScratch(9);
+		if (value == null) {
+			scratch.put(TAG_NULL);
+		} else if (value instanceof Boolean) {
+			scratch.put(TAG_BOOLEAN).put((byte) (((Boolean) value) ? 1 : 0));
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			scratch.put(TAG_INTEGRAL).putLong(((Number) value).longValue());
+		} else if (value instanceof Double || value instanceof Float) {
+			scratch.put(TAG_DECIMAL).putLong(Double.doubleToLongBits(((Number) value).doubleValue()));
+		} else if (value instanceof Character) {
+			scratch.put(TAG_CHAR).putChar((Character) value);
+		} else if (value instanceof Enum) {
+			scratch.put(TAG_ENUM).putInt(((Enum<?>) value).ordinal());
+		} else if (value instanceof Date) {
+			scratch.put(TAG_DATE).putLong(((Date) value).getTime());
+		} else {
+			CharSequence chars = value instanceof CharSequence ? (CharSequence) value : value.toString();
+			ensureScratch(5 + chars.length() * 2);
+			scratch.put(TAG_STRING).putInt(chars.length());
+			for (int i = 0; i < chars.length(); i++) {
+				scratch.putChar(chars.charAt(i));
+			}
+		}
+	}
+
+	private void ensureScratch(int required) {
+		if (scratch.remaining() < required) {
+			int position = scratch.position();
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, position + required));
+			scratch.flip();
+			larger.put(scratch);
+			larger.position(position);
+			scratch = larger;
+		}
+	}
+
+	private long hashOf(int length) {
+		long hash = Hashing.hash64(scratch, 0, length);
+		// zero marks an empty slot
+		return hash == 0 ? 1 : hash;
+	}
+
+	/**
+	 * @return index of the slot holding the key in the scratch buffer, or
+	 *         -(index + 1) of the empty slot it should be inserted into
+	 */
+	private long find(long hash, int length) {
+		long mask = capacity - 1;
+		long index = hash & mask;
+		while (true) {
+			ByteBuffer segment = segments[(int) (index / slotsPerSegment)];
+			int offset = (int) (index % slotsPerSegment) * slotSize;
+			long stored = segment.getLong(offset);
+			if (stored == 0) {
+				return -index - 1;
+			} else if (stored == hash && keyEquals(segment, offset + HASH_SIZE, length)) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	private boolean keyEquals(ByteBuffer segment, int offset, int length) {
+		ByteBuffer buffer = segment;
+		int start = offset;
+		if (fixedKeyWidth < 0) {
+			long pointer = segment.getLong(offset);
+			buffer = keyArea.get((int) (pointer >>> 32));
+			start = (int) pointer;
+			if (buffer.getInt(start) != length) {
+				return false;
+			}
+			start += LENGTH_SIZE;
+		}
+		int i = 0;
+		for (; i + 8 <= length; i += 8) {
+			if (buffer.getLong(start + i) != scratch.getLong(i)) {
+				return false;
+			}
+		}
+		for (; i < length; i++) {
+			if (buffer.get(start + i) != scratch.get(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void insert(long index, long hash, int length) {
+		ByteBuffer segment = segments[(int) (index / slotsPerSegment)];
+		int offset = (int) (index % slotsPerSegment) * slotSize;
+		if (fixedKeyWidth < 0) {
+			segment.putLong(offset + HASH_SIZE, appendKey(length));
+		} else {
+			for (int i = 0; i < length; i++) {
+				segment.put(offset + HASH_SIZE + i, scratch.get(i));
+			}
+		}
+		segment.putLong(offset, hash);
+	}
+
+	/**
+	 * Appends the key in the scratch buffer to the key area
+	 *
+	 * @return pointer of the key, chunk index in the high and offset in the
+	 *         low 32 bits
+	 */
+	private long appendKey(int length) {
+		int required = LENGTH_SIZE + length;
+		if (required > KEY_AREA_CHUNK_SIZE) {
+			throw new IllegalArgumentException(
+					String.format("Identity key of %d bytes is too large for Class: %s", length, type));
+		}
+		if (keyArea.isEmpty() || KEY_AREA_CHUNK_SIZE - keyAreaOffset < required) {
+			keyArea.add(ByteBuffer.allocateDirect(KEY_AREA_CHUNK_SIZE));
+			keyAreaOffset = 0;
+		}
+		ByteBuffer chunk = keyArea.get(keyArea.size() - 1);
+		long pointer = ((long) (keyArea.size() - 1) << 32) | keyAreaOffset;
+		chunk.putInt(keyAreaOffset, length);
+		for (int i = 0; i < length; i++) {
+			chunk.put(keyAreaOffset + LENGTH_SIZE + i, scratch.get(i));
+		}
+		keyAreaOffset += required;
+		keyBytes += required;
+		return pointer;
+	}
+
+	/**
+	 * Doubles the table, slots are moved by their stored hashes so keys are
+	 * not compared again
+	 */
+	private void grow() {
+		ByteBuffer[] oldSegments = segments;
+		int oldPerSegment = slotsPerSegment;
+		long oldCapacity = capacity;
+		allocateTable(capacity * 2);
+		long mask = capacity - 1;
+		for (long i = 0; i < oldCapacity; i++) {
+			ByteBuffer oldSegment = oldSegments[(int) (i / oldPerSegment)];
+			int oldOffset = (int) (i % oldPerSegment) * slotSize;
+			long hash = oldSegment.getLong(oldOffset);
+			if (hash == 0) {
+				continue;
+			}
+			long index = hash & mask;
+			while (true) {
+				ByteBuffer segment = segments[(int) (index / slotsPerSegment)];
+				int offset = (int) (index % slotsPerSegment) * slotSize;
+				if (segment.getLong(offset) == 0) {
+					for (int j = 0; j < slotSize; j += 8) {
+						segment.putLong(offset + j, oldSegment.getLong(oldOffset + j));
+					}
+					break;
+				}
+				index = (index + 1) & mask;
+			}
+		}
+	}
+
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("set is closed");
+		}
+	}
+
+	public synchronized long size() {
+		return size;
+	}
+
+	/**
+	 * @return number of keys the table can hold before it grows
+	 */
+	public synchronized long getCapacity() {
+		return (long) (capacity * LOAD_FACTOR);
+	}
+
+	/**
+	 * @return bytes of direct memory allocated by the table and the key area
+	 */
+	public synchronized long getMemoryUsage() {
+		return capacity * slotSize + (long) keyArea.size() * KEY_AREA_CHUNK_SIZE;
+	}
+
+	/**
+	 * @return bytes of the stored keys, including the ones inside the table
+	 *         for fixed width keys
+	 */
+	public synchronized long getKeyBytes() {
+		return fixedKeyWidth < 0 ? keyBytes : size * fixedKeyWidth;
+	}
+
+	/**
+	 * @return true if keys are stored inside the table
+	 */
+	public boolean isFixedWidth() {
+		return fixedKeyWidth >= 0;
+	}
+
+	/**
+	 * Releases the references to the direct memory
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		segments = new ByteBuffer[0];
+		keyArea.clear();
+		capacity = 0;
+		size = 0;
+	}
+
+	@Override
+	public String toString() {
+		return "OffHeapIdentitySet[type=" + type.getName() + ", size=" + size() + ", memoryUsage="
+				+ getMemoryUsage() + "]";
+	}
+
+}
@@ -0,0 +1,518 @@
+package org.jarchframework.core.offheap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+
+/**
+ * Append only store of {@link BaseObject}s kept in a memory-mapped file
+ * instead of the heap. Objects are encoded into fixed width records by a
+ * compact per-class binary layout, so that a record can be accessed by its
+ * position and every property can be decoded on its own through a
+ * {@link View}. Objects can also be looked up by their {@link Identity}
+ * properties through a hash index which lives in the same file.
+ * <p>
+ * The file is the only backing store, opening an existing file does not
+ * reload anything but maps the records and the index as they are. The layout
+ * of the class is validated against the file on open. Supported property
+ * types are primitives, their wrappers, {@link String}, enums and
+ * {@link java.util.Date}.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * try (OffHeapObjectStore&lt;User&gt; store = OffHeapObjectStore.open(path, User.class)) {<br>
+ * &nbsp;&nbsp;long position = store.append(user);<br>
+ * &nbsp;&nbsp;String name = (String) store.view(position).get("name");<br>
+ * &nbsp;&nbsp;User same = store.findByIdentity(user.getId());<br>
+ * }
+ * </code>
+ * <p>
+ * Reads are safe from multiple threads, appends are serialized.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class OffHeapObjectStore<T extends BaseObject> implements Closeable {
+
+	public static final int DEFAULT_MAX_STRING_BYTES = 64;
+	public static final long DEFAULT_INITIAL_CAPACITY = 1024;
+
+	private static final int MAGIC = 0x4A415243;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 4096;
+	private static final int SEGMENT_SIZE = 1 << 30;
+	private static final int SLOTS_PER_SEGMENT = SEGMENT_SIZE / 8;
+
+	private static final int STATE_CLEAN = 0;
+	private static final int STATE_DIRTY = 1;
+
+	private static final int MAGIC_OFFSET = 0;
+	private static final int VERSION_OFFSET = 4;
+	private static final int FINGERPRINT_OFFSET = 8;
+	private static final int RECORD_SIZE_OFFSET = 16;
+	private static final int STATE_OFFSET = 20;
+	private static final int CAPACITY_OFFSET = 24;
+	private static final int SIZE_OFFSET = 32;
+	private static final int INDEX_SLOTS_OFFSET = 40;
+
+	private final Class<T> type;
+	private final BinaryLayout layout;
+	private final FileChannel channel;
+	private final MappedByteBuffer header;
+	private final int recordsPerSegment;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private volatile MappedByteBuffer[] recordSegments;
+	private MappedByteBuffer[] indexSegments;
+	private volatile long size;
+	private long capacity;
+	private long indexSlots;
+
+	private OffHeapObjectStore(Path file, Class<T> type, BinaryLayout layout, long initialCapacity)
+			throws IOException {
+		this.type = type;
+		this.layout = layout;
+		this.recordsPerSegment = SEGMENT_SIZE / layout.getRecordSize();
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+		try {
+			boolean created = channel.size() == 0;
+			this.header = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE);
+			if (created) {
+				capacity = Math.max(1, initialCapacity);
+				indexSlots = indexSlotsFor(capacity);
+				header.putInt(MAGIC_OFFSET, MAGIC);
+				header.putInt(VERSION_OFFSET, VERSION);
+				header.putLong(FINGERPRINT_OFFSET, layout.getFingerprint());
+				header.putInt(RECORD_SIZE_OFFSET, layout.getRecordSize());
+				header.putInt(STATE_OFFSET, STATE_CLEAN);
+				header.putLong(CAPACITY_OFFSET, capacity);
+				header.putLong(SIZE_OFFSET, 0);
+				header.putLong(INDEX_SLOTS_OFFSET, indexSlots);
+			} else {
+				validateHeader(file);
+				capacity = header.getLong(CAPACITY_OFFSET);
+				size = header.getLong(SIZE_OFFSET);
+				indexSlots = header.getLong(INDEX_SLOTS_OFFSET);
+			}
+			map();
+			if (header.getInt(STATE_OFFSET) != STATE_CLEAN) {
+				// interrupted while growing, index region is not reliable
+				rebuildIndex();
+				header.putInt(STATE_OFFSET, STATE_CLEAN);
+			}
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Opens the store in given file, creating it if it does not exist. All
+	 * properties of the type having both a getter and a setter are stored.
+	 *
+	 * @param file
+	 * @param type
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static <T extends BaseObject> OffHeapObjectStore<T> open(Path file, Class<T> type) throws IOException {
+		return open(file, type, DEFAULT_MAX_STRING_BYTES, DEFAULT_INITIAL_CAPACITY);
+	}
+
+	/**
+	 * Opens the store in given file, creating it if it does not exist.
+	 *
+	 * @param file
+	 * @param type
+	 * @param maxStringBytes
+	 *            maximum UTF-8 length of string properties
+	 * @param initialCapacity
+	 *            number of records to reserve when the file is created
+	 * @param properties
+	 *            properties to store in addition to identity properties, all
+	 *            accessible properties if not specified
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static <T extends BaseObject> OffHeapObjectStore<T> open(Path file, Class<T> type, int maxStringBytes,
+			long initialCapacity, String... properties) throws IOException {
+		return new OffHeapObjectStore<>(file, type, BinaryLayout.of(type, maxStringBytes, properties),
+				initialCapacity);
+	}
+
+	private void validateHeader(Path file) {
+		if (header.getInt(MAGIC_OFFSET) != MAGIC || header.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IllegalStateException(file + " is not a valid store file");
+		}
+		if (header.getLong(FINGERPRINT_OFFSET) != layout.getFingerprint()
+				|| header.getInt(RECORD_SIZE_OFFSET) != layout.getRecordSize()) {
+			throw new IllegalStateException(
+					String.format("Layout of Class: %s does not match the store file %s", type, file));
+		}
+	}
+
+	/**
+	 * Appends given object to the end of the store
+	 *
+	 * @param object
+	 * @return position of the appended record
+	 * @throws IllegalArgumentException
+	 *             if an object with the same identity is already stored
+	 */
+	public long append(T object) {
+		lock.writeLock().lock();
+		try {
+			ensureOpen();
+			if (size == capacity) {
+				grow(capacity * 2);
+			}
+			long position = size;
+			ByteBuffer segment = segmentOf(position);
+			int offset = offsetOf(position);
+			layout.write(object, segment, offset);
+
+			if (indexSlots > 0) {
+				long slot = probe(segment, offset);
+				if (isOccupied(getSlot(slot))) {
+					throw new IllegalArgumentException(
+							String.format("An object with the same identity is already stored: %s", object));
+				}
+				setSlot(slot, position + 1);
+			}
+
+			size = position + 1;
+			header.putLong(SIZE_OFFSET, size);
+			return position;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Decodes the record at given position into a new instance
+	 *
+	 * @param position
+	 * @return a new instance
+	 */
+	public T get(long position) {
+		return view(position).materialize();
+	}
+
+	/**
+	 * Returns a flyweight view of the record at given position, properties
+	 * are decoded only when requested
+	 *
+	 * @param position
+	 * @return the view
+	 */
+	public View view(long position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+		}
+		return new View(position, segmentOf(position), offsetOf(position));
+	}
+
+	/**
+	 * Finds the position of the record with given identity values, in the
+	 * order of {@link Identity} properties of the type
+	 *
+	 * @param identityValues
+	 * @return position of the record or -1 if not found
+	 */
+	public long indexOf(Object... identityValues) {
+		if (indexSlots == 0) {
+			throw new UnsupportedOperationException(type + " has no identity properties");
+		}
+		ByteBuffer key = ByteBuffer.allocate(BinaryLayout.HASH_SIZE + layout.getIdentityWidth());
+		layout.writeIdentity(identityValues, key, 0);
+
+		lock.readLock().lock();
+		try {
+			ensureOpen();
+			long value = getSlot(probe(key, 0));
+			return isOccupied(value) ? value - 1 : -1;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param identityValues
+	 * @return a new instance decoded from the record with given identity
+	 *         values or null if not found
+	 */
+	public T findByIdentity(Object... identityValues) {
+		long position = indexOf(identityValues);
+		return position < 0 ? null : get(position);
+	}
+
+	/**
+	 * @param identityValues
+	 * @return view of the record with given identity values or null if not
+	 *         found
+	 */
+	public View findViewByIdentity(Object... identityValues) {
+		long position = indexOf(identityValues);
+		return position < 0 ? null : view(position);
+	}
+
+	public long size() {
+		return size;
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Forces all changes to be written to the file
+	 */
+	public void flush() {
+		lock.writeLock().lock();
+		try {
+			header.force();
+			for (MappedByteBuffer segment : recordSegments) {
+				segment.force();
+			}
+			for (MappedByteBuffer segment : indexSegments) {
+				segment.force();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Flushes and closes the file. Mapped memory is released when the store
+	 * is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (channel.isOpen()) {
+				flush();
+				channel.close();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void ensureOpen() {
+		if (!channel.isOpen()) {
+			throw new IllegalStateException("Store is closed");
+		}
+	}
+
+	private long indexSlotsFor(long capacity) {
+		if (layout.getIdentityCount() == 0) {
+			return 0;
+		}
+		// keep load factor at most 0.5
+		return Long.highestOneBit(Math.max(1, capacity * 2 - 1)) << 1;
+	}
+
+	private void grow(long newCapacity) {
+		header.putInt(STATE_OFFSET, STATE_DIRTY);
+		capacity = newCapacity;
+		indexSlots = indexSlotsFor(newCapacity);
+		header.putLong(CAPACITY_OFFSET, capacity);
+		header.putLong(INDEX_SLOTS_OFFSET, indexSlots);
+		try {
+			map();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		rebuildIndex();
+		header.putInt(STATE_OFFSET, STATE_CLEAN);
+	}
+
+	/**
+	 * Maps records region followed by index region in segments. Records never
+	 * span segments, so a record is always accessed through a single buffer.
+	 */
+	private void map() throws IOException {
+		int recordSize = layout.getRecordSize();
+		MappedByteBuffer[] records = new MappedByteBuffer[(int) ((capacity + recordsPerSegment - 1)
+				/ recordsPerSegment)];
+		for (int i = 0; i < records.length; i++) {
+			long first = (long) i * recordsPerSegment;
+			long count = Math.min(recordsPerSegment, capacity - first);
+			records[i] = channel.map(MapMode.READ_WRITE, HEADER_SIZE + first * recordSize, count * recordSize);
+		}
+
+		long indexOffset = HEADER_SIZE + capacity * recordSize;
+		MappedByteBuffer[] index = new MappedByteBuffer[(int) ((indexSlots + SLOTS_PER_SEGMENT - 1)
+				/ SLOTS_PER_SEGMENT)];
+		for (int i = 0; i < index.length; i++) {
+			long first = (long) i * SLOTS_PER_SEGMENT;
+			long count = Math.min(SLOTS_PER_SEGMENT, indexSlots - first);
+			index[i] = channel.map(MapMode.READ_WRITE, indexOffset + first * 8, count * 8);
+		}
+
+		this.indexSegments = index;
+		this.recordSegments = records;
+	}
+
+	private void rebuildIndex() {
+		for (long slot = 0; slot < indexSlots; slot++) {
+			setSlot(slot, 0);
+		}
+		if (indexSlots == 0) {
+			return;
+		}
+		long mask = indexSlots - 1;
+		for (long position = 0; position < size; position++) {
+			long slot = segmentOf(position).getLong(offsetOf(position)) & mask;
+			while (getSlot(slot) != 0) {
+				slot = (slot + 1) & mask;
+			}
+			setSlot(slot, position + 1);
+		}
+	}
+
+	/**
+	 * Linear probing over the index for the record having the same identity
+	 * with the given key
+	 *
+	 * @return slot of the matching record or the first empty slot
+	 */
+	private long probe(ByteBuffer key, int keyOffset) {
+		long mask = indexSlots - 1;
+		long slot = key.getLong(keyOffset) & mask;
+		while (true) {
+			long value = getSlot(slot);
+			if (!isOccupied(value)) {
+				return slot;
+			}
+			long position = value - 1;
+			if (layout.identityEquals(segmentOf(position), offsetOf(position), key, keyOffset)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Slots pointing beyond the size are leftovers of an interrupted append
+	 */
+	private boolean isOccupied(long slotValue) {
+		return slotValue != 0 && slotValue <= size;
+	}
+
+	private long getSlot(long slot) {
+		return indexSegments[(int) (slot / SLOTS_PER_SEGMENT)].getLong((int) (slot % SLOTS_PER_SEGMENT) * 8);
+	}
+
+	private void setSlot(long slot, long value) {
+		indexSegments[(int) (slot / SLOTS_PER_SEGMENT)].putLong((int) (slot % SLOTS_PER_SEGMENT) * 8, value);
+	}
+
+	private ByteBuffer segmentOf(long position) {
+		return recordSegments[(int) (position / recordsPerSegment)];
+	}
+
+	private int offsetOf(long position) {
+		return (int) (position % recordsPerSegment) * layout.getRecordSize();
+	}
+
+	/**
+	 * Flyweight view of a single record. Properties are decoded from the
+	 * mapped file each time they are requested.
+	 */
+	public final class View {
+
+		private final long position;
+		private final ByteBuffer segment;
+		private final int offset;
+
+		private View(long position, ByteBuffer segment, int offset) {
+			this.position = position;
+			this.segment = segment;
+			this.offset = offset;
+		}
+
+		public long getPosition() {
+			return position;
+		}
+
+		/**
+		 * Decodes a single property of the record
+		 *
+		 * @param property
+		 * @return value of the property
+		 */
+		public Object get(String property) {
+			BinaryLayout.Property slot = layout.getProperty(property);
+			if (slot == null) {
+				throw new IllegalArgumentException(
+						String.format("Property %s is not stored for Class: %s", property, type));
+			}
+			return slot.read(segment, offset + slot.offset);
+		}
+
+		/**
+		 * @return a new instance with all properties decoded
+		 */
+		public T materialize() {
+			return type.cast(layout.read(segment, offset));
+		}
+
+		/**
+		 * Returns a proxy of the given interface which decodes the property of
+		 * a getter method only when it is called. Other methods are not
+		 * supported except the ones of {@link Object}.
+		 *
+		 * @param interfaceType
+		 * @return the proxy
+		 */
+		public <I> I as(Class<I> interfaceType) {
+			InvocationHandler handler = new InvocationHandler() {
+				@Override
+				public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+					if (method.getDeclaringClass() == Object.class) {
+						switch (method.getName()) {
+						case "equals":
+							return proxy == args[0];
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						default:
+							return materialize().toString();
+						}
+					}
+					String name = method.getName();
+					String property = null;
+					if (name.startsWith("get") && name.length() > 3) {
+						property = StringUtils.uncapitalize(name.substring(3));
+					} else if (name.startsWith("is") && name.length() > 2) {
+						property = StringUtils.uncapitalize(name.substring(2));
+					}
+					if (property == null || layout.getProperty(property) == null || args != null) {
+						throw new UnsupportedOperationException(method.toString());
+					}
+					return get(property);
+				}
+			};
+			return interfaceType.cast(
+					Proxy.newProxyInstance(interfaceType.getClassLoader(), new Class<?>[] { interfaceType }, handler));
+		}
+	}
+
+}
@@ -0,0 +1,66 @@
+package org.jarchframework.core.query;
+
+import java.util.Collection;
+
+/**
+ * A single property predicate of a {@link Query}
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class Condition {
+
+	private final PathReader reader;
+	private final Operator operator;
+	private final Object value;
+
+	Condition(String path, Operator operator, Object value) {
+		if (operator == null) {
+			throw new IllegalArgumentException("operator should not be null");
+		}
+		if (operator == Operator.IN && !(value instanceof Collection)) {
+			throw new IllegalArgumentException("value of IN should be a collection: " + value);
+		}
+		this.reader = new PathReader(path);
+		this.operator = operator;
+		this.value = value;
+	}
+
+	/**
+	 * When the path leads to a collection, like {@code "lines.amount"}, the
+	 * condition holds if any of the values matches, as {@link Index} finds the
+	 * element by any of them. So {@link Operator#IS_NULL} holds if any value
+	 * is null.
+	 */
+	boolean test(Object element) {
+		Object actual = reader.read(element);
+		if (actual instanceof Collection) {
+			for (Object item : (Collection<?>) actual) {
+				if (operator.test(item, value)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		return operator.test(actual, value);
+	}
+
+	String getPath() {
+		return reader.getPath();
+	}
+
+	Operator getOperator() {
+		return operator;
+	}
+
+	Object getValue() {
+		return value;
+	}
+
+	@Override
+	public String toString() {
+		return reader.getPath() + " " + operator + " " + value;
+	}
+
+}
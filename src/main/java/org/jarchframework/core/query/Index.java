@@ -0,0 +1,224 @@
+package org.jarchframework.core.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Hash or sorted index of a collection on a property path, to be reused by
+ * repeated {@link Query queries} against the same collection. The index is a
+ * snapshot, it does not reflect the modifications of the collection after it
+ * is built.
+ * <br>
+ * <b>Example:</b><br>
+ * <code>
+ * Index&lt;Order&gt; byStatus = Index.hash(orders, "status");<br>
+ * Query.from(orders).using(byStatus).where("status", Operator.EQ, "paid").and("amount", Operator.GT, 10).list();
+ * </code>
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class Index<T> {
+
+	private final Collection<T> source;
+	private final String path;
+	private final Map<Object, List<T>> entries;
+	private final List<T> nulls = new ArrayList<>();
+	/**
+	 * true if the path leads to a collection for any element, so an element
+	 * may be found under more than one key
+	 */
+	private boolean multiValued;
+
+	private Index(Collection<T> source, String path, Map<Object, List<T>> entries) {
+		if (source == null) {
+			throw new IllegalArgumentException("source should not be null");
+		}
+		this.source = source;
+		this.path = path;
+		this.entries = entries;
+		PathReader reader = new PathReader(path);
+		for (T element : source) {
+			Object value = reader.read(element);
+			if (value instanceof Collection) {
+				multiValued = true;
+				for (Object item : (Collection<?>) value) {
+					put(item, element);
+				}
+			} else {
+				put(value, element);
+			}
+		}
+	}
+
+	/**
+	 * @param source
+	 * @param path
+	 * @return an index answering {@link Operator#EQ}, {@link Operator#IN} and
+	 *         {@link Operator#IS_NULL} conditions on given path
+	 */
+	public static <T> Index<T> hash(Collection<T> source, String path) {
+		return new Index<>(source, path, new HashMap<Object, List<T>>());
+	}
+
+	/**
+	 * @param source
+	 * @param path
+	 *            a path leading to {@link Comparable} values
+	 * @return an index answering range conditions besides the ones of a
+	 *         {@link #hash(Collection, String) hash} index on given path
+	 */
+	public static <T> Index<T> sorted(Collection<T> source, String path) {
+		return new Index<>(source, path, new TreeMap<Object, List<T>>(Operator::compare));
+	}
+
+	private void put(Object key, T element) {
+		List<T> elements;
+		if (key == null) {
+			elements = nulls;
+		} else {
+			key = Operator.normalize(key);
+			elements = entries.get(key);
+			if (elements == null) {
+				elements = new ArrayList<>(2);
+				entries.put(key, elements);
+			}
+		}
+		// equal values of a multi valued path are put in a row
+		if (elements.isEmpty() || elements.get(elements.size() - 1) != element) {
+			elements.add(element);
+		}
+	}
+
+	/**
+	 * @param value
+	 * @return elements whose value of the path equals to given value, in the
+	 *         order of the source collection
+	 */
+	public List<T> get(Object value) {
+		if (value == null) {
+			return Collections.unmodifiableList(nulls);
+		}
+		List<T> elements = entries.get(Operator.normalize(value));
+		return elements == null ? Collections.<T> emptyList() : Collections.unmodifiableList(elements);
+	}
+
+	/**
+	 * Available only for sorted indexes
+	 * 
+	 * @param from
+	 *            lower bound, null for no lower bound
+	 * @param fromInclusive
+	 * @param to
+	 *            upper bound, null for no upper bound
+	 * @param toInclusive
+	 * @return elements whose value of the path is in given range, ordered by
+	 *         the value
+	 */
+	public List<T> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+		if (!isSorted()) {
+			throw new UnsupportedOperationException("range is not supported by the hash index on: " + path);
+		}
+		NavigableMap<Object, List<T>> sorted = (NavigableMap<Object, List<T>>) entries;
+		if (from != null) {
+			sorted = sorted.tailMap(Operator.normalize(from), fromInclusive);
+		}
+		if (to != null) {
+			sorted = sorted.headMap(Operator.normalize(to), toInclusive);
+		}
+		return flatten(sorted.values());
+	}
+
+	/**
+	 * @return true if a condition with given operator can be answered by this
+	 *         index
+	 */
+	public boolean supports(Operator operator) {
+		switch (operator) {
+		case EQ:
+		case IN:
+		case IS_NULL:
+			return true;
+		case GT:
+		case GE:
+		case LT:
+		case LE:
+			return isSorted();
+		default:
+			return false;
+		}
+	}
+
+	List<T> lookup(Operator operator, Object value) {
+		switch (operator) {
+		case EQ:
+			return get(value);
+		case IS_NULL:
+			return get(null);
+		case IN:
+			Set<Object> keys = new LinkedHashSet<>();
+			for (Object item : (Collection<?>) value) {
+				keys.add(item == null ? null : Operator.normalize(item));
+			}
+			List<List<T>> found = new ArrayList<>(keys.size());
+			for (Object key : keys) {
+				found.add(get(key));
+			}
+			return found.size() == 1 ? found.get(0) : flatten(found);
+		case GT:
+			return value == null ? Collections.<T> emptyList() : range(value, false, null, false);
+		case GE:
+			return value == null ? Collections.<T> emptyList() : range(value, true, null, false);
+		case LT:
+			return value == null ? Collections.<T> emptyList() : range(null, false, value, false);
+		case LE:
+			return value == null ? Collections.<T> emptyList() : range(null, false, value, true);
+		default:
+			throw new UnsupportedOperationException(operator + " is not supported by the index on: " + path);
+		}
+	}
+
+	/**
+	 * Joins given lists, an element is kept once if the path is multi valued
+	 */
+	private List<T> flatten(Collection<List<T>> lists) {
+		List<T> result = new ArrayList<>();
+		Set<T> seen = multiValued ? Collections.newSetFromMap(new IdentityHashMap<T, Boolean>()) : null;
+		for (List<T> elements : lists) {
+			for (T element : elements) {
+				if (seen == null || seen.add(element)) {
+					result.add(element);
+				}
+			}
+		}
+		return result;
+	}
+
+	public boolean isSorted() {
+		return entries instanceof NavigableMap;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	Collection<T> getSource() {
+		return source;
+	}
+
+	@Override
+	public String toString() {
+		return "Index[path=" + path + ", sorted=" + isSorted() + ", keys=" + entries.size() + "]";
+	}
+
+}
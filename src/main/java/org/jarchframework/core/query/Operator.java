@@ -0,0 +1,147 @@
+package org.jarchframework.core.query;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Comparison operators of {@link Query} conditions. Numbers are compared by
+ * their numeric values whatever their types are, so {@code 10}, {@code 10.0}
+ * and {@code new BigDecimal("10.00")} are equal. Other values are compared by
+ * {@link Comparable#compareTo(Object)} or equals.
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public enum Operator {
+	EQ, NE, GT, GE, LT, LE,
+	/**
+	 * value is one of the elements of the given collection
+	 */
+	IN,
+	/**
+	 * string value contains the given string
+	 */
+	CONTAINS,
+	/**
+	 * string value starts with the given string
+	 */
+	STARTS_WITH, IS_NULL, NOT_NULL;
+
+	public boolean test(Object actual, Object expected) {
+		switch (this) {
+		case EQ:
+			return same(actual, expected);
+		case NE:
+			return !same(actual, expected);
+		case GT:
+			return actual != null && expected != null && compare(actual, expected) > 0;
+		case GE:
+			return actual != null && expected != null && compare(actual, expected) >= 0;
+		case LT:
+			return actual != null && expected != null && compare(actual, expected) < 0;
+		case LE:
+			return actual != null && expected != null && compare(actual, expected) <= 0;
+		case IN:
+			for (Object item : (Collection<?>) expected) {
+				if (same(actual, item)) {
+					return true;
+				}
+			}
+			return false;
+		case CONTAINS:
+			return actual != null && expected != null && actual.toString().contains(expected.toString());
+		case STARTS_WITH:
+			return actual != null && expected != null && actual.toString().startsWith(expected.toString());
+		case IS_NULL:
+			return actual == null;
+		case NOT_NULL:
+			return actual != null;
+		default:
+			throw new IllegalArgumentException("Invalid operator :" + this);
+		}
+	}
+
+	/**
+	 * Equality of the values as {@link #normalize(Object) normalized}, so that
+	 * hash indexes find the same values as the conditions match
+	 */
+	static boolean same(Object actual, Object expected) {
+		if (!(actual instanceof Number) || !(expected instanceof Number)) {
+			return Objects.equals(actual, expected);
+		} else if (actual instanceof Double && expected instanceof Double
+				|| actual instanceof Float && expected instanceof Float) {
+			double first = ((Number) actual).doubleValue();
+			double second = ((Number) expected).doubleValue();
+			return first == second || Double.isNaN(first) && Double.isNaN(second);
+		} else if (actual.getClass() == expected.getClass() && (actual instanceof Long || actual instanceof Integer
+				|| actual instanceof Short || actual instanceof Byte)) {
+			return actual.equals(expected);
+		}
+		return Objects.equals(normalize(actual), normalize(expected));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	static int compare(Object actual, Object expected) {
+		if (actual instanceof Number && expected instanceof Number && actual.getClass() != expected.getClass()) {
+			if (!isFinite((Number) actual) || !isFinite((Number) expected)) {
+				return Double.compare(((Number) actual).doubleValue(), ((Number) expected).doubleValue());
+			}
+			return toBigDecimal((Number) actual).compareTo(toBigDecimal((Number) expected));
+		}
+		return ((Comparable) actual).compareTo(expected);
+	}
+
+	/**
+	 * Gives numerically equal numbers one canonical key, so that they are
+	 * found in hash indexes whatever their types are: integral values fitting
+	 * in a long become {@link Long}, other finite values become
+	 * {@link BigDecimal}s without trailing zeros, NaN and infinities become
+	 * {@link Double}
+	 */
+	static Object normalize(Object value) {
+		if (value instanceof Long) {
+			return value;
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Double || value instanceof Float) {
+			double number = ((Number) value).doubleValue();
+			if (Double.isNaN(number) || Double.isInfinite(number)) {
+				return number;
+			}
+			return normalize(BigDecimal.valueOf(number));
+		} else if (value instanceof BigInteger) {
+			return normalize(new BigDecimal((BigInteger) value));
+		} else if (value instanceof BigDecimal) {
+			BigDecimal number = ((BigDecimal) value).stripTrailingZeros();
+			if (number.signum() == 0) {
+				return 0L;
+			} else if (number.scale() <= 0 && number.precision() - number.scale() <= 19) {
+				try {
+					return number.longValueExact();
+				} catch (ArithmeticException e) {
+					// out of the range of long
+				}
+			}
+			return number;
+		}
+		return value;
+	}
+
+	private static boolean isFinite(Number number) {
+		return !(number instanceof Double || number instanceof Float) || !Double.isNaN(number.doubleValue())
+				&& !Double.isInfinite(number.doubleValue());
+	}
+
+	private static BigDecimal toBigDecimal(Number number) {
+		if (number instanceof BigDecimal) {
+			return (BigDecimal) number;
+		} else if (number instanceof Double || number instanceof Float) {
+			return BigDecimal.valueOf(number.doubleValue());
+		}
+		return new BigDecimal(number.toString());
+	}
+
+}
@@ -0,0 +1,42 @@
+package org.jarchframework.core.query;
+
+import org.jarchframework.core.util.PropertyAccessor;
+
+/**
+ * Reads a property path from elements of a collection. The accessor of the
+ * last seen class is kept so that the path is compiled only once per class and
+ * homogeneous collections do not hit the accessor cache for each element.
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class PathReader {
+
+	private final String path;
+	private volatile PropertyAccessor accessor;
+
+	PathReader(String path) {
+		if (path == null || path.trim().length() == 0) {
+			throw new IllegalArgumentException("property path should not be empty");
+		}
+		this.path = path;
+	}
+
+	Object read(Object target) {
+		if (target == null) {
+			return null;
+		}
+		PropertyAccessor current = accessor;
+		if (current == null || current.getType() != target.getClass()) {
+			current = PropertyAccessor.of(target.getClass(), path);
+			accessor = current;
+		}
+		return current.get(target);
+	}
+
+	String getPath() {
+		return path;
+	}
+
+}
@@ -0,0 +1,228 @@
+package org.jarchframework.core.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Filters and groups in-memory collections by property paths. Paths are
+ * resolved once per element class through
+ * {@link org.jarchframework.core.util.PropertyAccessor}, conditions are
+ * evaluated in the given order and the evaluation of an element stops at the
+ * first failing condition. Collections larger than the
+ * {@link #parallelThreshold(int) parallel threshold} are filtered in
+ * parallel, the order of the source is kept in any case.
+ * <br>
+ * <b>Example:</b><br>
+ * <code>
+ * Query.from(orders).where("owner.group.name", Operator.EQ, "admin").and("amount", Operator.GT, 10).groupBy("status");
+ * </code>
+ * <p>
+ * A query is not thread safe while it is built, but once built it can be
+ * executed any number of times.
+ * 
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class Query<T> {
+
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 10000;
+
+	private final Collection<T> source;
+	/**
+	 * Alternatives joined by or, each holding conditions joined by and
+	 */
+	private final List<List<Condition>> alternatives = new ArrayList<>();
+	private final List<Index<T>> indexes = new ArrayList<>();
+	private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+	private Query(Collection<T> source) {
+		if (source == null) {
+			throw new IllegalArgumentException("source should not be null");
+		}
+		this.source = source;
+		this.alternatives.add(new ArrayList<Condition>());
+	}
+
+	public static <T> Query<T> from(Collection<T> source) {
+		return new Query<>(source);
+	}
+
+	/**
+	 * Adds a condition which should hold together with the previous ones, same
+	 * as {@link #and(String, Operator, Object)}
+	 * 
+	 * @param path
+	 *            a dot separated property path
+	 * @param operator
+	 * @param value
+	 *            the value to compare, a collection for {@link Operator#IN}
+	 * @return this query
+	 */
+	public Query<T> where(String path, Operator operator, Object value) {
+		return and(path, operator, value);
+	}
+
+	public Query<T> and(String path, Operator operator, Object value) {
+		alternatives.get(alternatives.size() - 1).add(new Condition(path, operator, value));
+		return this;
+	}
+
+	/**
+	 * Starts an alternative of the conditions added so far, an element
+	 * matches if all conditions of any alternative hold.
+	 * 
+	 * @return this query
+	 */
+	public Query<T> or(String path, Operator operator, Object value) {
+		if (!alternatives.get(alternatives.size() - 1).isEmpty()) {
+			alternatives.add(new ArrayList<Condition>());
+		}
+		return and(path, operator, value);
+	}
+
+	/**
+	 * Uses given index to find the candidates of a condition on the path of
+	 * the index, instead of scanning the whole collection. Indexes are used
+	 * only when the query has no alternatives.
+	 * 
+	 * @param index
+	 *            an index built on the source of this query
+	 * @return this query
+	 */
+	public Query<T> using(Index<T> index) {
+		if (index.getSource() != source) {
+			throw new IllegalArgumentException("index is not built on the source of the query: " + index);
+		}
+		indexes.add(index);
+		return this;
+	}
+
+	/**
+	 * @param threshold
+	 *            minimum number of candidates to filter in parallel
+	 * @return this query
+	 */
+	public Query<T> parallelThreshold(int threshold) {
+		this.parallelThreshold = threshold;
+		return this;
+	}
+
+	/**
+	 * @return matching elements in the order of the source, or of the index
+	 *         in use
+	 */
+	public List<T> list() {
+		return stream().collect(Collectors.toList());
+	}
+
+	/**
+	 * @return the first matching element, null if none
+	 */
+	public T first() {
+		return stream().findFirst().orElse(null);
+	}
+
+	public long count() {
+		return stream().count();
+	}
+
+	public boolean exists() {
+		return stream().anyMatch(element -> true);
+	}
+
+	/**
+	 * @param path
+	 *            a dot separated property path
+	 * @return matching elements grouped by the value of given path, in the
+	 *         order of the first occurrence of each value. Elements with a
+	 *         null value are grouped under the null key.
+	 */
+	public Map<Object, List<T>> groupBy(String path) {
+		PathReader reader = new PathReader(path);
+		Map<Object, List<T>> groups = new LinkedHashMap<>();
+		for (T element : list()) {
+			Object key = reader.read(element);
+			List<T> group = groups.get(key);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(key, group);
+			}
+			group.add(element);
+		}
+		return groups;
+	}
+
+	/**
+	 * @return stream of the matching elements, parallel above the threshold
+	 */
+	public Stream<T> stream() {
+		Collection<T> candidates = source;
+		List<List<Condition>> conditions = alternatives;
+		if (alternatives.size() == 1 && !indexes.isEmpty()) {
+			List<Condition> remaining = new ArrayList<>(alternatives.get(0));
+			candidates = lookup(remaining);
+			conditions = Collections.singletonList(remaining);
+		}
+		Stream<T> stream = candidates.size() >= parallelThreshold ? candidates.parallelStream() : candidates.stream();
+		Predicate<T> predicate = predicate(conditions);
+		return predicate == null ? stream : stream.filter(predicate);
+	}
+
+	/**
+	 * Finds the candidates of the first condition answered by an index and
+	 * removes that condition from given conditions
+	 */
+	private Collection<T> lookup(List<Condition> conditions) {
+		for (int i = 0; i < conditions.size(); i++) {
+			Condition condition = conditions.get(i);
+			for (Index<T> index : indexes) {
+				if (index.getPath().equals(condition.getPath()) && index.supports(condition.getOperator())) {
+					conditions.remove(i);
+					return index.lookup(condition.getOperator(), condition.getValue());
+				}
+			}
+		}
+		return source;
+	}
+
+	private static <T> Predicate<T> predicate(List<List<Condition>> alternatives) {
+		if (alternatives.size() == 1 && alternatives.get(0).isEmpty()) {
+			return null;
+		}
+		final Condition[][] compiled = new Condition[alternatives.size()][];
+		for (int i = 0; i < compiled.length; i++) {
+			compiled[i] = alternatives.get(i).toArray(new Condition[alternatives.get(i).size()]);
+		}
+		return element -> {
+			for (Condition[] conditions : compiled) {
+				if (matches(conditions, element)) {
+					return true;
+				}
+			}
+			return false;
+		};
+	}
+
+	private static boolean matches(Condition[] conditions, Object element) {
+		for (Condition condition : conditions) {
+			if (!condition.test(element)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "Query[conditions=" + alternatives + ", indexes=" + indexes + "]";
+	}
+
+}
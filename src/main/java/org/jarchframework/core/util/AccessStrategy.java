@@ -0,0 +1,31 @@
+package org.jarchframework.core.util;
+
+/**
+ * How a property of a class is read, configured globally or per class by
+ * {@link PropertyAccessor#setAccessStrategy(AccessStrategy)} and
+ * {@link PropertyAccessor#setAccessStrategy(Class, AccessStrategy)}. Fields
+ * are read through method handles resolved once per class and path.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public enum AccessStrategy {
+
+	/**
+	 * Properties are read by getter methods only, by get, is or plain naming
+	 */
+	GETTER_ONLY,
+
+	/**
+	 * Properties are read by getter methods, or by fields when no getter
+	 * exists
+	 */
+	GETTER_THEN_FIELD,
+
+	/**
+	 * Properties are read by fields, or by getter methods when no field exists
+	 */
+	FIELD_FIRST
+
+}
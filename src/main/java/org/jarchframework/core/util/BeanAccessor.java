@@ -0,0 +1,129 @@
+package org.jarchframework.core.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads an ordered list of property paths from instances of a class by
+ * position, for table and grid renderers addressing their columns by index.
+ * Paths are compiled once into {@link PropertyAccessor}s, reading a cell is an
+ * array access followed by the getter calls.
+ * <br>
+ * <b>Example:</b><br>
+ * <code>
+ * BeanAccessor&lt;User&gt; accessor = BeanAccessor.of(User.class, "id", "name", "group.name");<br>
+ * Object[] cells = new Object[accessor.getColumnCount()];<br>
+ * for (User row : rows) {<br>
+ * &nbsp;&nbsp;accessor.getAll(row, cells);<br>
+ * }
+ * </code>
+ * <p>
+ * Accessors are immutable and thread safe.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class BeanAccessor<T> {
+
+	private final Class<T> type;
+	private final PropertyAccessor[] accessors;
+	private final List<String> paths;
+
+	private BeanAccessor(Class<T> type, String[] paths) {
+		if (type == null) {
+			throw new IllegalArgumentException("type should not be null");
+		}
+		this.type = type;
+		this.accessors = new PropertyAccessor[paths.length];
+		for (int i = 0; i < paths.length; i++) {
+			if (paths[i] == null || paths[i].trim().length() == 0) {
+				throw new IllegalArgumentException(String.format("property path of column %d should not be empty", i));
+			}
+			accessors[i] = PropertyAccessor.of(type, paths[i]);
+		}
+		this.paths = Collections.unmodifiableList(Arrays.asList(paths.clone()));
+	}
+
+	/**
+	 * @param type
+	 * @param paths
+	 *            property paths of the columns, in order
+	 * @return the accessor
+	 */
+	public static <T> BeanAccessor<T> of(Class<T> type, String... paths) {
+		return new BeanAccessor<>(type, paths);
+	}
+
+	public static <T> BeanAccessor<T> of(Class<T> type, List<String> paths) {
+		return new BeanAccessor<>(type, paths.toArray(new String[paths.size()]));
+	}
+
+	/**
+	 * @param row
+	 * @param column
+	 * @return value of the path of given column, null if the row is null
+	 */
+	public Object get(T row, int column) {
+		return row == null ? null : accessors[column].get(row);
+	}
+
+	/**
+	 * Reads the values of all columns into given array
+	 *
+	 * @param row
+	 * @param out
+	 *            an array of at least {@link #getColumnCount()} length
+	 * @return given array
+	 */
+	public Object[] getAll(T row, Object[] out) {
+		if (out.length < accessors.length) {
+			throw new IllegalArgumentException(
+					String.format("array of %d length is shorter than %d columns", out.length, accessors.length));
+		}
+		if (row == null) {
+			Arrays.fill(out, 0, accessors.length, null);
+			return out;
+		}
+		for (int i = 0; i < accessors.length; i++) {
+			out[i] = accessors[i].get(row);
+		}
+		return out;
+	}
+
+	public Object[] getAll(T row) {
+		return getAll(row, new Object[accessors.length]);
+	}
+
+	public int getColumnCount() {
+		return accessors.length;
+	}
+
+	public String getPath(int column) {
+		return paths.get(column);
+	}
+
+	public List<String> getPaths() {
+		return paths;
+	}
+
+	/**
+	 * @param column
+	 * @return declared type of the values of given column, null if it can not
+	 *         be resolved from the declared types
+	 */
+	public Class<?> getValueType(int column) {
+		return accessors[column].getValueType();
+	}
+
+	public Class<T> getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "BeanAccessor[" + type.getName() + paths + "]";
+	}
+
+}
@@ -0,0 +1,288 @@
+package org.jarchframework.core.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable description of a class, holding its fields, getter methods,
+ * properties and annotations through the whole class hierarchy. Descriptors
+ * are built once per class and shared, see {@link #forClass(Class)}.
+ * <p>
+ * Fields and methods are ordered as they are declared, starting from the
+ * given class up to its superclasses. Getter methods are public or non-public
+ * instance methods without parameters whose names start with {@code get} or
+ * {@code is}, overridden getters are listed only once.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class ClassDescriptor {
+
+	private static final ConcurrentMap<Class<?>, ClassDescriptor> cache = new ConcurrentHashMap<>();
+
+	private final Class<?> type;
+	private final Field[] fields;
+	private final Method[] methods;
+	private final Method[] getterMethods;
+	private final Property[] properties;
+	private final Annotation[] annotations;
+
+	private final List<Field> fieldList;
+	private final List<Method> getterMethodList;
+	private final List<Property> propertyList;
+	private final List<Annotation> annotationList;
+	private final Set<String> fieldNames;
+	private final List<String> propertyNames;
+	private final Map<String, Property> propertiesByName;
+
+	private ClassDescriptor(Class<?> type) {
+		this.type = type;
+		ClassDescriptor parent = type.getSuperclass() != null ? forClass(type.getSuperclass()) : null;
+
+		this.fields = concat(type.getDeclaredFields(), parent != null ? parent.fields : new Field[0]);
+		this.methods = collectMethods(type, parent);
+		this.annotations = type.getDeclaredAnnotations();
+
+		Map<String, Method> getters = new LinkedHashMap<>();
+		for (Method method : methods) {
+			String propertyName = propertyNameOf(method);
+			if (propertyName != null && !getters.containsKey(propertyName)) {
+				getters.put(propertyName, method);
+			}
+		}
+		this.getterMethods = getters.values().toArray(new Method[getters.size()]);
+
+		List<Property> propertyItems = new ArrayList<>(getters.size());
+		Map<String, Property> byName = new HashMap<>();
+		for (Map.Entry<String, Method> entry : getters.entrySet()) {
+			Method getter = entry.getValue();
+			Property property = new Property(entry.getKey(), getter,
+					findMethod("set" + StringUtils.capitalize(entry.getKey()), getter.getReturnType()),
+					findField(entry.getKey()));
+			propertyItems.add(property);
+			byName.put(property.getName(), property);
+		}
+		this.properties = propertyItems.toArray(new Property[propertyItems.size()]);
+		this.propertiesByName = Collections.unmodifiableMap(byName);
+
+		Set<String> names = new LinkedHashSet<>();
+		for (Field field : fields) {
+			names.add(field.getName());
+		}
+		this.fieldNames = Collections.unmodifiableSet(names);
+		this.propertyNames = Collections.unmodifiableList(new ArrayList<>(getters.keySet()));
+
+		this.fieldList = Collections.unmodifiableList(Arrays.asList(fields));
+		this.getterMethodList = Collections.unmodifiableList(Arrays.asList(getterMethods));
+		this.propertyList = Collections.unmodifiableList(Arrays.asList(properties));
+		this.annotationList = Collections.unmodifiableList(Arrays.asList(annotations));
+	}
+
+	/**
+	 * Returns the shared descriptor of given class, building it on the first
+	 * call
+	 *
+	 * @param type
+	 * @return the descriptor
+	 */
+	public static ClassDescriptor forClass(Class<?> type) {
+		ClassDescriptor descriptor = cache.get(type);
+		if (descriptor == null) {
+			// superclass descriptors are built recursively, so computeIfAbsent
+			// is not used here
+			descriptor = new ClassDescriptor(type);
+			ClassDescriptor existing = cache.putIfAbsent(type, descriptor);
+			if (existing != null) {
+				descriptor = existing;
+			}
+		}
+		return descriptor;
+	}
+
+	private static Method[] collectMethods(Class<?> type, ClassDescriptor parent) {
+		Method[] declared = type.getDeclaredMethods();
+		if (parent != null) {
+			return concat(declared, parent.methods);
+		} else if (type.isInterface()) {
+			Method[] result = declared;
+			for (Class<?> superIfc : type.getInterfaces()) {
+				result = concat(result, forClass(superIfc).methods);
+			}
+			return result;
+		}
+		return declared;
+	}
+
+	private static <T> T[] concat(T[] first, T[] second) {
+		T[] result = Arrays.copyOf(first, first.length + second.length);
+		System.arraycopy(second, 0, result, first.length, second.length);
+		return result;
+	}
+
+	/**
+	 * @return property name of given getter method or null if the method is
+	 *         not a getter
+	 */
+	private static String propertyNameOf(Method method) {
+		if (method.getParameterTypes().length > 0 || method.getReturnType() == void.class
+				|| Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic()) {
+			return null;
+		}
+		String name = method.getName();
+		String propertyName = null;
+		if (name.startsWith("get") && name.length() > 3) {
+			propertyName = name.substring(3);
+		} else if (name.startsWith("is") && name.length() > 2) {
+			propertyName = name.substring(2);
+		}
+		// skip getClass() method
+		if (propertyName == null || "Class".equals(propertyName)) {
+			return null;
+		}
+		return StringUtils.uncapitalize(propertyName);
+	}
+
+	private Method findMethod(String name, Class<?> parameterType) {
+		for (Method method : methods) {
+			Class<?>[] parameterTypes = method.getParameterTypes();
+			if (parameterTypes.length == 1 && parameterTypes[0] == parameterType && method.getName().equals(name)
+					&& !Modifier.isStatic(method.getModifiers())) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	private Field findField(String name) {
+		for (Field field : fields) {
+			if (field.getName().equals(name)) {
+				return field;
+			}
+		}
+		return null;
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	/**
+	 * @return all fields of the class hierarchy
+	 */
+	public List<Field> getFields() {
+		return fieldList;
+	}
+
+	/**
+	 * @return distinct names of all fields of the class hierarchy
+	 */
+	public Set<String> getFieldNames() {
+		return fieldNames;
+	}
+
+	/**
+	 * @return all getter methods of the class hierarchy
+	 */
+	public List<Method> getGetterMethods() {
+		return getterMethodList;
+	}
+
+	/**
+	 * @return property names of the getter methods, in the same order
+	 */
+	public List<String> getPropertyNames() {
+		return propertyNames;
+	}
+
+	public List<Property> getProperties() {
+		return propertyList;
+	}
+
+	/**
+	 * @param name
+	 * @return the property with given name or null if no getter exists
+	 */
+	public Property getProperty(String name) {
+		return propertiesByName.get(name);
+	}
+
+	/**
+	 * @return annotations declared directly on the class
+	 */
+	public List<Annotation> getDeclaredAnnotations() {
+		return annotationList;
+	}
+
+	@Override
+	public String toString() {
+		return "ClassDescriptor[" + type.getName() + "]";
+	}
+
+	/**
+	 * A property described by its getter method, and setter method and field
+	 * with the same name if they exist
+	 */
+	public static final class Property {
+
+		private final String name;
+		private final Method getter;
+		private final Method setter;
+		private final Field field;
+
+		private Property(String name, Method getter, Method setter, Field field) {
+			this.name = name;
+			this.getter = getter;
+			this.setter = setter;
+			this.field = field;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Class<?> getType() {
+			return getter.getReturnType();
+		}
+
+		public Method getGetter() {
+			return getter;
+		}
+
+		/**
+		 * @return the setter or null if the property is read only
+		 */
+		public Method getSetter() {
+			return setter;
+		}
+
+		/**
+		 * @return the field or null if the property is not backed by a field
+		 *         with the same name
+		 */
+		public Field getField() {
+			return field;
+		}
+
+		@Override
+		public String toString() {
+			return "Property[" + name + "]";
+		}
+	}
+
+}
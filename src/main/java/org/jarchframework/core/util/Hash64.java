@@ -0,0 +1,74 @@
+package org.jarchframework.core.util;
+
+/**
+ * Streaming 64-bit hash function of identity values, used by
+ * {@link UtilsForObject#hashCode64(Object)}. Values are fed one by one as
+ * longs, a hash is started by {@link #start()}, mixed by
+ * {@link #mix(long, long)} for each value and completed by
+ * {@link #finish(long, int)}.
+ * <p>
+ * Implementations should be stateless.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public interface Hash64 {
+
+	/**
+	 * Default implementation based on the MurmurHash3 mixing functions
+	 */
+	Hash64 MURMUR3 = new Hash64() {
+
+		private static final long C1 = 0x87c37b91114253d5L;
+		private static final long C2 = 0x4cf5ad432745937fL;
+
+		@Override
+		public long start() {
+			return 0x9e3779b97f4a7c15L;
+		}
+
+		@Override
+		public long mix(long hash, long value) {
+			long k = Long.rotateLeft(value * C1, 31) * C2;
+			return Long.rotateLeft(hash ^ k, 27) * 5 + 0x52dce729;
+		}
+
+		@Override
+		public long finish(long hash, int count) {
+			long h = hash ^ count;
+			h ^= h >>> 33;
+			h *= 0xff51afd7ed558ccdL;
+			h ^= h >>> 33;
+			h *= 0xc4ceb9fe1a85ec53L;
+			h ^= h >>> 33;
+			return h;
+		}
+
+		@Override
+		public String toString() {
+			return "Hash64.MURMUR3";
+		}
+	};
+
+	long start();
+
+	/**
+	 * @param hash
+	 *            the hash so far
+	 * @param value
+	 *            next value
+	 * @return the hash including given value
+	 */
+	long mix(long hash, long value);
+
+	/**
+	 * @param hash
+	 *            the hash of all values
+	 * @param count
+	 *            number of mixed values
+	 * @return the final hash
+	 */
+	long finish(long hash, int count);
+
+}
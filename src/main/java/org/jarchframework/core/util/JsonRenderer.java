@@ -0,0 +1,343 @@
+package org.jarchframework.core.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.reflect.Array;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.jarchframework.core.model.ToString;
+
+/**
+ * Renders objects as JSON straight to a {@link Writer}, an
+ * {@link OutputStream} or any {@link Appendable}, without building an
+ * intermediate string. Objects having {@link ToString} properties are
+ * rendered as JSON objects of those properties, nested objects, collections,
+ * arrays and maps are rendered recursively.
+ * <p>
+ * Rendering is bounded so that the cost of a log line stays predictable:
+ * <ul>
+ * <li>objects deeper than the max depth and objects already being rendered
+ * on the current path are rendered as {@code "..."} and {@code "<cycle>"}
+ * </li>
+ * <li>collections, arrays and maps are cut after the max elements, followed
+ * by a {@code "..."} element</li>
+ * <li>output is cut at the max length and ends with {@code ...}, the output
+ * is not valid JSON anymore in that case</li>
+ * </ul>
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * JsonRenderer.DEFAULT.write(users, writer);
+ * </code>
+ * <p>
+ * Renderers are immutable and thread safe.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class JsonRenderer {
+
+	public static final int DEFAULT_MAX_DEPTH = 8;
+	public static final int DEFAULT_MAX_ELEMENTS = 100;
+	public static final int DEFAULT_MAX_LENGTH = 16 * 1024;
+
+	public static final JsonRenderer DEFAULT = new JsonRenderer(DEFAULT_MAX_DEPTH, DEFAULT_MAX_ELEMENTS,
+			DEFAULT_MAX_LENGTH);
+
+	private static final String TRUNCATED = "...";
+	private static final String CYCLE = "<cycle>";
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final int maxDepth;
+	private final int maxElements;
+	private final int maxLength;
+
+	/**
+	 * @param maxDepth
+	 *            nesting level of objects, collections and maps to render
+	 * @param maxElements
+	 *            elements to render of a collection, an array or a map
+	 * @param maxLength
+	 *            characters to write at most
+	 */
+	public JsonRenderer(int maxDepth, int maxElements, int maxLength) {
+		if (maxDepth < 1 || maxElements < 0 || maxLength < TRUNCATED.length()) {
+			throw new IllegalArgumentException(
+					String.format("Invalid limits, depth: %d elements: %d length: %d", maxDepth, maxElements,
+							maxLength));
+		}
+		this.maxDepth = maxDepth;
+		this.maxElements = maxElements;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * @param value
+	 * @return JSON of given value
+	 */
+	public String render(Object value) {
+		StringBuilder builder = new StringBuilder();
+		try {
+			write(value, builder);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Writes JSON of given value to given stream in UTF-8. The stream is
+	 * flushed but not closed.
+	 *
+	 * @param value
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(Object value, OutputStream out) throws IOException {
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		write(value, writer);
+		writer.flush();
+	}
+
+	/**
+	 * Writes JSON of given value to given appendable, which is not flushed
+	 *
+	 * @param value
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(Object value, Appendable out) throws IOException {
+		Output output = new Output(out, maxLength);
+		try {
+			new Context(output).value(value, 0);
+		} catch (LimitReachedException e) {
+			out.append(TRUNCATED);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "JsonRenderer[maxDepth=" + maxDepth + ", maxElements=" + maxElements + ", maxLength=" + maxLength
+				+ "]";
+	}
+
+	/**
+	 * State of a single rendering
+	 */
+	private final class Context {
+
+		private final Output out;
+		private final Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+		private Context(Output out) {
+			this.out = out;
+		}
+
+		private void value(Object value, int depth) throws IOException {
+			if (value == null) {
+				out.append("null");
+			} else if (value instanceof Boolean) {
+				out.append(value.toString());
+			} else if (value instanceof Number) {
+				number((Number) value);
+			} else if (value instanceof CharSequence || value instanceof Character || value instanceof Enum) {
+				string(value.toString());
+			} else if (value instanceof Date) {
+				// java.sql.Date and Time do not support toInstant
+				string(Instant.ofEpochMilli(((Date) value).getTime()).toString());
+			} else if (depth >= maxDepth) {
+				string(TRUNCATED);
+			} else if (!visiting.add(value)) {
+				string(CYCLE);
+			} else {
+				try {
+					composite(value, depth + 1);
+				} finally {
+					visiting.remove(value);
+				}
+			}
+		}
+
+		private void number(Number value) throws IOException {
+			if ((value instanceof Double && !Double.isFinite(value.doubleValue()))
+					|| (value instanceof Float && !Float.isFinite(value.floatValue()))) {
+				string(value.toString());
+			} else {
+				out.append(value.toString());
+			}
+		}
+
+		private void composite(Object value, int depth) throws IOException {
+			if (value instanceof Map) {
+				map((Map<?, ?>) value, depth);
+			} else if (value instanceof Iterable) {
+				array(((Iterable<?>) value).iterator(), depth);
+			} else if (value.getClass().isArray()) {
+				array(value, depth);
+			} else {
+				PropertyAccessor[] accessors = UtilsForObject.getToStringAccessors(value.getClass());
+				if (accessors.length == 0) {
+					string(value.toString());
+				} else {
+					object(value, accessors, depth);
+				}
+			}
+		}
+
+		private void object(Object value, PropertyAccessor[] accessors, int depth) throws IOException {
+			out.append('{');
+			for (int i = 0; i < accessors.length; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				string(accessors[i].getPath());
+				out.append(':');
+				value(accessors[i].get(value), depth);
+			}
+			out.append('}');
+		}
+
+		private void map(Map<?, ?> map, int depth) throws IOException {
+			out.append('{');
+			int count = 0;
+			for (Map.Entry<?, ?> entry : map.entrySet()) {
+				if (count > 0) {
+					out.append(',');
+				}
+				if (count++ == maxElements) {
+					string(TRUNCATED);
+					out.append(":null");
+					break;
+				}
+				string(String.valueOf(entry.getKey()));
+				out.append(':');
+				value(entry.getValue(), depth);
+			}
+			out.append('}');
+		}
+
+		private void array(Iterator<?> iterator, int depth) throws IOException {
+			out.append('[');
+			int count = 0;
+			while (iterator.hasNext()) {
+				if (count > 0) {
+					out.append(',');
+				}
+				if (count++ == maxElements) {
+					string(TRUNCATED);
+					break;
+				}
+				value(iterator.next(), depth);
+			}
+			out.append(']');
+		}
+
+		private void array(Object array, int depth) throws IOException {
+			out.append('[');
+			int length = Array.getLength(array);
+			for (int i = 0; i < length; i++) {
+				if (i > 0) {
+					out.append(',');
+				}
+				if (i == maxElements) {
+					string(TRUNCATED);
+					break;
+				}
+				value(Array.get(array, i), depth);
+			}
+			out.append(']');
+		}
+
+		private void string(String value) throws IOException {
+			out.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				switch (c) {
+				case '"':
+					out.append("\\\"");
+					break;
+				case '\\':
+					out.append("\\\\");
+					break;
+				case '\n':
+					out.append("\\n");
+					break;
+				case '\r':
+					out.append("\\r");
+					break;
+				case '\t':
+					out.append("\\t");
+					break;
+				default:
+					if (c < 0x20) {
+						out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+					} else {
+						out.append(c);
+					}
+				}
+			}
+			out.append('"');
+		}
+
+	}
+
+	/**
+	 * Appendable counting the written characters, rendering stops when the
+	 * limit is reached
+	 */
+	private static final class Output {
+
+		private final Appendable target;
+		private int remaining;
+
+		private Output(Appendable target, int maxLength) {
+			this.target = target;
+			this.remaining = maxLength - TRUNCATED.length();
+		}
+
+		private Output append(char c) throws IOException {
+			if (remaining == 0) {
+				throw new LimitReachedException();
+			}
+			remaining--;
+			target.append(c);
+			return this;
+		}
+
+		private Output append(String value) throws IOException {
+			if (value.length() > remaining) {
+				target.append(value, 0, remaining);
+				remaining = 0;
+				throw new LimitReachedException();
+			}
+			remaining -= value.length();
+			target.append(value);
+			return this;
+		}
+
+	}
+
+	private static final class LimitReachedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private LimitReachedException() {
+			super(null, null, false, false);
+		}
+
+	}
+
+}
@@ -0,0 +1,55 @@
+package org.jarchframework.core.util;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keys of {@link PropertyMap}s and their positions, shared by all maps of a
+ * class or of a flattening
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class KeyIndex {
+
+	private final String[] keys;
+	private final Map<String, Integer> positions;
+	/**
+	 * Accessors of the keys for views, null if the values are given
+	 */
+	private final PropertyAccessor[] accessors;
+
+	KeyIndex(String[] keys, PropertyAccessor[] accessors) {
+		this.keys = keys;
+		this.accessors = accessors;
+		this.positions = new HashMap<>(keys.length * 2);
+		for (int i = 0; i < keys.length; i++) {
+			if (positions.put(keys[i], i) != null) {
+				throw new IllegalArgumentException("Duplicate key: " + keys[i]);
+			}
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return position of given key, -1 if not found
+	 */
+	int indexOf(Object key) {
+		Integer position = positions.get(key);
+		return position == null ? -1 : position;
+	}
+
+	int size() {
+		return keys.length;
+	}
+
+	String key(int index) {
+		return keys[index];
+	}
+
+	Object value(Object target, int index) {
+		return accessors[index].get(target);
+	}
+
+}
@@ -0,0 +1,439 @@
+package org.jarchframework.core.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.model.ToStringStyle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolved metadata of classes persisted between runs, so that a new JVM does
+ * not resolve it again: identity properties, toString properties and style,
+ * and the getter methods or fields of the property paths of each class.
+ * <p>
+ * A snapshot is captured after the metadata is resolved, for instance after
+ * {@link UtilsForObject#warmUp(String)}, and saved with a build version. On
+ * startup it is loaded for the same build version and installed, then the
+ * caches are filled from it as the classes are used. The identity and
+ * toString metadata is trusted for the build version it is saved for, so the
+ * annotations of a class are not read again. The members of each path are
+ * looked up by their saved names and validated against the live class and
+ * access strategies when the path is first used, a path which does not
+ * validate is resolved as usual.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * MetadataSnapshot snapshot = MetadataSnapshot.load(file, buildVersion);<br>
+ * if (snapshot == null) {<br>
+ * &nbsp;&nbsp;UtilsForObject.warmUp("com.acme.model");<br>
+ * &nbsp;&nbsp;MetadataSnapshot.capture("com.acme.model").save(file, buildVersion);<br>
+ * } else {<br>
+ * &nbsp;&nbsp;MetadataSnapshot.install(snapshot);<br>
+ * }
+ * </code>
+ * <p>
+ * A snapshot should be installed before the classes are used, metadata
+ * already cached is not replaced.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class MetadataSnapshot {
+
+	private static final Logger logger = LoggerFactory.getLogger(MetadataSnapshot.class);
+
+	private static final int MAGIC = 0x4a415243;
+	private static final int FORMAT_VERSION = 1;
+
+	private static volatile MetadataSnapshot installed;
+
+	private final Map<String, ClassMetadata> classes;
+	private final AtomicLong validated = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	private MetadataSnapshot(Map<String, ClassMetadata> classes) {
+		this.classes = classes;
+	}
+
+	/**
+	 * Captures the metadata of the classes annotated with {@link Identity} or
+	 * {@link ToString} in given package and its subpackages
+	 *
+	 * @param basePackage
+	 * @return the snapshot
+	 */
+	public static MetadataSnapshot capture(String basePackage) {
+		ScanResult result = UtilsForPackageScan.scan(basePackage, Thread.currentThread().getContextClassLoader(),
+				Identity.class, ToString.class);
+		return capture(result.getAnnotatedClasses());
+	}
+
+	/**
+	 * Captures the metadata of given classes, resolving it if not resolved
+	 * yet. Besides the identity and toString properties, all paths accessed
+	 * so far on these classes are captured.
+	 *
+	 * @param types
+	 * @return the snapshot
+	 */
+	public static MetadataSnapshot capture(Collection<Class<?>> types) {
+		Map<String, ClassMetadata> classes = new LinkedHashMap<>();
+		for (Class<?> type : types) {
+			ClassMetadata metadata = new ClassMetadata(UtilsForObject.getIdentityProperties(type),
+					UtilsForObject.getToStringProperties(type), styleOf(type));
+			for (PropertyAccessor accessor : PropertyAccessor.getCachedAccessors(type)) {
+				Member[] members = accessor.getMembers();
+				if (members == null) {
+					continue;
+				}
+				MemberRef[] refs = new MemberRef[members.length];
+				Class<?> current = type;
+				for (int i = 0; i < members.length; i++) {
+					refs[i] = new MemberRef(members[i] instanceof Field, members[i].getDeclaringClass().getName(),
+							members[i].getName(), PropertyAccessor.getAccessStrategy(current));
+					current = valueType(members[i]);
+				}
+				metadata.members.put(accessor.getPath(), refs);
+			}
+			classes.put(type.getName(), metadata);
+		}
+		return new MetadataSnapshot(classes);
+	}
+
+	private static ToStringStyle styleOf(Class<?> type) {
+		org.apache.commons.lang3.builder.ToStringStyle style = UtilsForObject.getToStringStyleOf(type);
+		for (ToStringStyle candidate : ToStringStyle.values()) {
+			if (candidate.getToStringStyle() == style) {
+				return candidate;
+			}
+		}
+		return ToStringStyle.DEFAULT;
+	}
+
+	/**
+	 * Writes this snapshot to given file, which is created or replaced
+	 *
+	 * @param file
+	 * @param buildVersion
+	 *            version of the classes, the snapshot is loaded only for the
+	 *            same version
+	 * @throws IOException
+	 */
+	public void save(Path file, String buildVersion) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file)) {
+			save(out, buildVersion);
+		}
+	}
+
+	/**
+	 * Writes this snapshot to given stream, which is flushed but not closed
+	 *
+	 * @param out
+	 * @param buildVersion
+	 * @throws IOException
+	 */
+	public void save(OutputStream out, String buildVersion) throws IOException {
+		DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+		data.writeInt(MAGIC);
+		data.writeInt(FORMAT_VERSION);
+		data.writeUTF(buildVersion);
+		data.writeInt(classes.size());
+		for (Map.Entry<String, ClassMetadata> entry : classes.entrySet()) {
+			ClassMetadata metadata = entry.getValue();
+			data.writeUTF(entry.getKey());
+			writeStrings(data, metadata.identityProperties);
+			writeStrings(data, metadata.toStringProperties);
+			data.writeByte(metadata.toStringStyle.ordinal());
+			data.writeInt(metadata.members.size());
+			for (Map.Entry<String, MemberRef[]> path : metadata.members.entrySet()) {
+				data.writeUTF(path.getKey());
+				data.writeShort(path.getValue().length);
+				for (MemberRef ref : path.getValue()) {
+					data.writeBoolean(ref.field);
+					data.writeUTF(ref.declaringClass);
+					data.writeUTF(ref.name);
+					data.writeByte(ref.strategy.ordinal());
+				}
+			}
+		}
+		data.flush();
+	}
+
+	private static void writeStrings(DataOutputStream data, String[] values) throws IOException {
+		data.writeShort(values.length);
+		for (String value : values) {
+			data.writeUTF(value);
+		}
+	}
+
+	private static String[] readStrings(DataInputStream data) throws IOException {
+		String[] values = new String[data.readUnsignedShort()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = data.readUTF();
+		}
+		return values;
+	}
+
+	private static <E extends Enum<E>> E readConstant(DataInputStream data, E[] constants) throws IOException {
+		int ordinal = data.readUnsignedByte();
+		if (ordinal >= constants.length) {
+			throw new IOException(String.format("Corrupt metadata snapshot, no %s with ordinal: %d",
+					constants[0].getDeclaringClass().getSimpleName(), ordinal));
+		}
+		return constants[ordinal];
+	}
+
+	private static int readCount(DataInputStream data) throws IOException {
+		int count = data.readInt();
+		if (count < 0) {
+			throw new IOException("Corrupt metadata snapshot, negative count: " + count);
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the snapshot saved for given build version
+	 *
+	 * @param file
+	 * @param buildVersion
+	 * @return the snapshot, null if the file does not exist, can not be read,
+	 *         is corrupt or is saved for another build version
+	 */
+	public static MetadataSnapshot load(Path file, String buildVersion) {
+		try (InputStream in = Files.newInputStream(file)) {
+			return load(in, buildVersion);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			logger.warn(String.format("Metadata snapshot could not be read: %s, %s", file, e));
+			return null;
+		}
+	}
+
+	/**
+	 * @param in
+	 * @param buildVersion
+	 * @return the snapshot, null if it is saved for another build version
+	 * @throws IOException
+	 *             if the stream can not be read, is not a snapshot or is
+	 *             corrupt
+	 */
+	public static MetadataSnapshot load(InputStream in, String buildVersion) throws IOException {
+		DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+		if (data.readInt() != MAGIC || data.readInt() != FORMAT_VERSION) {
+			throw new IOException("Not a metadata snapshot of this format");
+		}
+		String savedVersion = data.readUTF();
+		if (!savedVersion.equals(buildVersion)) {
+			logger.info(String.format("Metadata snapshot of build %s is ignored for build %s", savedVersion,
+					buildVersion));
+			return null;
+		}
+		ToStringStyle[] styles = ToStringStyle.values();
+		AccessStrategy[] strategies = AccessStrategy.values();
+		int count = readCount(data);
+		// a corrupt count ends with EOFException instead of a huge map
+		Map<String, ClassMetadata> classes = new HashMap<>(Math.min(count, 1024) * 2);
+		for (int i = 0; i < count; i++) {
+			String className = data.readUTF();
+			ClassMetadata metadata = new ClassMetadata(readStrings(data), readStrings(data),
+					readConstant(data, styles));
+			int paths = readCount(data);
+			for (int j = 0; j < paths; j++) {
+				String path = data.readUTF();
+				MemberRef[] refs = new MemberRef[data.readUnsignedShort()];
+				for (int k = 0; k < refs.length; k++) {
+					refs[k] = new MemberRef(data.readBoolean(), data.readUTF(), data.readUTF(),
+							readConstant(data, strategies));
+				}
+				metadata.members.put(path, refs);
+			}
+			classes.put(className, metadata);
+		}
+		return new MetadataSnapshot(classes);
+	}
+
+	/**
+	 * Installs given snapshot to fill the caches from
+	 *
+	 * @param snapshot
+	 *            the snapshot, null to uninstall
+	 */
+	public static void install(MetadataSnapshot snapshot) {
+		installed = snapshot;
+	}
+
+	public static MetadataSnapshot getInstalled() {
+		return installed;
+	}
+
+	private static ClassMetadata metadataOf(Class<?> type) {
+		MetadataSnapshot snapshot = installed;
+		return snapshot == null ? null : snapshot.classes.get(type.getName());
+	}
+
+	/**
+	 * @return identity properties of given class in the installed snapshot,
+	 *         null if none
+	 */
+	static String[] getIdentityProperties(Class<?> type) {
+		ClassMetadata metadata = metadataOf(type);
+		return metadata == null ? null : metadata.identityProperties;
+	}
+
+	/**
+	 * @return toString properties of given class in the installed snapshot,
+	 *         null if none
+	 */
+	static String[] getToStringProperties(Class<?> type) {
+		ClassMetadata metadata = metadataOf(type);
+		return metadata == null ? null : metadata.toStringProperties;
+	}
+
+	/**
+	 * @return toString style of given class in the installed snapshot, null
+	 *         if none
+	 */
+	static ToStringStyle getToStringStyle(Class<?> type) {
+		ClassMetadata metadata = metadataOf(type);
+		return metadata == null ? null : metadata.toStringStyle;
+	}
+
+	/**
+	 * Finds the members of given path in the installed snapshot and validates
+	 * them against the live classes and access strategies
+	 *
+	 * @return the members, null if none or not valid anymore
+	 */
+	static Member[] getMembers(Class<?> type, String path) {
+		MetadataSnapshot snapshot = installed;
+		ClassMetadata metadata = snapshot == null ? null : snapshot.classes.get(type.getName());
+		MemberRef[] refs = metadata == null ? null : metadata.members.get(path);
+		if (refs == null) {
+			return null;
+		}
+		Member[] members = new Member[refs.length];
+		Class<?> current = type;
+		try {
+			for (int i = 0; i < refs.length; i++) {
+				MemberRef ref = refs[i];
+				if (PropertyAccessor.getAccessStrategy(current) != ref.strategy) {
+					return snapshot.reject(type, path);
+				}
+				Member member = ref.field
+						? Class.forName(ref.declaringClass, false, current.getClassLoader()).getDeclaredField(ref.name)
+						: current.getMethod(ref.name);
+				if (!member.getDeclaringClass().getName().equals(ref.declaringClass)
+						|| !member.getDeclaringClass().isAssignableFrom(current)) {
+					return snapshot.reject(type, path);
+				}
+				members[i] = member;
+				current = valueType(member);
+			}
+		} catch (ClassNotFoundException | NoSuchMethodException | NoSuchFieldException | LinkageError e) {
+			return snapshot.reject(type, path);
+		}
+		String[] fields = StringUtils.splitPreserveAllTokens(path, '.');
+		if (refs.length < fields.length && !Map.class.isAssignableFrom(current)
+				&& !Collection.class.isAssignableFrom(current)
+				&& PropertyAccessor.findMember(current, fields[refs.length]) != null) {
+			// a getter or field missing when the snapshot was saved exists now
+			return snapshot.reject(type, path);
+		}
+		snapshot.validated.incrementAndGet();
+		return members;
+	}
+
+	private Member[] reject(Class<?> type, String path) {
+		rejected.incrementAndGet();
+		logger.debug(String.format("Metadata snapshot does not match %s of Class: %s", path, type.getName()));
+		return null;
+	}
+
+	private static Class<?> valueType(Member member) {
+		return member instanceof Field ? ((Field) member).getType() : ((Method) member).getReturnType();
+	}
+
+	/**
+	 * @return number of classes in this snapshot
+	 */
+	public int size() {
+		return classes.size();
+	}
+
+	/**
+	 * @return number of paths whose members are validated and used
+	 */
+	public long getValidatedCount() {
+		return validated.get();
+	}
+
+	/**
+	 * @return number of paths whose members do not match the live classes
+	 */
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	@Override
+	public String toString() {
+		return "MetadataSnapshot[classes=" + classes.size() + ", validated=" + validated.get() + ", rejected="
+				+ rejected.get() + "]";
+	}
+
+	private static final class ClassMetadata {
+
+		private final String[] identityProperties;
+		private final String[] toStringProperties;
+		private final ToStringStyle toStringStyle;
+		private final Map<String, MemberRef[]> members = new LinkedHashMap<>();
+
+		private ClassMetadata(String[] identityProperties, String[] toStringProperties,
+				ToStringStyle toStringStyle) {
+			this.identityProperties = identityProperties;
+			this.toStringProperties = toStringProperties;
+			this.toStringStyle = toStringStyle;
+		}
+	}
+
+	/**
+	 * Signature of a getter method or field, with the access strategy it is
+	 * resolved by
+	 */
+	private static final class MemberRef {
+
+		private final boolean field;
+		private final String declaringClass;
+		private final String name;
+		private final AccessStrategy strategy;
+
+		private MemberRef(boolean field, String declaringClass, String name, AccessStrategy strategy) {
+			this.field = field;
+			this.declaringClass = declaringClass;
+			this.name = name;
+			this.strategy = strategy;
+		}
+	}
+
+}
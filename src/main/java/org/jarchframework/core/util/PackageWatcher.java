@@ -0,0 +1,424 @@
+package org.jarchframework.core.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the result of
+ * {@link UtilsForPackageScan#getAnnotatedClasses(String, Class)} up to date by
+ * watching the package directories with a {@link WatchService}. Only the
+ * created, modified and deleted class files are loaded again, and the changes
+ * are pushed to the listeners as {@link Delta}s.
+ * <p>
+ * Changes are applied when {@link #poll()} is called, or continuously by a
+ * daemon thread after {@link #start()}. For hot reloading, give a class loader
+ * supplier which returns a new class loader after the class files change.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * PackageWatcher watcher = PackageWatcher.watch("com.acme.model", Identity.class);<br>
+ * watcher.addListener(delta -&gt; cache.evict(delta.getModified()));<br>
+ * watcher.start();
+ * </code>
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class PackageWatcher implements Closeable {
+
+	private static final Logger logger = LoggerFactory.getLogger(PackageWatcher.class);
+
+	private static final String CLASS_SUFFIX = ".class";
+
+	private final String packageName;
+	private final Class<? extends Annotation> annotationClass;
+	private final Supplier<ClassLoader> classLoaderSupplier;
+	private final WatchService watchService;
+	private final List<Consumer<Delta>> listeners = new CopyOnWriteArrayList<>();
+
+	private final Map<WatchKey, Path> directories = new HashMap<>();
+	/**
+	 * Package names of the watched directories
+	 */
+	private final Map<Path, String> packages = new HashMap<>();
+	/**
+	 * Annotated classes by their names
+	 */
+	private final Map<String, Class<?>> classes = new LinkedHashMap<>();
+
+	private volatile boolean closed;
+	private Thread thread;
+
+	private PackageWatcher(String packageName, Class<? extends Annotation> annotationClass,
+			Supplier<ClassLoader> classLoaderSupplier) throws IOException {
+		this.packageName = packageName;
+		this.annotationClass = annotationClass;
+		this.classLoaderSupplier = classLoaderSupplier;
+		this.watchService = FileSystems.getDefault().newWatchService();
+		try {
+			ClassLoader classLoader = classLoaderSupplier.get();
+			Map<String, Boolean> found = new LinkedHashMap<>();
+			for (File directory : UtilsForPackageScan.getDirectories(packageName, classLoader)) {
+				if (directory.isDirectory()) {
+					register(directory.toPath(), packageName, found);
+				}
+			}
+			for (String className : found.keySet()) {
+				Class<?> clazz = load(className, classLoader);
+				if (clazz != null && clazz.isAnnotationPresent(annotationClass)) {
+					classes.put(className, clazz);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			watchService.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Scans the package with the context class loader and starts watching its
+	 * directories
+	 *
+	 * @param packageName
+	 * @param annotationClass
+	 * @return the watcher, changes are applied on {@link #poll()} until it is
+	 *         {@link #start() started}
+	 * @throws IOException
+	 */
+	public static PackageWatcher watch(String packageName, Class<? extends Annotation> annotationClass)
+			throws IOException {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return watch(packageName, annotationClass, () -> classLoader);
+	}
+
+	/**
+	 * @param packageName
+	 * @param annotationClass
+	 * @param classLoaderSupplier
+	 *            supplies the class loader to find the package directories and
+	 *            to load the changed classes, called once per poll
+	 * @return the watcher, changes are applied on {@link #poll()} until it is
+	 *         {@link #start() started}
+	 * @throws IOException
+	 */
+	public static PackageWatcher watch(String packageName, Class<? extends Annotation> annotationClass,
+			Supplier<ClassLoader> classLoaderSupplier) throws IOException {
+		return new PackageWatcher(packageName, annotationClass, classLoaderSupplier);
+	}
+
+	/**
+	 * Registers given directory and its subdirectories, collecting the names
+	 * of the class files in them
+	 */
+	private void register(Path directory, String directoryPackage, Map<String, Boolean> found) throws IOException {
+		WatchKey key = directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+				StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+		directories.put(key, directory);
+		packages.put(directory, directoryPackage);
+		List<Path> children;
+		try (Stream<Path> list = Files.list(directory)) {
+			children = list.collect(Collectors.toList());
+		}
+		for (Path child : children) {
+			String name = child.getFileName().toString();
+			if (Files.isDirectory(child)) {
+				register(child, directoryPackage + "." + name, found);
+			} else if (name.endsWith(CLASS_SUFFIX)) {
+				found.put(className(directoryPackage, name), Boolean.TRUE);
+			}
+		}
+	}
+
+	private static String className(String directoryPackage, String fileName) {
+		return directoryPackage + '.' + fileName.substring(0, fileName.length() - CLASS_SUFFIX.length());
+	}
+
+	private static Class<?> load(String className, ClassLoader classLoader) {
+		try {
+			return Class.forName(className, false, classLoader);
+		} catch (ClassNotFoundException | LinkageError e) {
+			// a class file may be read while it is being written
+			logger.debug(String.format("Class could not be loaded: %s", className), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Applies the changes waiting in the watch service without blocking
+	 *
+	 * @return the changes, which are also pushed to the listeners
+	 */
+	public Delta poll() {
+		WatchKey key = watchService.poll();
+		return key == null ? new Delta() : apply(key);
+	}
+
+	/**
+	 * Waits up to given time for a change, then applies all waiting changes
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return the changes, which are also pushed to the listeners
+	 * @throws InterruptedException
+	 */
+	public Delta poll(long timeout, TimeUnit unit) throws InterruptedException {
+		WatchKey key = watchService.poll(timeout, unit);
+		return key == null ? new Delta() : apply(key);
+	}
+
+	/**
+	 * Applies the events of given key and all other waiting keys
+	 */
+	private Delta apply(WatchKey first) {
+		Delta delta;
+		synchronized (this) {
+			// true for changed, false for deleted class files
+			Map<String, Boolean> changes = new LinkedHashMap<>();
+			boolean overflow = false;
+			for (WatchKey key = first; key != null; key = watchService.poll()) {
+				overflow |= collect(key, changes);
+			}
+			delta = overflow ? rescan() : apply(changes);
+		}
+		if (!delta.isEmpty()) {
+			for (Consumer<Delta> listener : listeners) {
+				try {
+					listener.accept(delta);
+				} catch (RuntimeException e) {
+					// a failing listener should not keep the others from the changes
+					logger.warn(String.format("Listener failed on changes of package: %s", packageName), e);
+				}
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * @return true if events of the key are lost
+	 */
+	private boolean collect(WatchKey key, Map<String, Boolean> changes) {
+		Path directory = directories.get(key);
+		boolean overflow = false;
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW || directory == null) {
+				overflow = true;
+				continue;
+			}
+			Path child = directory.resolve((Path) event.context());
+			String name = child.getFileName().toString();
+			String childPackage = packages.get(directory) + "." + name;
+			if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+				if (packages.containsKey(child)) {
+					unregister(child, changes);
+				} else if (name.endsWith(CLASS_SUFFIX)) {
+					changes.put(className(packages.get(directory), name), Boolean.FALSE);
+				}
+			} else if (Files.isDirectory(child)) {
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && !packages.containsKey(child)) {
+					try {
+						register(child, childPackage, changes);
+					} catch (IOException e) {
+						logger.warn(String.format("Directory could not be watched: %s", child), e);
+						overflow = true;
+					}
+				}
+			} else if (name.endsWith(CLASS_SUFFIX)) {
+				changes.put(className(packages.get(directory), name), Boolean.TRUE);
+			}
+		}
+		if (!key.reset()) {
+			directories.remove(key);
+		}
+		return overflow;
+	}
+
+	/**
+	 * Forgets a deleted directory and marks the classes of its packages as
+	 * deleted
+	 */
+	private void unregister(Path directory, Map<String, Boolean> changes) {
+		String prefix = packages.get(directory) + ".";
+		for (Iterator<Map.Entry<WatchKey, Path>> it = directories.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<WatchKey, Path> entry = it.next();
+			if (entry.getValue().startsWith(directory)) {
+				entry.getKey().cancel();
+				packages.remove(entry.getValue());
+				it.remove();
+			}
+		}
+		for (String className : classes.keySet()) {
+			if (className.startsWith(prefix)) {
+				changes.put(className, Boolean.FALSE);
+			}
+		}
+	}
+
+	private Delta apply(Map<String, Boolean> changes) {
+		Delta delta = new Delta();
+		ClassLoader classLoader = changes.isEmpty() ? null : classLoaderSupplier.get();
+		for (Map.Entry<String, Boolean> change : changes.entrySet()) {
+			String className = change.getKey();
+			Class<?> clazz = change.getValue() ? load(className, classLoader) : null;
+			if (clazz != null && clazz.isAnnotationPresent(annotationClass)) {
+				Class<?> previous = classes.put(className, clazz);
+				(previous == null ? delta.added : delta.modified).add(clazz);
+			} else {
+				Class<?> previous = classes.remove(className);
+				if (previous != null) {
+					delta.removed.add(previous);
+				}
+			}
+		}
+		return delta;
+	}
+
+	/**
+	 * Scans the whole package again when events are lost
+	 */
+	private Delta rescan() {
+		logger.info(String.format("Watch events are lost, rescanning package: %s", packageName));
+		for (WatchKey key : directories.keySet()) {
+			key.cancel();
+		}
+		directories.clear();
+		packages.clear();
+		Map<String, Boolean> changes = new LinkedHashMap<>();
+		for (String className : classes.keySet()) {
+			changes.put(className, Boolean.FALSE);
+		}
+		try {
+			for (File directory : UtilsForPackageScan.getDirectories(packageName, classLoaderSupplier.get())) {
+				if (directory.isDirectory()) {
+					register(directory.toPath(), packageName, changes);
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return apply(changes);
+	}
+
+	/**
+	 * Starts a daemon thread which applies the changes as they happen and
+	 * pushes them to the listeners
+	 */
+	public synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+		thread = new Thread(() -> {
+			try {
+				while (!closed) {
+					try {
+						poll(1, TimeUnit.SECONDS);
+					} catch (ClosedWatchServiceException e) {
+						throw e;
+					} catch (RuntimeException e) {
+						logger.warn(String.format("Changes of package could not be applied: %s", packageName), e);
+					}
+				}
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				// closed
+			}
+		}, "PackageWatcher-" + packageName);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void addListener(Consumer<Delta> listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(Consumer<Delta> listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * @return the annotated classes as of the last applied changes
+	 */
+	public synchronized Set<Class<?>> getAnnotatedClasses() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(classes.values()));
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		watchService.close();
+		Thread running;
+		synchronized (this) {
+			running = thread;
+		}
+		if (running != null) {
+			running.interrupt();
+		}
+	}
+
+	/**
+	 * Changes of the annotated classes applied by a poll
+	 */
+	public static final class Delta {
+
+		private final Set<Class<?>> added = new LinkedHashSet<>();
+		private final Set<Class<?>> modified = new LinkedHashSet<>();
+		private final Set<Class<?>> removed = new LinkedHashSet<>();
+
+		/**
+		 * @return classes created or annotated since the last poll
+		 */
+		public Set<Class<?>> getAdded() {
+			return Collections.unmodifiableSet(added);
+		}
+
+		/**
+		 * @return classes whose class files are modified, as loaded again
+		 */
+		public Set<Class<?>> getModified() {
+			return Collections.unmodifiableSet(modified);
+		}
+
+		/**
+		 * @return classes deleted or not annotated anymore, as loaded before
+		 */
+		public Set<Class<?>> getRemoved() {
+			return Collections.unmodifiableSet(removed);
+		}
+
+		public boolean isEmpty() {
+			return added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "Delta[added=" + added + ", modified=" + modified + ", removed=" + removed + "]";
+		}
+	}
+
+}
@@ -0,0 +1,535 @@
+package org.jarchframework.core.util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToLongFunction;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jarchframework.core.util.ReflectionDiagnostics.Kind;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cached accessor of a property path for a given class. The getter methods, or
+ * the fields depending on the {@link AccessStrategy} of the classes, on the
+ * path are resolved once against the declared types and invoked directly
+ * afterwards. When a value on the path is a {@link Map} or a
+ * {@link Collection}, or its getter can not be resolved from the declared
+ * type, the rest of the path is resolved through the runtime class as
+ * {@link UtilsForReflection#getValue(Object, String)} does.
+ * <p>
+ * A single property whose getter returns a primitive is also read through a
+ * primitive typed function, so that it can be hashed and compared without
+ * boxing, see {@link #isPrimitive()}.
+ * <p>
+ * Accessors are shared, see {@link #of(Class, String)}.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class PropertyAccessor {
+
+	private static final Logger logger = LoggerFactory.getLogger(PropertyAccessor.class);
+
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, PropertyAccessor>> cache = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Class<?>, AccessStrategy> strategies = new ConcurrentHashMap<>();
+	private static volatile AccessStrategy defaultStrategy = AccessStrategy.GETTER_ONLY;
+
+	private final Class<?> type;
+	private final String path;
+	private final String[] fields;
+	/**
+	 * Getter methods or fields of the resolved part of the path
+	 */
+	private final Member[] getters;
+	/**
+	 * Getters of the fields in {@link #getters} typed as (Object)Object, null
+	 * for the methods
+	 */
+	private final MethodHandle[] fieldGetters;
+	private final boolean expression;
+	/**
+	 * Declared type at which the resolution has stopped because no getter
+	 * exists, null if it has stopped on a map or collection
+	 */
+	private final Class<?> unresolvedType;
+	/**
+	 * Return type of the getter if this is a single property path with a
+	 * primitive getter, null otherwise
+	 */
+	private final Class<?> primitiveType;
+	private final ToLongFunction<Object> longGetter;
+	private final ToDoubleFunction<Object> doubleGetter;
+	private final Predicate<Object> booleanGetter;
+
+	private PropertyAccessor(Class<?> type, String path) {
+		this.type = type;
+		this.path = path;
+		this.expression = path.contains("[");
+		this.fields = expression ? new String[0] : StringUtils.splitPreserveAllTokens(path, '.');
+
+		List<Member> resolved = new ArrayList<>(fields.length);
+		Class<?> current = type;
+		Class<?> unresolved = null;
+		Member[] snapshot = expression ? null : MetadataSnapshot.getMembers(type, path);
+		if (snapshot != null) {
+			for (Member getter : snapshot) {
+				makeAccessible(getter);
+				resolved.add(getter);
+				current = valueType(getter);
+			}
+			if (snapshot.length < fields.length && !Map.class.isAssignableFrom(current)
+					&& !Collection.class.isAssignableFrom(current)) {
+				unresolved = current;
+			}
+		} else {
+			for (String field : fields) {
+				if (field.trim().length() == 0) {
+					throw new RuntimeException("property should not be empty");
+				}
+				if (Map.class.isAssignableFrom(current) || Collection.class.isAssignableFrom(current)) {
+					break;
+				}
+				Member getter = findMember(current, field);
+				if (getter == null) {
+					unresolved = current;
+					break;
+				}
+				makeAccessible(getter);
+				resolved.add(getter);
+				current = valueType(getter);
+			}
+		}
+		this.getters = resolved.toArray(new Member[resolved.size()]);
+		this.unresolvedType = unresolved;
+		this.fieldGetters = new MethodHandle[getters.length];
+
+		MethodHandle handle = null;
+		for (int i = 0; i < getters.length; i++) {
+			if (getters[i] instanceof Field) {
+				handle = unreflect(getters[i]);
+				if (handle == null) {
+					throw new IllegalStateException("Field is not accessible: " + getters[i]);
+				}
+				fieldGetters[i] = handle.asType(MethodType.methodType(Object.class, Object.class));
+			}
+		}
+		Class<?> returnType = getters.length == 1 && fields.length == 1 ? valueType(getters[0]) : null;
+		if (returnType != null && returnType.isPrimitive() && handle == null) {
+			handle = unreflect(getters[0]);
+		}
+		if (returnType == null || !returnType.isPrimitive()) {
+			handle = null;
+		}
+		this.primitiveType = handle == null ? null : returnType;
+		this.longGetter = primitiveType == null || primitiveType == boolean.class || primitiveType == float.class
+				|| primitiveType == double.class ? null : longGetter(handle);
+		this.doubleGetter = primitiveType == float.class || primitiveType == double.class ? doubleGetter(handle)
+				: null;
+		this.booleanGetter = primitiveType == boolean.class ? booleanGetter(handle) : null;
+	}
+
+	private static MethodHandle unreflect(Member getter) {
+		try {
+			return getter instanceof Field ? MethodHandles.lookup().unreflectGetter((Field) getter)
+					: MethodHandles.lookup().unreflect((Method) getter);
+		} catch (IllegalAccessException e) {
+			logger.debug("Getter is not accessible by method handles: " + getter, e);
+			return null;
+		}
+	}
+
+	private static ToLongFunction<Object> longGetter(MethodHandle getter) {
+		MethodHandle handle = getter.asType(MethodType.methodType(long.class, Object.class));
+		return target -> {
+			try {
+				return (long) handle.invokeExact(target);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private static ToDoubleFunction<Object> doubleGetter(MethodHandle getter) {
+		MethodHandle handle = getter.asType(MethodType.methodType(double.class, Object.class));
+		return target -> {
+			try {
+				return (double) handle.invokeExact(target);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	private static Predicate<Object> booleanGetter(MethodHandle getter) {
+		MethodHandle handle = getter.asType(MethodType.methodType(boolean.class, Object.class));
+		return target -> {
+			try {
+				return (boolean) handle.invokeExact(target);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new RuntimeException(e);
+			}
+		};
+	}
+
+	/**
+	 * Returns the shared accessor of given path for given class, resolving it
+	 * on the first call
+	 *
+	 * @param type
+	 * @param path
+	 *            a dot separated property path or an expression like
+	 *            {@code "[name] - [group.name]"}
+	 * @return the accessor
+	 */
+	public static PropertyAccessor of(Class<?> type, String path) {
+		ConcurrentMap<String, PropertyAccessor> accessors = cache.get(type);
+		if (accessors == null) {
+			accessors = cache.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+		}
+		PropertyAccessor accessor = accessors.get(path);
+		if (accessor == null) {
+			accessor = new PropertyAccessor(type, path);
+			PropertyAccessor existing = accessors.putIfAbsent(path, accessor);
+			if (existing != null) {
+				accessor = existing;
+			}
+		}
+		return accessor;
+	}
+
+	/**
+	 * @return getter method or field of given property depending on the
+	 *         access strategy of given class, null if not found
+	 */
+	static Member findMember(Class<?> type, String field) {
+		switch (getAccessStrategy(type)) {
+		case GETTER_THEN_FIELD:
+			Method getter = findGetter(type, field);
+			return getter != null ? getter : findField(type, field);
+		case FIELD_FIRST:
+			Field found = findField(type, field);
+			return found != null ? found : findGetter(type, field);
+		default:
+			return findGetter(type, field);
+		}
+	}
+
+	/**
+	 * @return non static field of given name declared by given class or its
+	 *         superclasses, null if not found or not accessible
+	 */
+	static Field findField(Class<?> type, String field) {
+		try {
+			Field found = UtilsForReflection.getField(type, field);
+			return found == null || Modifier.isStatic(found.getModifiers()) || !makeAccessible(found) ? null : found;
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return false if given member can not be made accessible, like the
+	 *         private fields of the JDK classes in modules not open to this
+	 *         one. Public getters are still invoked in that case.
+	 */
+	private static boolean makeAccessible(Member member) {
+		try {
+			((AccessibleObject) member).setAccessible(true);
+			return true;
+		} catch (RuntimeException e) {
+			return false;
+		}
+	}
+
+	private static Class<?> valueType(Member getter) {
+		return getter instanceof Field ? ((Field) getter).getType() : ((Method) getter).getReturnType();
+	}
+
+	/**
+	 * Sets the access strategy of the classes without a strategy of their
+	 * own, {@link AccessStrategy#GETTER_ONLY} by default. Resolved accessors
+	 * are dropped, so strategies should be set before properties are read.
+	 *
+	 * @param strategy
+	 */
+	public static void setAccessStrategy(AccessStrategy strategy) {
+		if (strategy == null) {
+			throw new IllegalArgumentException("strategy should not be null");
+		}
+		defaultStrategy = strategy;
+		clearCaches();
+	}
+
+	/**
+	 * Sets the access strategy of given class and its subclasses. Resolved
+	 * accessors are dropped, so strategies should be set before properties
+	 * are read.
+	 *
+	 * @param type
+	 * @param strategy
+	 *            the strategy, null to use the global one
+	 */
+	public static void setAccessStrategy(Class<?> type, AccessStrategy strategy) {
+		if (strategy == null) {
+			strategies.remove(type);
+		} else {
+			strategies.put(type, strategy);
+		}
+		clearCaches();
+	}
+
+	private static void clearCaches() {
+		cache.clear();
+		UtilsForObject.clearKeyIndexes();
+	}
+
+	/**
+	 * @param type
+	 * @return strategy of given class or of its nearest superclass having one,
+	 *         the global one otherwise
+	 */
+	public static AccessStrategy getAccessStrategy(Class<?> type) {
+		if (!strategies.isEmpty()) {
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				AccessStrategy strategy = strategies.get(current);
+				if (strategy != null) {
+					return strategy;
+				}
+			}
+		}
+		return defaultStrategy;
+	}
+
+	/**
+	 * @return public getter of given field by get, is or plain naming, null if
+	 *         not found
+	 */
+	static Method findGetter(Class<?> type, String field) {
+		String capitalized = StringUtils.capitalize(field);
+		for (String name : new String[] { "get" + capitalized, "is" + capitalized, field }) {
+			try {
+				return type.getMethod(name);
+			} catch (NoSuchMethodException e) {
+				// try next naming convention
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param target
+	 *            an instance of the type of this accessor
+	 * @return value of the path or null if any value on the path is null
+	 */
+	public Object get(Object target) {
+		if (expression) {
+			return target == null ? null : UtilsForReflection.getValueByExpression(target, path);
+		}
+		Object value = target;
+		for (int i = 0; i < getters.length; i++) {
+			if (value == null) {
+				return null;
+			}
+			Member getter = getters[i];
+			if (value instanceof Map || value instanceof Collection
+					|| !getter.getDeclaringClass().isInstance(value)) {
+				return UtilsForReflection.getValueDynamically(value, remainingPath(i));
+			}
+			try {
+				MethodHandle fieldGetter = fieldGetters[i];
+				value = fieldGetter != null ? (Object) fieldGetter.invokeExact(value) : ((Method) getter).invoke(value);
+			} catch (Error e) {
+				throw e;
+			} catch (Throwable e) {
+				ReflectionDiagnostics.record(value.getClass(), fields[i], Kind.INVOCATION_FAILED, e);
+				return null;
+			}
+		}
+		if (value == null || getters.length == fields.length) {
+			return value;
+		}
+		if (value.getClass() == unresolvedType) {
+			// no getter exists on the exact class, nothing to resolve
+			ReflectionDiagnostics.record(unresolvedType, fields[getters.length], Kind.NO_GETTER);
+			return null;
+		}
+		return UtilsForReflection.getValueDynamically(value, remainingPath(getters.length));
+	}
+
+	/**
+	 * @return true if the value is read by a primitive typed getter, then
+	 *         the primitive methods of this accessor do not box the value
+	 */
+	public boolean isPrimitive() {
+		return primitiveType != null;
+	}
+
+	/**
+	 * @param target
+	 *            a non null instance of the type of this accessor
+	 * @return hash code of the value, equal to the hash code of the boxed
+	 *         value
+	 */
+	int primitiveHashCode(Object target) {
+		if (booleanGetter != null) {
+			return Boolean.hashCode(booleanGetter.test(target));
+		} else if (doubleGetter != null) {
+			double value = doubleGetter.applyAsDouble(target);
+			return primitiveType == float.class ? Float.hashCode((float) value) : Double.hashCode(value);
+		}
+		long value = longGetter.applyAsLong(target);
+		return primitiveType == long.class ? Long.hashCode(value) : (int) value;
+	}
+
+	/**
+	 * @return true if the values of given targets are equal as their boxed
+	 *         values are
+	 */
+	boolean primitiveEquals(Object target, Object other) {
+		if (booleanGetter != null) {
+			return booleanGetter.test(target) == booleanGetter.test(other);
+		} else if (doubleGetter != null) {
+			return primitiveBits(target) == primitiveBits(other);
+		}
+		return longGetter.applyAsLong(target) == longGetter.applyAsLong(other);
+	}
+
+	/**
+	 * @return comparison of the values of given targets, as their boxed values
+	 *         are compared
+	 */
+	int primitiveCompare(Object target, Object other) {
+		if (booleanGetter != null) {
+			return Boolean.compare(booleanGetter.test(target), booleanGetter.test(other));
+		} else if (doubleGetter != null) {
+			return Double.compare(doubleGetter.applyAsDouble(target), doubleGetter.applyAsDouble(other));
+		}
+		return Long.compare(longGetter.applyAsLong(target), longGetter.applyAsLong(other));
+	}
+
+	/**
+	 * Reads a primitive value without boxing it, see {@link #isPrimitive()}
+	 *
+	 * @param target
+	 *            a non null instance of the type of this accessor
+	 * @return the value as raw bits: integral and char values widened to
+	 *         long, floating point values by their bit patterns and booleans
+	 *         as 1 or 0
+	 * @throws IllegalStateException
+	 *             if the value is not read by a primitive typed getter
+	 */
+	public long getAsLongBits(Object target) {
+		if (primitiveType == null) {
+			throw new IllegalStateException("Value of path is not primitive: " + path);
+		}
+		return primitiveBits(target);
+	}
+
+	/**
+	 * @return primitive type of the value, null if it is not read by a
+	 *         primitive typed getter
+	 */
+	public Class<?> getPrimitiveType() {
+		return primitiveType;
+	}
+
+	/**
+	 * @return the value as raw bits, floating point values by their bit
+	 *         patterns and booleans as 1 or 0
+	 */
+	long primitiveBits(Object target) {
+		if (booleanGetter != null) {
+			return booleanGetter.test(target) ? 1 : 0;
+		} else if (doubleGetter != null) {
+			double value = doubleGetter.applyAsDouble(target);
+			return primitiveType == float.class ? Float.floatToIntBits((float) value)
+					: Double.doubleToLongBits(value);
+		}
+		return longGetter.applyAsLong(target);
+	}
+
+	/**
+	 * @param type
+	 * @return accessors of given class resolved so far
+	 */
+	static Collection<PropertyAccessor> getCachedAccessors(Class<?> type) {
+		ConcurrentMap<String, PropertyAccessor> accessors = cache.get(type);
+		return accessors == null ? Collections.<PropertyAccessor> emptyList() : accessors.values();
+	}
+
+	/**
+	 * @return getter methods or fields of the resolved part of the path, null
+	 *         for an expression
+	 */
+	Member[] getMembers() {
+		return expression ? null : getters.clone();
+	}
+
+	private String remainingPath(int index) {
+		return index == 0 ? path : StringUtils.join(fields, '.', index, fields.length);
+	}
+
+	public Class<?> getType() {
+		return type;
+	}
+
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return true if getters or fields of the whole path are resolved from
+	 *         the declared types
+	 */
+	public boolean isResolved() {
+		return getters.length == fields.length;
+	}
+
+	/**
+	 * @return true if the path can not be resolved since a getter does not
+	 *         exist on a declared type. The path still may resolve for
+	 *         subclasses at runtime.
+	 */
+	public boolean hasMissingGetter() {
+		return unresolvedType != null;
+	}
+
+	/**
+	 * @return declared type of the value, null if the path is not resolved
+	 */
+	public Class<?> getValueType() {
+		if (expression) {
+			return String.class;
+		}
+		return isResolved() ? valueType(getters[getters.length - 1]) : null;
+	}
+
+	@Override
+	public String toString() {
+		return "PropertyAccessor[" + type.getName() + "." + path + "]";
+	}
+
+}
@@ -0,0 +1,134 @@
+package org.jarchframework.core.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only map of properties, either a view resolving the values of an
+ * object on demand, or a row holding the values in an array. The keys are
+ * kept in a {@link KeyIndex} shared by the maps, so a map costs only itself
+ * and its array of values.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+final class PropertyMap extends AbstractMap<String, Object> {
+
+	private final KeyIndex index;
+	private final Object target;
+	private final Object[] values;
+
+	private PropertyMap(KeyIndex index, Object target, Object[] values) {
+		this.index = index;
+		this.target = target;
+		this.values = values;
+	}
+
+	/**
+	 * @return a view resolving the values of given object
+	 */
+	static PropertyMap view(KeyIndex index, Object target) {
+		return new PropertyMap(index, target, null);
+	}
+
+	/**
+	 * @return a row of given values, ordered as the keys
+	 */
+	static PropertyMap row(KeyIndex index, Object[] values) {
+		return new PropertyMap(index, null, values);
+	}
+
+	private Object valueAt(int position) {
+		return values != null ? values[position] : index.value(target, position);
+	}
+
+	@Override
+	public Object get(Object key) {
+		int position = index.indexOf(key);
+		return position < 0 ? null : valueAt(position);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return index.indexOf(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+
+			@Override
+			public Iterator<String> iterator() {
+				return new PositionIterator<String>() {
+
+					@Override
+					String at(int position) {
+						return index.key(position);
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object key) {
+				return index.indexOf(key) >= 0;
+			}
+
+			@Override
+			public int size() {
+				return index.size();
+			}
+		};
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new PositionIterator<Entry<String, Object>>() {
+
+					@Override
+					Entry<String, Object> at(int position) {
+						return new SimpleImmutableEntry<>(index.key(position), valueAt(position));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return index.size();
+			}
+		};
+	}
+
+	private abstract class PositionIterator<E> implements Iterator<E> {
+
+		private int position;
+
+		abstract E at(int position);
+
+		@Override
+		public boolean hasNext() {
+			return position < index.size();
+		}
+
+		@Override
+		public E next() {
+			if (position >= index.size()) {
+				throw new NoSuchElementException();
+			}
+			return at(position++);
+		}
+	}
+
+}
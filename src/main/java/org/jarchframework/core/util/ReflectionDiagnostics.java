@@ -0,0 +1,262 @@
+package org.jarchframework.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Aggregates the failures of resolving property paths and methods by
+ * reflection. A failure is logged once per class, path and kind, its further
+ * occurrences only increment a counter. A summary of the failures occurred
+ * since the previous summary is logged at most once per
+ * {@link #setSummaryInterval(long, TimeUnit) summary interval}.
+ * <p>
+ * Recorded failures can be read by {@link #getDiagnostics()}, for instance to
+ * expose them on a health endpoint.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class ReflectionDiagnostics {
+
+	private static final Logger logger = LoggerFactory.getLogger(ReflectionDiagnostics.class);
+
+	/**
+	 * Max number of distinct failures kept, further ones are only counted
+	 */
+	public static final int MAX_DIAGNOSTICS = 10000;
+	public static final long DEFAULT_SUMMARY_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+
+	private static final int SUMMARY_SIZE = 10;
+
+	/**
+	 * Failures by class and path, one map per kind
+	 */
+	@SuppressWarnings("unchecked")
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Diagnostic>>[] diagnostics = new ConcurrentMap[Kind.values().length];
+	private static final AtomicLong size = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong lastSummary = new AtomicLong(System.currentTimeMillis());
+
+	private static volatile long summaryInterval = DEFAULT_SUMMARY_INTERVAL;
+
+	public enum Kind {
+		NO_GETTER("No getter found"), NO_SETTER("No setter found"), NO_METHOD("No method found"),
+		INVOCATION_FAILED("Invocation failed");
+
+		private final String description;
+
+		Kind(String description) {
+			this.description = description;
+		}
+	}
+
+	static {
+		for (int i = 0; i < diagnostics.length; i++) {
+			diagnostics[i] = new ConcurrentHashMap<>();
+		}
+	}
+
+	private ReflectionDiagnostics() {
+	}
+
+	/**
+	 * Records a failure without a cause
+	 */
+	static void record(Class<?> type, String path, Kind kind) {
+		record(type, path, kind, null);
+	}
+
+	/**
+	 * Records a failure caused by given exception. Its stack trace is logged
+	 * on debug level only when the failure is first recorded.
+	 */
+	static void record(Class<?> type, String path, Kind kind, Throwable cause) {
+		Class<?> key = type == null ? Object.class : type;
+		ConcurrentMap<Class<?>, ConcurrentMap<String, Diagnostic>> types = diagnostics[kind.ordinal()];
+		ConcurrentMap<String, Diagnostic> paths = types.get(key);
+		if (paths == null) {
+			paths = types.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+		}
+		String pathKey = String.valueOf(path);
+		Diagnostic diagnostic = paths.get(pathKey);
+		if (diagnostic == null) {
+			if (size.get() >= MAX_DIAGNOSTICS) {
+				dropped.incrementAndGet();
+				summarize();
+				return;
+			}
+			String message = cause == null ? kind.description
+					: kind.description + ", " + cause.getClass().getName() + ": " + cause.getMessage();
+			Diagnostic created = new Diagnostic(key, pathKey, kind, message);
+			diagnostic = paths.putIfAbsent(pathKey, created);
+			if (diagnostic == null) {
+				diagnostic = created;
+				size.incrementAndGet();
+				if (logger.isWarnEnabled()) {
+					logger.warn(String.format("%s: %s for Class: %s, further occurrences are counted", message,
+							pathKey, key.getName()));
+				}
+				if (cause != null && logger.isDebugEnabled()) {
+					logger.debug(message, cause);
+				}
+			}
+		}
+		diagnostic.count.incrementAndGet();
+		summarize();
+	}
+
+	/**
+	 * Logs the failures occurred since the previous summary if the summary
+	 * interval has passed, the calling thread which wins the race logs it
+	 */
+	private static void summarize() {
+		long now = System.currentTimeMillis();
+		long last = lastSummary.get();
+		if (now - last < summaryInterval || !lastSummary.compareAndSet(last, now)) {
+			return;
+		}
+		List<Diagnostic> recent = new ArrayList<>();
+		long total = 0;
+		for (Diagnostic diagnostic : getDiagnostics()) {
+			long count = diagnostic.count.get();
+			long delta = count - diagnostic.summarized.getAndSet(count);
+			if (delta > 0) {
+				total += delta;
+				recent.add(diagnostic);
+			}
+		}
+		long droppedCount = dropped.getAndSet(0);
+		if (total == 0 && droppedCount == 0 || !logger.isWarnEnabled()) {
+			return;
+		}
+		sortByCount(recent);
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("%d reflection failures of %d paths in the last %d seconds", total,
+				recent.size(), (now - last) / 1000));
+		for (Diagnostic diagnostic : recent.subList(0, Math.min(SUMMARY_SIZE, recent.size()))) {
+			builder.append(String.format("%n\t%s", diagnostic));
+		}
+		if (droppedCount > 0) {
+			builder.append(String.format("%n\t%d failures not kept, max diagnostics reached", droppedCount));
+		}
+		logger.warn(builder.toString());
+	}
+
+	/**
+	 * @return all recorded failures, the most frequent first
+	 */
+	public static List<Diagnostic> getDiagnostics() {
+		List<Diagnostic> result = new ArrayList<>();
+		for (ConcurrentMap<Class<?>, ConcurrentMap<String, Diagnostic>> types : diagnostics) {
+			for (ConcurrentMap<String, Diagnostic> paths : types.values()) {
+				result.addAll(paths.values());
+			}
+		}
+		sortByCount(result);
+		return result;
+	}
+
+	/**
+	 * Sorts by a snapshot of the counts, which may change while sorting
+	 */
+	private static void sortByCount(List<Diagnostic> list) {
+		Map<Diagnostic, Long> counts = new IdentityHashMap<>();
+		for (Diagnostic diagnostic : list) {
+			counts.put(diagnostic, diagnostic.getCount());
+		}
+		Collections.sort(list, Comparator.comparing(counts::get, Comparator.reverseOrder()));
+	}
+
+	/**
+	 * @param type
+	 * @param path
+	 * @param kind
+	 * @return the failure recorded for given class, path and kind, null if
+	 *         none
+	 */
+	public static Diagnostic getDiagnostic(Class<?> type, String path, Kind kind) {
+		ConcurrentMap<String, Diagnostic> paths = diagnostics[kind.ordinal()].get(type);
+		return paths == null ? null : paths.get(path);
+	}
+
+	/**
+	 * Clears the recorded failures, a failure recorded again afterwards is
+	 * logged again
+	 */
+	public static void reset() {
+		for (ConcurrentMap<Class<?>, ConcurrentMap<String, Diagnostic>> types : diagnostics) {
+			types.clear();
+		}
+		size.set(0);
+		dropped.set(0);
+		lastSummary.set(System.currentTimeMillis());
+	}
+
+	public static void setSummaryInterval(long interval, TimeUnit unit) {
+		summaryInterval = unit.toMillis(interval);
+	}
+
+	/**
+	 * A failure of resolving a path of a class
+	 */
+	public static final class Diagnostic {
+
+		private final Class<?> type;
+		private final String path;
+		private final Kind kind;
+		private final String message;
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong summarized = new AtomicLong();
+
+		private Diagnostic(Class<?> type, String path, Kind kind, String message) {
+			this.type = type;
+			this.path = path;
+			this.kind = kind;
+			this.message = message;
+		}
+
+		public Class<?> getType() {
+			return type;
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public Kind getKind() {
+			return kind;
+		}
+
+		/**
+		 * @return message of the first occurrence
+		 */
+		public String getMessage() {
+			return message;
+		}
+
+		/**
+		 * @return number of occurrences
+		 */
+		public long getCount() {
+			return count.get();
+		}
+
+		@Override
+		public String toString() {
+			return message + ": " + path + " for Class: " + type.getName() + " x" + count.get();
+		}
+	}
+
+}
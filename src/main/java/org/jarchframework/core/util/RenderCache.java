@@ -0,0 +1,381 @@
+package org.jarchframework.core.util;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Memoizes rendered expressions and toString outputs per instance and
+ * expression. Instances are held weakly and compared by identity, so an entry
+ * goes away with its instance and equal instances do not share entries.
+ * <p>
+ * The cache is bounded by the number of entries and by an estimate of their
+ * memory, the least recently used instances are evicted first. Entries of a
+ * mutable instance should be dropped by {@link #invalidate(Object)} after it
+ * changes, or a version function can be given for their class, for instance
+ * reading a version property, in which case an entry rendered for another
+ * version is rendered again. Version functions apply to the instances of
+ * their class and its subclasses only.
+ * <p>
+ * To memoize {@link Object#toString()} of {@link org.jarchframework.core.model.BaseObject}s
+ * the cache should be set by {@link UtilsForObject#setRenderCache(RenderCache)}.
+ * <p>
+ * <b>Example:</b><br>
+ * <code>
+ * RenderCache cache = new RenderCache(10000, 16 * 1024 * 1024).versioned(User.class, User::getVersion);<br>
+ * String label = cache.getValueByExpression(user, "[name] ([group.name])");
+ * </code>
+ * <p>
+ * Caches are thread safe, values are rendered outside the lock so a value may
+ * be rendered more than once when requested concurrently.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class RenderCache {
+
+	/**
+	 * Expression of the toString outputs
+	 */
+	public static final String TO_STRING = "#toString";
+
+	private static final ToLongFunction<Object> UNVERSIONED = obj -> 0;
+
+	/**
+	 * Estimated bytes of an entry besides its characters
+	 */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	private final int maxEntries;
+	private final long maxMemory;
+	private final Map<Class<?>, ToLongFunction<Object>> versionFunctions = new ConcurrentHashMap<>();
+	/**
+	 * Version functions by the classes of the instances, {@link #UNVERSIONED}
+	 * for the classes without one
+	 */
+	private final Map<Class<?>, ToLongFunction<Object>> resolvedVersionFunctions = new ConcurrentHashMap<>();
+
+	private final ReferenceQueue<Object> queue = new ReferenceQueue<>();
+	private final LinkedHashMap<Object, Values> instances = new LinkedHashMap<>(16, 0.75f, true);
+	private int size;
+	private long memory;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	/**
+	 * @param maxEntries
+	 *            entries to keep at most
+	 * @param maxMemory
+	 *            estimated bytes of the entries to keep at most
+	 */
+	public RenderCache(int maxEntries, long maxMemory) {
+		if (maxEntries < 1 || maxMemory < 1) {
+			throw new IllegalArgumentException(
+					String.format("Invalid limits, entries: %d memory: %d", maxEntries, maxMemory));
+		}
+		this.maxEntries = maxEntries;
+		this.maxMemory = maxMemory;
+	}
+
+	/**
+	 * Checks the versions of the instances of given class and its subclasses,
+	 * their entries rendered for another version are rendered again
+	 *
+	 * @param type
+	 * @param versionFunction
+	 *            version of an instance, like a version property
+	 * @return this cache
+	 */
+	@SuppressWarnings("unchecked")
+	public <T> RenderCache versioned(Class<T> type, ToLongFunction<? super T> versionFunction) {
+		if (type == null || versionFunction == null) {
+			throw new IllegalArgumentException("type and versionFunction should not be null");
+		}
+		versionFunctions.put(type, (ToLongFunction<Object>) versionFunction);
+		resolvedVersionFunctions.clear();
+		return this;
+	}
+
+	/**
+	 * @return version function of given class or of its nearest superclass
+	 *         having one
+	 */
+	private ToLongFunction<Object> getVersionFunction(Class<?> type) {
+		ToLongFunction<Object> function = resolvedVersionFunctions.get(type);
+		if (function == null) {
+			function = resolvedVersionFunctions.computeIfAbsent(type, key -> {
+				for (Class<?> current = key; current != null; current = current.getSuperclass()) {
+					ToLongFunction<Object> found = versionFunctions.get(current);
+					if (found != null) {
+						return found;
+					}
+				}
+				return UNVERSIONED;
+			});
+		}
+		return function;
+	}
+
+	/**
+	 * @param obj
+	 * @param expression
+	 * @return memoized {@link UtilsForReflection#getValueByExpression(Object, String)}
+	 */
+	public String getValueByExpression(Object obj, String expression) {
+		return get(obj, expression, o -> UtilsForReflection.getValueByExpression(o, expression));
+	}
+
+	/**
+	 * @param obj
+	 * @return memoized {@link Object#toString()}
+	 */
+	public String toString(Object obj) {
+		return get(obj, TO_STRING, Object::toString);
+	}
+
+	/**
+	 * @param obj
+	 * @param expression
+	 *            key of the value for given instance
+	 * @param renderer
+	 *            renders the value when it is not cached
+	 * @return the cached or rendered value, null if the instance is null
+	 */
+	public String get(Object obj, String expression, Function<Object, String> renderer) {
+		if (obj == null) {
+			return null;
+		}
+		long version = versionFunctions.isEmpty() ? 0 : getVersionFunction(obj.getClass()).applyAsLong(obj);
+		synchronized (this) {
+			Values values = instances.get(new LookupKey(obj));
+			Entry entry = values == null ? null : values.entries.get(expression);
+			if (entry != null && entry.version == version) {
+				hits.increment();
+				return entry.value;
+			}
+		}
+		misses.increment();
+		String value = renderer.apply(obj);
+		put(obj, expression, value, version);
+		return value;
+	}
+
+	private synchronized void put(Object obj, String expression, String value, long version) {
+		expunge();
+		LookupKey lookup = new LookupKey(obj);
+		Values values = instances.get(lookup);
+		if (values == null) {
+			values = new Values();
+			instances.put(new WeakKey(obj, queue), values);
+		}
+		Entry entry = new Entry(value, version, estimate(expression, value));
+		Entry previous = values.entries.put(expression, entry);
+		if (previous != null) {
+			remove(previous);
+			values.memory -= previous.memory;
+		}
+		size++;
+		memory += entry.memory;
+		values.memory += entry.memory;
+		evict();
+	}
+
+	private static long estimate(String expression, String value) {
+		return ENTRY_OVERHEAD + 2L * (expression.length() + (value == null ? 0 : value.length()));
+	}
+
+	private void remove(Entry entry) {
+		size--;
+		memory -= entry.memory;
+	}
+
+	private void remove(Values values) {
+		size -= values.entries.size();
+		memory -= values.memory;
+	}
+
+	/**
+	 * Evicts the least recently used instances until the limits are met
+	 */
+	private void evict() {
+		Iterator<Values> iterator = instances.values().iterator();
+		while ((size > maxEntries || memory > maxMemory) && iterator.hasNext()) {
+			Values values = iterator.next();
+			iterator.remove();
+			remove(values);
+			evictions.add(values.entries.size());
+		}
+	}
+
+	/**
+	 * Removes the entries of collected instances
+	 */
+	private void expunge() {
+		Reference<?> reference;
+		while ((reference = queue.poll()) != null) {
+			Values values = instances.remove(reference);
+			if (values != null) {
+				remove(values);
+			}
+		}
+	}
+
+	/**
+	 * Drops the cached values of given instance, to be called after it changes
+	 *
+	 * @param obj
+	 */
+	public synchronized void invalidate(Object obj) {
+		expunge();
+		Values values = instances.remove(new LookupKey(obj));
+		if (values != null) {
+			remove(values);
+		}
+	}
+
+	/**
+	 * Drops the cached value of given instance and expression
+	 *
+	 * @param obj
+	 * @param expression
+	 */
+	public synchronized void invalidate(Object obj, String expression) {
+		Values values = instances.get(new LookupKey(obj));
+		Entry entry = values == null ? null : values.entries.remove(expression);
+		if (entry != null) {
+			remove(entry);
+			values.memory -= entry.memory;
+		}
+	}
+
+	/**
+	 * Drops all cached values, the counters are kept
+	 */
+	public synchronized void invalidateAll() {
+		expunge();
+		instances.clear();
+		size = 0;
+		memory = 0;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return ratio of the hits to the requests, 0 if there is no request
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long requests = hitCount + misses.sum();
+		return requests == 0 ? 0 : (double) hitCount / requests;
+	}
+
+	public synchronized int size() {
+		expunge();
+		return size;
+	}
+
+	/**
+	 * @return estimated bytes of the cached values
+	 */
+	public synchronized long getMemoryUsage() {
+		expunge();
+		return memory;
+	}
+
+	@Override
+	public String toString() {
+		return "RenderCache[size=" + size() + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+				+ ", evictions=" + getEvictionCount() + "]";
+	}
+
+	private static final class Values {
+
+		private final Map<String, Entry> entries = new HashMap<>(4);
+		private long memory;
+	}
+
+	private static final class Entry {
+
+		private final String value;
+		private final long version;
+		private final long memory;
+
+		private Entry(String value, long version, long memory) {
+			this.value = value;
+			this.version = version;
+			this.memory = memory;
+		}
+	}
+
+	/**
+	 * Key holding an instance weakly, equal to the keys of the same instance
+	 */
+	private static final class WeakKey extends WeakReference<Object> {
+
+		private final int hash;
+
+		private WeakKey(Object referent, ReferenceQueue<Object> queue) {
+			super(referent, queue);
+			this.hash = System.identityHashCode(referent);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			Object referent = get();
+			return referent != null && obj instanceof LookupKey && ((LookupKey) obj).referent == referent;
+		}
+	}
+
+	/**
+	 * Key holding an instance strongly to look up a {@link WeakKey} without
+	 * creating a reference
+	 */
+	private static final class LookupKey {
+
+		private final Object referent;
+
+		private LookupKey(Object referent) {
+			this.referent = referent;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(referent);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof WeakKey && ((WeakKey) obj).get() == referent;
+		}
+	}
+
+}
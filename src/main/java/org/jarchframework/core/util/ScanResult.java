@@ -0,0 +1,81 @@
+package org.jarchframework.core.util;
+
+import java.lang.annotation.Annotation;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Result of scanning a package for several annotations by
+ * {@link UtilsForPackageScan#scan(String, ClassLoader, Class...)}. Classes
+ * which could not be loaded or read are kept as failures by their names
+ * instead of aborting the scan.
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class ScanResult {
+
+	private final int scannedCount;
+	private final Map<Class<? extends Annotation>, Set<Class<?>>> annotatedClasses;
+	private final Set<Class<?>> allAnnotatedClasses;
+	private final Map<String, Throwable> failures;
+
+	ScanResult(int scannedCount, Map<Class<? extends Annotation>, Set<Class<?>>> annotatedClasses,
+			Set<Class<?>> allAnnotatedClasses, Map<String, Throwable> failures) {
+		this.scannedCount = scannedCount;
+		for (Map.Entry<Class<? extends Annotation>, Set<Class<?>>> entry : annotatedClasses.entrySet()) {
+			entry.setValue(Collections.unmodifiableSet(entry.getValue()));
+		}
+		this.annotatedClasses = Collections.unmodifiableMap(annotatedClasses);
+		this.allAnnotatedClasses = Collections.unmodifiableSet(allAnnotatedClasses);
+		this.failures = Collections.unmodifiableMap(failures);
+	}
+
+	/**
+	 * @param annotationClass
+	 *            one of the scanned annotations
+	 * @return classes with given annotation in the scan order
+	 */
+	public Set<Class<?>> getAnnotatedClasses(Class<? extends Annotation> annotationClass) {
+		Set<Class<?>> classes = annotatedClasses.get(annotationClass);
+		if (classes == null) {
+			throw new IllegalArgumentException(
+					String.format("Annotation is not scanned: %s", annotationClass.getName()));
+		}
+		return classes;
+	}
+
+	/**
+	 * @return classes with any of the scanned annotations in the scan order
+	 */
+	public Set<Class<?>> getAnnotatedClasses() {
+		return allAnnotatedClasses;
+	}
+
+	/**
+	 * @return causes by the names of the classes which could not be scanned
+	 */
+	public Map<String, Throwable> getFailures() {
+		return failures;
+	}
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	/**
+	 * @return number of class files found, including the failed ones
+	 */
+	public int getScannedCount() {
+		return scannedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "ScanResult[scanned=" + scannedCount + ", annotated=" + getAnnotatedClasses().size() + ", failures="
+				+ failures.keySet() + "]";
+	}
+
+}
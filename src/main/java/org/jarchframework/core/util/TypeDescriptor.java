@@ -0,0 +1,299 @@
+package org.jarchframework.core.util;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Immutable, fully resolved description of a generic type. Type variables are
+ * resolved against the concrete class they are used from, wildcards are
+ * replaced by their bounds and unbound type variables by their first bound.
+ * <br>
+ * <b>Example:</b><br>
+ * <code>
+ * class BaseEntity&lt;ID&gt; { public List&lt;ID&gt; getIds() }<br>
+ * class User extends BaseEntity&lt;Long&gt; { }<br>
+ * TypeDescriptor.forProperty(User.class, "ids"); // List&lt;Long&gt;
+ * </code>
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public final class TypeDescriptor {
+
+	private static final TypeDescriptor[] NO_ARGUMENTS = new TypeDescriptor[0];
+	private static final TypeDescriptor OBJECT = new TypeDescriptor(Object.class, NO_ARGUMENTS, null);
+
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, TypeDescriptor>> propertyCache = new ConcurrentHashMap<>();
+	private static final TypeDescriptor UNRESOLVED = new TypeDescriptor(Object.class, NO_ARGUMENTS, null);
+
+	private final Class<?> rawType;
+	private final TypeDescriptor[] typeArguments;
+	private final TypeDescriptor componentType;
+
+	private TypeDescriptor(Class<?> rawType, TypeDescriptor[] typeArguments, TypeDescriptor componentType) {
+		this.rawType = rawType;
+		this.typeArguments = typeArguments;
+		this.componentType = componentType;
+	}
+
+	/**
+	 * @param type
+	 * @return descriptor of given class, with its type parameters resolved to
+	 *         their bounds
+	 */
+	public static TypeDescriptor of(Class<?> type) {
+		return of(type, new HashMap<TypeVariable<?>, TypeDescriptor>());
+	}
+
+	private static TypeDescriptor of(Class<?> type, Map<TypeVariable<?>, TypeDescriptor> bindings) {
+		if (type == Object.class) {
+			return OBJECT;
+		} else if (type.isArray()) {
+			return new TypeDescriptor(type, NO_ARGUMENTS, of(type.getComponentType()));
+		}
+		TypeVariable<?>[] variables = type.getTypeParameters();
+		if (variables.length == 0) {
+			return new TypeDescriptor(type, NO_ARGUMENTS, null);
+		}
+		TypeDescriptor[] arguments = new TypeDescriptor[variables.length];
+		for (int i = 0; i < variables.length; i++) {
+			arguments[i] = resolve(variables[i], bindings, new HashSet<TypeVariable<?>>());
+		}
+		return new TypeDescriptor(type, arguments, null);
+	}
+
+	/**
+	 * Resolves the type of given property path against given class. When a
+	 * collection or a map is met in the middle of the path, resolution
+	 * continues from its element or value type. The result is cached per
+	 * class and path.
+	 *
+	 * @param type
+	 * @param propertyPath
+	 *            a dot separated property path
+	 * @return the resolved type or null if a getter on the path does not
+	 *         exist
+	 */
+	public static TypeDescriptor forProperty(Class<?> type, String propertyPath) {
+		ConcurrentMap<String, TypeDescriptor> properties = propertyCache.get(type);
+		if (properties == null) {
+			properties = propertyCache.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+		}
+		TypeDescriptor descriptor = properties.get(propertyPath);
+		if (descriptor == null) {
+			descriptor = resolveProperty(type, propertyPath);
+			properties.put(propertyPath, descriptor == null ? UNRESOLVED : descriptor);
+		}
+		return descriptor == UNRESOLVED ? null : descriptor;
+	}
+
+	private static TypeDescriptor resolveProperty(Class<?> type, String propertyPath) {
+		TypeDescriptor owner = of(type);
+		String[] fields = StringUtils.split(propertyPath, '.');
+		for (int i = 0; i < fields.length; i++) {
+			if (i > 0) {
+				owner = owner.getElementType();
+			}
+			Method getter = PropertyAccessor.findGetter(owner.rawType, fields[i]);
+			if (getter == null) {
+				return null;
+			}
+			owner = owner.resolveMember(getter.getGenericReturnType());
+		}
+		return owner;
+	}
+
+	/**
+	 * Resolves a type used by a member of this type
+	 */
+	private TypeDescriptor resolveMember(Type memberType) {
+		return resolve(memberType, getBindings(), new HashSet<TypeVariable<?>>());
+	}
+
+	/**
+	 * @return type variables of this type and all its supertypes, bound to
+	 *         their resolved types
+	 */
+	private Map<TypeVariable<?>, TypeDescriptor> getBindings() {
+		Map<TypeVariable<?>, TypeDescriptor> bindings = new HashMap<>();
+		TypeVariable<?>[] variables = rawType.getTypeParameters();
+		for (int i = 0; i < variables.length && i < typeArguments.length; i++) {
+			bindings.put(variables[i], typeArguments[i]);
+		}
+		bindSupertypes(rawType, bindings);
+		return bindings;
+	}
+
+	/**
+	 * Binds type variables of all supertypes of given class, supertypes are
+	 * visited from the class upwards so variables are resolved through the
+	 * already bound ones
+	 */
+	private static void bindSupertypes(Class<?> type, Map<TypeVariable<?>, TypeDescriptor> bindings) {
+		Deque<Class<?>> queue = new ArrayDeque<>();
+		queue.add(type);
+		while (!queue.isEmpty()) {
+			Class<?> current = queue.poll();
+			Type[] interfaces = current.getGenericInterfaces();
+			Type[] supertypes = Arrays.copyOf(interfaces, interfaces.length + 1);
+			supertypes[interfaces.length] = current.getGenericSuperclass();
+			for (Type supertype : supertypes) {
+				if (supertype instanceof ParameterizedType) {
+					ParameterizedType parameterized = (ParameterizedType) supertype;
+					Class<?> raw = (Class<?>) parameterized.getRawType();
+					TypeVariable<?>[] variables = raw.getTypeParameters();
+					Type[] arguments = parameterized.getActualTypeArguments();
+					for (int i = 0; i < variables.length; i++) {
+						if (!bindings.containsKey(variables[i])) {
+							bindings.put(variables[i],
+									resolve(arguments[i], bindings, new HashSet<TypeVariable<?>>()));
+						}
+					}
+					queue.add(raw);
+				} else if (supertype instanceof Class) {
+					queue.add((Class<?>) supertype);
+				}
+			}
+		}
+	}
+
+	private static TypeDescriptor resolve(Type type, Map<TypeVariable<?>, TypeDescriptor> bindings,
+			Set<TypeVariable<?>> visiting) {
+		if (type instanceof Class) {
+			// a raw type, its variables are not bound
+			return of((Class<?>) type);
+		} else if (type instanceof ParameterizedType) {
+			Type[] arguments = ((ParameterizedType) type).getActualTypeArguments();
+			TypeDescriptor[] resolved = new TypeDescriptor[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				resolved[i] = resolve(arguments[i], bindings, visiting);
+			}
+			return new TypeDescriptor((Class<?>) ((ParameterizedType) type).getRawType(), resolved, null);
+		} else if (type instanceof GenericArrayType) {
+			TypeDescriptor component = resolve(((GenericArrayType) type).getGenericComponentType(), bindings,
+					visiting);
+			return new TypeDescriptor(Array.newInstance(component.rawType, 0).getClass(), NO_ARGUMENTS, component);
+		} else if (type instanceof WildcardType) {
+			Type[] lowerBounds = ((WildcardType) type).getLowerBounds();
+			return resolve(lowerBounds.length > 0 ? lowerBounds[0] : ((WildcardType) type).getUpperBounds()[0],
+					bindings, visiting);
+		} else if (type instanceof TypeVariable) {
+			TypeDescriptor bound = bindings.get(type);
+			if (bound != null) {
+				return bound;
+			}
+			// an unbound or self referencing variable like T extends Comparable<T>
+			if (!visiting.add((TypeVariable<?>) type)) {
+				return OBJECT;
+			}
+			return resolve(((TypeVariable<?>) type).getBounds()[0], bindings, visiting);
+		}
+		return OBJECT;
+	}
+
+	/**
+	 * Returns the parameterization of given supertype of this type, for
+	 * instance {@code Collection<User>} for a {@code UserList} which extends
+	 * {@code ArrayList<User>}
+	 *
+	 * @param supertype
+	 * @return the supertype descriptor or null if given type is not a
+	 *         supertype of this type
+	 */
+	public TypeDescriptor as(Class<?> supertype) {
+		if (supertype == rawType) {
+			return this;
+		} else if (!supertype.isAssignableFrom(rawType)) {
+			return null;
+		}
+		return of(supertype, getBindings());
+	}
+
+	/**
+	 * @return element type of an array or a collection, value type of a map,
+	 *         or this type for others
+	 */
+	TypeDescriptor getElementType() {
+		if (componentType != null) {
+			return componentType;
+		} else if (Collection.class.isAssignableFrom(rawType)) {
+			return as(Collection.class).getTypeArgument(0);
+		} else if (Map.class.isAssignableFrom(rawType)) {
+			return as(Map.class).getTypeArgument(1);
+		}
+		return this;
+	}
+
+	public Class<?> getRawType() {
+		return rawType;
+	}
+
+	public List<TypeDescriptor> getTypeArguments() {
+		return Collections.unmodifiableList(Arrays.asList(typeArguments));
+	}
+
+	/**
+	 * @param index
+	 * @return the type argument at given index or {@link Object} if this type
+	 *         has no such argument
+	 */
+	public TypeDescriptor getTypeArgument(int index) {
+		return index < typeArguments.length ? typeArguments[index] : OBJECT;
+	}
+
+	/**
+	 * @return component type if this is an array type, null otherwise
+	 */
+	public TypeDescriptor getComponentType() {
+		return componentType;
+	}
+
+	public boolean isParameterized() {
+		return typeArguments.length > 0;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof TypeDescriptor)) {
+			return false;
+		}
+		TypeDescriptor that = (TypeDescriptor) obj;
+		return rawType == that.rawType && Arrays.equals(typeArguments, that.typeArguments);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * rawType.hashCode() + Arrays.hashCode(typeArguments);
+	}
+
+	@Override
+	public String toString() {
+		if (componentType != null) {
+			return componentType + "[]";
+		} else if (typeArguments.length == 0) {
+			return rawType.getName();
+		}
+		return rawType.getName() + "<" + StringUtils.join(typeArguments, ", ") + ">";
+	}
+
+}
@@ -1,10 +1,17 @@
 package org.jarchframework.core.util;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 /**
@@ -17,44 +24,116 @@ import java.util.stream.Collectors;
  */
 public class UtilsForCollections {
 
+	/**
+	 * Minimum array length to build sets in parallel by
+	 * {@link #toSet(Object[], int)}
+	 */
+	public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
 	private UtilsForCollections() {
 
 	}
 
 	public static List<Integer> toList(int[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toList());
+		List<Integer> list = new ArrayList<>(array.length);
+		for (int value : array) {
+			list.add(value);
+		}
+		return list;
 	}
 
 	public static List<Long> toList(long[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toList());
+		List<Long> list = new ArrayList<>(array.length);
+		for (long value : array) {
+			list.add(value);
+		}
+		return list;
 	}
 
 	public static List<Double> toList(double[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toList());
+		List<Double> list = new ArrayList<>(array.length);
+		for (double value : array) {
+			list.add(value);
+		}
+		return list;
 	}
 
 	public static <T> List<T> toList(T[] array) {
-		return Arrays.stream(array).collect(Collectors.toList());
+		return new ArrayList<>(Arrays.asList(array));
+	}
+
+	/**
+	 * @param array
+	 * @return an unmodifiable list backed by given array, changes of the array
+	 *         are visible through the list
+	 */
+	public static <T> List<T> asUnmodifiableList(T[] array) {
+		return Collections.unmodifiableList(Arrays.asList(array));
 	}
 
 	public static Set<Integer> toSet(int[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toSet());
+		Set<Integer> set = new HashSet<>(capacityFor(array.length));
+		for (int value : array) {
+			set.add(value);
+		}
+		return set;
 	}
 
 	public static Set<Long> toSet(long[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toSet());
+		Set<Long> set = new HashSet<>(capacityFor(array.length));
+		for (long value : array) {
+			set.add(value);
+		}
+		return set;
 	}
 
 	public static Set<Double> toSet(double[] array) {
-		return Arrays.stream(array).boxed().collect(Collectors.toSet());
+		Set<Double> set = new HashSet<>(capacityFor(array.length));
+		for (double value : array) {
+			set.add(value);
+		}
+		return set;
 	}
 
 	public static <T> Set<T> toSet(T[] array) {
-		return Arrays.stream(array).collect(Collectors.toSet());
+		Set<T> set = new HashSet<>(capacityFor(array.length));
+		Collections.addAll(set, array);
+		return set;
+	}
+
+	/**
+	 * Builds the set in parallel if the array is not shorter than given
+	 * threshold, in that case the set is a concurrent one which does not
+	 * accept null elements
+	 * 
+	 * @param array
+	 * @param parallelThreshold
+	 *            see {@link #DEFAULT_PARALLEL_THRESHOLD}
+	 * @return set of the elements
+	 * @throws NullPointerException
+	 *             if the set is built in parallel and the array contains null
+	 */
+	public static <T> Set<T> toSet(T[] array, int parallelThreshold) {
+		if (array.length < parallelThreshold) {
+			return toSet(array);
+		}
+		Set<T> set = ConcurrentHashMap.newKeySet(capacityFor(array.length));
+		Arrays.stream(array).parallel().forEach(set::add);
+		return set;
 	}
 
 	public static <T> Set<T> toSetByPreserveOrder(T[] array) {
-		return Arrays.stream(array).collect(Collectors.toCollection(LinkedHashSet::new));
+		Set<T> set = new LinkedHashSet<>(capacityFor(array.length));
+		Collections.addAll(set, array);
+		return set;
+	}
+
+	/**
+	 * @return initial capacity of a hash based collection to hold given
+	 *         number of elements without resizing
+	 */
+	private static int capacityFor(int size) {
+		return (int) (size / 0.75f) + 1;
 	}
 
 	public static <T> String join(Collection<T> collection, String separator) {
@@ -69,16 +148,173 @@ public class UtilsForCollections {
 		return toStringByProperty(collection, property, 5);
 	}
 
+	/**
+	 * Renders the values of the first elements of given collection, followed
+	 * by {@code ", ..."} when there are more. A zero limit renders
+	 * {@code "[, ...]"} for a non empty collection.
+	 * 
+	 * @param collection
+	 * @param property
+	 *            property path of the values, null for the elements
+	 *            themselves
+	 * @param limit
+	 *            max elements to render
+	 * @return values in brackets
+	 * @throws IllegalArgumentException
+	 *             if the limit is negative
+	 */
 	public static <T> String toStringByProperty(Collection<T> collection, String property, int limit) {
-		String result = collection.stream().limit(limit).map(
-				object -> String.valueOf(property != null ? UtilsForReflection.getValue(object, property) : object))
-				.collect(Collectors.joining(", "));
+		if (limit < 0) {
+			throw new IllegalArgumentException(Integer.toString(limit));
+		} else if (limit == 0) {
+			return collection.isEmpty() ? "[]" : "[, ...]";
+		}
+		return toStringByPropertyTo(new StringBuilder(), collection.iterator(), property, limit, -1).toString();
+	}
+
+	/**
+	 * Appends string values of given elements to given appendable, element by
+	 * element, without building the joined string
+	 * 
+	 * @param out
+	 * @param iterable
+	 * @param separator
+	 * @return given appendable
+	 * @throws UncheckedIOException
+	 *             if the appendable throws an {@link IOException}
+	 */
+	public static <A extends Appendable, T> A joinTo(A out, Iterable<T> iterable, String separator) {
+		return joinTo(out, iterable.iterator(), separator, -1);
+	}
 
-		if (collection.size() > limit) {
-			result += ", ...";
+	public static <A extends Appendable, T> A joinTo(A out, T[] array, String separator) {
+		return joinTo(out, Arrays.asList(array).iterator(), separator, -1);
+	}
+
+	/**
+	 * Appends string values of the remaining elements of given iterator to
+	 * given appendable, element by element. When the output reaches the max
+	 * characters, it is cut and followed by {@code "..."}, the rest of the
+	 * elements are not visited.
+	 * 
+	 * @param out
+	 * @param iterator
+	 * @param separator
+	 * @param maxChars
+	 *            max characters to append before the ellipsis, negative for
+	 *            no limit
+	 * @return given appendable
+	 * @throws UncheckedIOException
+	 *             if the appendable throws an {@link IOException}
+	 */
+	public static <A extends Appendable, T> A joinTo(A out, Iterator<T> iterator, String separator, int maxChars) {
+		BoundedAppender appender = new BoundedAppender(out, maxChars);
+		boolean first = true;
+		while (iterator.hasNext()) {
+			if ((!first && !appender.append(separator)) || !appender.appendValue(iterator.next())) {
+				break;
+			}
+			first = false;
+		}
+		return out;
+	}
+
+	/**
+	 * Streaming version of {@link #toStringByProperty(Collection, String, int)}
+	 * which appends to given appendable, element by element. The source is
+	 * only iterated, so it does not need to know its size. Unlike
+	 * {@code toStringByProperty}, a zero limit renders {@code "[...]"} for a
+	 * non empty source and a negative limit renders all elements.
+	 * 
+	 * @param out
+	 * @param iterator
+	 * @param property
+	 *            property path of the values, null for the elements
+	 *            themselves
+	 * @param limit
+	 *            max elements to append, negative for no limit
+	 * @param maxChars
+	 *            max characters to append before the ellipsis, negative for
+	 *            no limit
+	 * @return given appendable
+	 * @throws UncheckedIOException
+	 *             if the appendable throws an {@link IOException}
+	 */
+	public static <A extends Appendable, T> A toStringByPropertyTo(A out, Iterator<T> iterator, String property,
+			int limit, int maxChars) {
+		BoundedAppender appender = new BoundedAppender(out, maxChars);
+		if (!appender.append("[")) {
+			return out;
 		}
+		int count = 0;
+		while (iterator.hasNext()) {
+			if (count > 0 && !appender.append(", ")) {
+				return out;
+			}
+			if (count == limit) {
+				if (!appender.append("...")) {
+					return out;
+				}
+				break;
+			}
+			T object = iterator.next();
+			if (!appender.appendValue(property != null ? UtilsForReflection.getValue(object, property) : object)) {
+				return out;
+			}
+			count++;
+		}
+		appender.append("]");
+		return out;
+	}
+
+	public static <A extends Appendable, T> A toStringByPropertyTo(A out, Iterable<T> iterable, String property,
+			int limit) {
+		return toStringByPropertyTo(out, iterable.iterator(), property, limit, -1);
+	}
 
-		return "[" + result + "]";
+	/**
+	 * Appends to an appendable until the max characters are reached
+	 */
+	private static class BoundedAppender {
+
+		private static final String ELLIPSIS = "...";
+
+		private final Appendable out;
+		private final boolean bounded;
+		private int remaining;
+
+		private BoundedAppender(Appendable out, int maxChars) {
+			this.out = out;
+			this.bounded = maxChars >= 0;
+			this.remaining = maxChars;
+		}
+
+		private boolean appendValue(Object value) {
+			return append(value instanceof CharSequence ? (CharSequence) value : String.valueOf(value));
+		}
+
+		/**
+		 * @return false if the value is cut since the max characters are
+		 *         reached
+		 */
+		private boolean append(CharSequence value) {
+			try {
+				if (!bounded) {
+					out.append(value);
+					return true;
+				}
+				if (value.length() > remaining) {
+					out.append(value, 0, remaining).append(ELLIPSIS);
+					remaining = 0;
+					return false;
+				}
+				out.append(value);
+				remaining -= value.length();
+				return true;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 	}
 
 }
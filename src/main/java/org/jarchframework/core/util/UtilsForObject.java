@@ -2,20 +2,54 @@ package org.jarchframework.core.util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.stream.IntStream;
 
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.CompareToBuilder;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Change;
+import org.jarchframework.core.model.Change.Kind;
+import org.jarchframework.core.model.ChangeSet;
 import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.Snapshot;
 import org.jarchframework.core.model.ToString;
 
 /**
@@ -27,6 +61,14 @@ import org.jarchframework.core.model.ToString;
  */
 public class UtilsForObject {
 
+	public static final int DEFAULT_COPY_CHUNK_SIZE = 1024;
+
+	private static final int HASH_CODE_INITIAL = 17;
+	private static final int HASH_CODE_MULTIPLIER = 37;
+
+	private static volatile Hash64 hash64 = Hash64.MURMUR3;
+	private static volatile RenderCache renderCache;
+
 	private UtilsForObject() {
 	}
 
@@ -36,33 +78,54 @@ public class UtilsForObject {
 		} else if (!getClass(thisObj).isAssignableFrom(getClass(thatObj))) {
 			throw new ClassCastException(getClass(thatObj) + " is not assignable to " + getClass(thisObj));
 		} else {
-			String[] properties = getIdentityKeysFromCache(getClass(thisObj));
+			PropertyAccessor[] accessors = getIdentityConfigFromCache(getClass(thisObj)).accessors;
 			CompareToBuilder compareToBuilder = new CompareToBuilder();
 
-			for (String property : properties) {
-				if (property.length() == 0)
-					continue;
-				Object valueOfThis = UtilsForReflection.getValue(thisObj, property);
-				Object valueOfObj = UtilsForReflection.getValue(thatObj, property);
-				compareToBuilder = compareToBuilder.append(valueOfThis, valueOfObj);
+			for (PropertyAccessor accessor : accessors) {
+				if (accessor.isPrimitive()) {
+					int comparison = accessor.primitiveCompare(thisObj, thatObj);
+					if (comparison != 0) {
+						return comparison;
+					}
+				} else {
+					Object valueOfThis = accessor.get(thisObj);
+					Object valueOfObj = accessor.get(thatObj);
+					compareToBuilder = compareToBuilder.append(valueOfThis, valueOfObj);
+					if (compareToBuilder.toComparison() != 0) {
+						return compareToBuilder.toComparison();
+					}
+				}
 			}
-			return compareToBuilder.toComparison();
+			return 0;
 		}
 	}
 
 	public static String toString(Object thisObj, String defaultValue) {
 		ToStringConfig config = getToStringConfigFromCache(getClass(thisObj));
-		String[] properties = config.properties;
-		ToStringStyle toStringStyle = config.toStringStyle;
-		if (properties.length == 0) {
+		if (config.properties.length == 0) {
+			// not cached, the output is given
 			return defaultValue;
+		}
+		RenderCache cache = renderCache;
+		if (cache != null) {
+			return cache.get(thisObj, RenderCache.TO_STRING, o -> render(o, config));
+		}
+		return render(thisObj, config);
+	}
+
+	/**
+	 * Renders the toString properties of given object, which does not depend
+	 * on the default value of {@link #toString(Object, String)}
+	 */
+	private static String render(Object thisObj, ToStringConfig config) {
+		ToStringStyle toStringStyle = config.toStringStyle;
+		if (toStringStyle == ToStringStyle.JSON_STYLE) {
+			return JsonRenderer.DEFAULT.render(thisObj);
 		} else {
 			ToStringBuilder toStringBuilder = new ToStringBuilder(thisObj, toStringStyle);
-			for (String property : properties) {
-				if (property.length() == 0)
-					continue;
-				Object value = UtilsForReflection.getValue(thisObj, property);
-				toStringBuilder.append(property, value);
+			for (PropertyAccessor accessor : config.accessors) {
+				Object value = accessor.get(thisObj);
+				toStringBuilder.append(accessor.getPath(), value);
 			}
 			return toStringBuilder.toString();
 		}
@@ -71,42 +134,211 @@ public class UtilsForObject {
 	public static boolean equals(Object thisObj, Object obj) {
 		if (obj != null && getClass(thisObj).isAssignableFrom(getClass(obj))) {
 
-			String[] properties = getIdentityKeysFromCache(getClass(thisObj));
+			IdentityConfig config = getIdentityConfigFromCache(getClass(thisObj));
 
-			if (properties.length == 0) {
+			if (config.properties.length == 0) {
 				return false;
 			} else {
 				EqualsBuilder equalsBuilder = new EqualsBuilder();
 
-				for (String property : properties) {
-					if (property.length() == 0)
-						continue;
-					Object valueOfThis = UtilsForReflection.getValue(thisObj, property);
-					Object valueOfObj = UtilsForReflection.getValue(obj, property);
-					equalsBuilder = equalsBuilder.append(valueOfThis, valueOfObj);
+				for (PropertyAccessor accessor : config.accessors) {
+					if (accessor.isPrimitive()) {
+						if (!accessor.primitiveEquals(thisObj, obj)) {
+							return false;
+						}
+					} else {
+						Object valueOfThis = accessor.get(thisObj);
+						Object valueOfObj = accessor.get(obj);
+						equalsBuilder = equalsBuilder.append(valueOfThis, valueOfObj);
+						if (!equalsBuilder.isEquals()) {
+							return false;
+						}
+					}
 				}
-				return equalsBuilder.isEquals();
+				return true;
 			}
 		} else {
 			return false;
 		}
 	}
 
+	/**
+	 * Hash code of the identity values, same as {@link HashCodeBuilder}
+	 * produces for the boxed values. Primitive properties are hashed without
+	 * boxing.
+	 * 
+	 * @param thisObj
+	 * @return the hash code
+	 */
 	public static int hashCode(Object thisObj) {
-		String[] properties = getIdentityKeysFromCache(getClass(thisObj));
+		IdentityConfig config = getIdentityConfigFromCache(getClass(thisObj));
 
-		if (properties.length == 0) {
+		if (config.properties.length == 0) {
 			return 0;
 		} else {
-			HashCodeBuilder hashCodeBuilder = new HashCodeBuilder();
-			for (String property : properties) {
-				if (property.length() == 0)
-					continue;
-				Object valueOfThis = UtilsForReflection.getValue(thisObj, property);
-				hashCodeBuilder.append(valueOfThis);
+			int hashCode = HASH_CODE_INITIAL;
+			for (PropertyAccessor accessor : config.accessors) {
+				int valueHashCode;
+				if (accessor.isPrimitive()) {
+					valueHashCode = accessor.primitiveHashCode(thisObj);
+				} else {
+					Object valueOfThis = accessor.get(thisObj);
+					if (valueOfThis != null && valueOfThis.getClass().isArray()) {
+						// arrays are appended element by element
+						return hashCodeByBuilder(thisObj, config);
+					}
+					valueHashCode = valueOfThis == null ? 0 : valueOfThis.hashCode();
+				}
+				hashCode = hashCode * HASH_CODE_MULTIPLIER + valueHashCode;
+			}
+			return hashCode;
+		}
+	}
+
+	private static int hashCodeByBuilder(Object thisObj, IdentityConfig config) {
+		HashCodeBuilder hashCodeBuilder = new HashCodeBuilder(HASH_CODE_INITIAL, HASH_CODE_MULTIPLIER);
+		for (PropertyAccessor accessor : config.accessors) {
+			hashCodeBuilder.append(accessor.get(thisObj));
+		}
+		return hashCodeBuilder.toHashCode();
+	}
+
+	/**
+	 * 64-bit hash of the identity values by the {@link #setHash64(Hash64)
+	 * configured} hash function, for large hash based structures where 32-bit
+	 * collisions are frequent. Numbers, dates, UUIDs and strings are hashed by
+	 * their full state, other values by their {@code hashCode()}.
+	 * 
+	 * @param thisObj
+	 * @return the hash
+	 */
+	public static long hashCode64(Object thisObj) {
+		return hashCode64(thisObj, hash64);
+	}
+
+	/**
+	 * 64-bit hash of the identity values by given hash function. Primitive
+	 * properties are mixed by their bits without boxing, strings by their
+	 * characters, nested objects by their own identity hash.
+	 * 
+	 * @param thisObj
+	 * @param hash64
+	 * @return the hash
+	 */
+	public static long hashCode64(Object thisObj, Hash64 hash64) {
+		IdentityConfig config = getIdentityConfigFromCache(getClass(thisObj));
+		long hash = hash64.start();
+		for (PropertyAccessor accessor : config.accessors) {
+			long bits = accessor.isPrimitive() ? accessor.primitiveBits(thisObj)
+					: valueBits(accessor.get(thisObj), hash64);
+			hash = hash64.mix(hash, bits);
+		}
+		return hash64.finish(hash, config.accessors.length);
+	}
+
+	private static long valueBits(Object value, Hash64 hash64) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof Long || value instanceof Integer || value instanceof Short
+				|| value instanceof Byte) {
+			return ((Number) value).longValue();
+		} else if (value instanceof Double) {
+			return Double.doubleToLongBits((Double) value);
+		} else if (value instanceof Float) {
+			return Float.floatToIntBits((Float) value);
+		} else if (value instanceof Boolean) {
+			return ((Boolean) value) ? 1 : 0;
+		} else if (value instanceof Character) {
+			return (Character) value;
+		} else if (value instanceof CharSequence || value instanceof Enum) {
+			CharSequence chars = value instanceof Enum ? ((Enum<?>) value).name() : (CharSequence) value;
+			long hash = hash64.start();
+			long packed = 0;
+			for (int i = 0; i < chars.length(); i++) {
+				packed = (packed << 16) | chars.charAt(i);
+				if ((i & 3) == 3) {
+					hash = hash64.mix(hash, packed);
+					packed = 0;
+				}
+			}
+			return hash64.finish(hash64.mix(hash, packed), chars.length());
+		} else if (value instanceof BaseObject) {
+			return hashCode64(value, hash64);
+		} else if (value instanceof UUID) {
+			UUID uuid = (UUID) value;
+			return valueBits(hash64, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+		} else if (value instanceof Date) {
+			return ((Date) value).getTime();
+		} else if (value instanceof LocalDate) {
+			return ((LocalDate) value).toEpochDay();
+		} else if (value instanceof LocalTime) {
+			return ((LocalTime) value).toNanoOfDay();
+		} else if (value instanceof LocalDateTime) {
+			LocalDateTime dateTime = (LocalDateTime) value;
+			return valueBits(hash64, dateTime.toLocalDate().toEpochDay(), dateTime.toLocalTime().toNanoOfDay());
+		} else if (value instanceof Instant) {
+			Instant instant = (Instant) value;
+			return valueBits(hash64, instant.getEpochSecond(), instant.getNano());
+		} else if (value instanceof BigInteger) {
+			return valueBits((BigInteger) value, hash64);
+		} else if (value instanceof BigDecimal) {
+			BigDecimal decimal = (BigDecimal) value;
+			return valueBits(hash64, valueBits(decimal.unscaledValue(), hash64), decimal.scale());
+		}
+		return value.hashCode();
+	}
+
+	private static long valueBits(Hash64 hash64, long first, long second) {
+		return hash64.finish(hash64.mix(hash64.mix(hash64.start(), first), second), 2);
+	}
+
+	private static long valueBits(BigInteger value, Hash64 hash64) {
+		if (value.bitLength() < Long.SIZE) {
+			return value.longValue();
+		}
+		byte[] bytes = value.toByteArray();
+		long hash = hash64.start();
+		long packed = 0;
+		for (int i = 0; i < bytes.length; i++) {
+			packed = (packed << 8) | (bytes[i] & 0xffL);
+			if ((i & 7) == 7) {
+				hash = hash64.mix(hash, packed);
+				packed = 0;
 			}
-			return hashCodeBuilder.toHashCode();
 		}
+		return hash64.finish(hash64.mix(hash, packed), bytes.length);
+	}
+
+	public static Hash64 getHash64() {
+		return hash64;
+	}
+
+	/**
+	 * Sets the hash function of {@link #hashCode64(Object)} globally,
+	 * {@link Hash64#MURMUR3} by default
+	 * 
+	 * @param hash64
+	 */
+	public static void setHash64(Hash64 hash64) {
+		if (hash64 == null) {
+			throw new IllegalArgumentException("hash64 should not be null");
+		}
+		UtilsForObject.hash64 = hash64;
+	}
+
+	public static RenderCache getRenderCache() {
+		return renderCache;
+	}
+
+	/**
+	 * Sets the cache memoizing {@link #toString(Object, String)} globally, none
+	 * by default
+	 * 
+	 * @param renderCache
+	 *            the cache, null to not memoize
+	 */
+	public static void setRenderCache(RenderCache renderCache) {
+		UtilsForObject.renderCache = renderCache;
 	}
 
 	public static final String[] getIdentityKeys(Class<?> classz) {
@@ -127,20 +359,13 @@ public class UtilsForObject {
 	}
 
 	public static Object[] getIdentityValues(Object o) {
-		String[] properties = getIdentityKeys(getClass(o));
+		PropertyAccessor[] accessors = getIdentityConfigFromCache(getClass(o)).accessors;
 
-		if (properties.length == 0) {
-			return ArrayUtils.EMPTY_OBJECT_ARRAY;
-		} else {
-			List<Object> values = new ArrayList<>();
-			for (String property : properties) {
-				if (property.length() == 0)
-					continue;
-				Object propValue = UtilsForReflection.getValue(o, property);
-				values.add(propValue);
-			}
-			return values.toArray();
+		Object[] values = new Object[accessors.length];
+		for (int i = 0; i < accessors.length; i++) {
+			values[i] = accessors[i].get(o);
 		}
+		return values;
 	}
 
 	/**
@@ -165,46 +390,562 @@ public class UtilsForObject {
 		}
 	}
 
+	/**
+	 * Copies the elements of given collection by
+	 * {@link #copyAll(Collection, int)} in chunks of
+	 * {@link #DEFAULT_COPY_CHUNK_SIZE}, objects shared by elements of
+	 * different chunks are not shared among their copies
+	 * 
+	 * @param collection
+	 * @return copies of the elements in the iteration order
+	 */
+	public static <T> List<T> copyAll(Collection<T> collection) {
+		return copyAll(collection, DEFAULT_COPY_CHUNK_SIZE);
+	}
+
+	/**
+	 * Makes copies of the elements of given collection by serialize and
+	 * deserialize, like {@link #copyObject(Object)} does but in parallel
+	 * chunks. Each chunk is serialized into its own buffer, so memory is
+	 * bounded by the chunks being copied at the same time instead of the whole
+	 * graph.
+	 * <p>
+	 * An element occurring more than once in the collection is copied once,
+	 * objects shared by elements of the same chunk stay shared among their
+	 * copies. Immutable leaf values like strings, numbers and java.time values
+	 * are not copied but shared with the originals.
+	 * <p>
+	 * Sharing across chunks is lost: a nested object referenced by elements of
+	 * different chunks is copied once per chunk, so copies from different
+	 * chunks refer to different copies of it. This method is therefore not a
+	 * drop-in replacement for calling {@link #copyObject(Object)} on the whole
+	 * collection; use that one when the copies must keep the object graph,
+	 * or pass a chunk size not smaller than the collection.
+	 * 
+	 * @param collection
+	 * @param chunkSize
+	 *            number of elements serialized into one buffer
+	 * @return copies of the elements in the iteration order
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> copyAll(Collection<T> collection, int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunk size should be positive: " + chunkSize);
+		}
+		Map<Object, Integer> positions = new IdentityHashMap<>();
+		List<Object> distinct = new ArrayList<>(collection.size());
+		int[] mapping = new int[collection.size()];
+		int index = 0;
+		for (T element : collection) {
+			Integer position = positions.get(element);
+			if (position == null) {
+				position = distinct.size();
+				positions.put(element, position);
+				distinct.add(element);
+			}
+			mapping[index++] = position;
+		}
+
+		Object[] copies = new Object[distinct.size()];
+		int chunks = (distinct.size() + chunkSize - 1) / chunkSize;
+		IntStream range = IntStream.range(0, chunks);
+		(chunks > 1 ? range.parallel() : range).forEach(chunk -> copyChunk(distinct, chunk * chunkSize,
+				Math.min(distinct.size(), (chunk + 1) * chunkSize), copies));
+
+		List<T> result = new ArrayList<>(mapping.length);
+		for (int position : mapping) {
+			result.add((T) copies[position]);
+		}
+		return result;
+	}
+
+	/**
+	 * Copies the elements of given array by {@link #copyAll(Collection)}, with
+	 * the same loss of sharing across chunks
+	 * 
+	 * @param array
+	 * @return a new array of the copies
+	 */
+	public static <T> T[] copyAll(T[] array) {
+		return copyAll(Arrays.asList(array)).toArray(Arrays.copyOf(array, 0));
+	}
+
+	private static void copyChunk(List<Object> elements, int from, int to, Object[] copies) {
+		List<Object> leaves = new ArrayList<>();
+		try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
+				ObjectOutputStream out = new LeafSharingOutputStream(bout, leaves)) {
+			for (int i = from; i < to; i++) {
+				out.writeObject(elements.get(i));
+			}
+			out.flush();
+
+			try (ObjectInputStream in = new LeafSharingInputStream(new ByteArrayInputStream(bout.toByteArray()),
+					leaves)) {
+				for (int i = from; i < to; i++) {
+					copies[i] = in.readObject();
+				}
+			}
+		} catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Writes references of immutable leaf values instead of the values
+	 */
+	private static class LeafSharingOutputStream extends ObjectOutputStream {
+
+		private final List<Object> leaves;
+
+		public LeafSharingOutputStream(OutputStream out, List<Object> leaves) throws IOException {
+			super(out);
+			this.leaves = leaves;
+			enableReplaceObject(true);
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			if (obj != null && IMMUTABLE_LEAVES.contains(obj.getClass())) {
+				leaves.add(obj);
+				return new LeafReference(leaves.size() - 1);
+			}
+			return obj;
+		}
+	}
+
+	private static class LeafSharingInputStream extends ObjectInputStream {
+
+		private final List<Object> leaves;
+
+		public LeafSharingInputStream(InputStream in, List<Object> leaves) throws IOException {
+			super(in);
+			this.leaves = leaves;
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			return obj instanceof LeafReference ? leaves.get(((LeafReference) obj).index) : obj;
+		}
+	}
+
+	private static class LeafReference implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int index;
+
+		public LeafReference(int index) {
+			this.index = index;
+		}
+	}
+
+	/**
+	 * Compares given properties of two states of an object. Nested
+	 * {@link BaseObject}s having the same identity are compared property by
+	 * property, elements of collections are matched by their identity values.
+	 * Other values are compared by equals.<br>
+	 * <b>Example:</b><br>
+	 * <code>
+	 * ChangeSet changes = UtilsForObject.diff(before, after, "name", "group", "lines");<br>
+	 * changes.getChange("lines[3].amount");
+	 * </code>
+	 * 
+	 * @param before
+	 * @param after
+	 * @param paths
+	 *            property paths to compare, all public getter properties if
+	 *            not specified
+	 * @return the changes, empty if nothing has changed
+	 */
+	public static ChangeSet diff(Object before, Object after, String... paths) {
+		List<Change> changes = new ArrayList<>();
+		if (before == null || after == null) {
+			if (before != after) {
+				changes.add(new Change(Kind.MODIFIED, "", before, after));
+			}
+		} else {
+			diffProperties("", before, after, paths.length > 0 ? paths : getDiffPaths(getClass(before)), changes,
+					new IdentityHashMap<>());
+		}
+		return new ChangeSet(changes);
+	}
+
+	/**
+	 * Compares the snapshot with the current state of the object, see
+	 * {@link #snapshot(Object)}
+	 * 
+	 * @param snapshot
+	 * @param current
+	 *            an instance of the class of the snapshot
+	 * @return the changes, empty if nothing has changed
+	 * @throws IllegalArgumentException
+	 *             if the snapshot is taken of another class
+	 */
+	public static ChangeSet diff(Snapshot snapshot, Object current) {
+		if (current != null && getClass(current) != snapshot.getType()) {
+			throw new IllegalArgumentException(String.format("Snapshot of %s can not be compared with %s",
+					snapshot.getType().getName(), getClass(current).getName()));
+		}
+		PropertyAccessor[] accessors = getSnapshotConfigFromCache(snapshot.getType()).accessors;
+		List<Change> changes = new ArrayList<>();
+		for (int i = 0; i < accessors.length; i++) {
+			Object oldValue = snapshot.getValue(i);
+			Object newValue = accessors[i].get(current);
+			if (!Objects.deepEquals(oldValue, newValue)) {
+				changes.add(new Change(Kind.MODIFIED, accessors[i].getPath(), oldValue, newValue));
+			}
+		}
+		return new ChangeSet(changes);
+	}
+
+	/**
+	 * Takes a flat snapshot of {@link Identity} and {@link ToString}
+	 * properties of given object to be compared later by
+	 * {@link #diff(Snapshot, Object)}
+	 * 
+	 * @param obj
+	 * @return the snapshot
+	 */
+	public static Snapshot snapshot(Object obj) {
+		SnapshotConfig config = getSnapshotConfigFromCache(getClass(obj));
+		Object[] values = new Object[config.accessors.length];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = config.accessors[i].get(obj);
+		}
+		return new Snapshot(getClass(obj), config.paths, values);
+	}
+
+	private static void diffProperties(String prefix, Object before, Object after, String[] paths,
+			List<Change> changes, Map<Object, Object> visited) {
+		if (visited.put(before, after) == after) {
+			// already compared, a cycle in the graph
+			return;
+		}
+		Class<?> type = getClass(before);
+		for (String path : paths) {
+			PropertyAccessor accessor = PropertyAccessor.of(type, path);
+			diffValues(prefix + path, accessor.get(before), accessor.get(after), changes, visited);
+		}
+	}
+
+	private static void diffValues(String path, Object oldValue, Object newValue, List<Change> changes,
+			Map<Object, Object> visited) {
+		if (oldValue == newValue) {
+			return;
+		}
+		if (oldValue instanceof BaseObject && newValue != null && getClass(oldValue) == getClass(newValue)) {
+			if (getIdentityConfigFromCache(getClass(oldValue)).accessors.length > 0 && !oldValue.equals(newValue)) {
+				changes.add(new Change(Kind.MODIFIED, path, oldValue, newValue));
+			} else {
+				diffProperties(path + ".", oldValue, newValue, getDiffPaths(getClass(oldValue)), changes, visited);
+			}
+		} else if (oldValue instanceof Collection && newValue instanceof Collection
+				&& hasIdentityElements((Collection<?>) oldValue) && hasIdentityElements((Collection<?>) newValue)) {
+			diffCollections(path, (Collection<?>) oldValue, (Collection<?>) newValue, changes, visited);
+		} else if (!Objects.deepEquals(oldValue, newValue)) {
+			changes.add(new Change(Kind.MODIFIED, path, oldValue, newValue));
+		}
+	}
+
+	private static void diffCollections(String path, Collection<?> oldValues, Collection<?> newValues,
+			List<Change> changes, Map<Object, Object> visited) {
+		Map<List<Object>, Object> remaining = new LinkedHashMap<>();
+		for (Object element : oldValues) {
+			remaining.put(Arrays.asList(getIdentityValues(element)), element);
+		}
+		for (Object element : newValues) {
+			List<Object> identity = Arrays.asList(getIdentityValues(element));
+			String elementPath = path + "[" + StringUtils.join(identity, ',') + "]";
+			Object oldElement = remaining.remove(identity);
+			if (oldElement == null) {
+				changes.add(new Change(Kind.ADDED, elementPath, null, element));
+			} else if (oldElement != element) {
+				diffProperties(elementPath + ".", oldElement, element, getDiffPaths(getClass(element)), changes,
+						visited);
+			}
+		}
+		for (Map.Entry<List<Object>, Object> entry : remaining.entrySet()) {
+			changes.add(new Change(Kind.REMOVED, path + "[" + StringUtils.join(entry.getKey(), ',') + "]",
+					entry.getValue(), null));
+		}
+	}
+
+	private static boolean hasIdentityElements(Collection<?> collection) {
+		for (Object element : collection) {
+			if (!(element instanceof BaseObject)
+					|| getIdentityConfigFromCache(getClass(element)).accessors.length == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] getDiffPaths(Class<?> type) {
+		String[] paths = diffPathCache.get(type);
+		if (paths == null) {
+			paths = diffPathCache.computeIfAbsent(type, key -> {
+				List<String> names = new ArrayList<>();
+				for (ClassDescriptor.Property property : ClassDescriptor.forClass(key).getProperties()) {
+					if (Modifier.isPublic(property.getGetter().getModifiers())) {
+						names.add(property.getName());
+					}
+				}
+				return names.toArray(new String[names.size()]);
+			});
+		}
+		return paths;
+	}
+
+	/**
+	 * Returns a read-only map view of the properties of given object, by the
+	 * names of its public getters. Values are resolved on demand, nothing is
+	 * copied, and the keys are shared by the views of the same class.
+	 * 
+	 * @param obj
+	 * @return the view, an empty map if the object is null
+	 */
+	public static Map<String, Object> asMap(Object obj) {
+		if (obj == null) {
+			return Collections.emptyMap();
+		}
+		return PropertyMap.view(getKeyIndexFromCache(getClass(obj)), obj);
+	}
+
+	/**
+	 * Reads given paths of the elements of given collection into read-only
+	 * row maps. The rows share one key index and hold their values in an
+	 * array, which takes several times less memory than a {@link java.util.HashMap} per
+	 * row. A null element gives a row of null values.
+	 * 
+	 * @param collection
+	 * @param paths
+	 *            property paths or expressions, the keys of the rows
+	 * @return the rows in the order of the collection
+	 */
+	public static List<Map<String, Object>> flatten(Collection<?> collection, String... paths) {
+		for (String path : paths) {
+			if (path == null || path.trim().length() == 0) {
+				throw new IllegalArgumentException("property path should not be empty");
+			}
+		}
+		KeyIndex index = new KeyIndex(paths.clone(), null);
+		List<Map<String, Object>> rows = new ArrayList<>(collection.size());
+		Class<?> lastType = null;
+		PropertyAccessor[] accessors = null;
+		for (Object element : collection) {
+			Object[] values = new Object[paths.length];
+			if (element != null) {
+				if (element.getClass() != lastType) {
+					lastType = element.getClass();
+					accessors = getAccessors(lastType, paths);
+				}
+				for (int i = 0; i < accessors.length; i++) {
+					values[i] = accessors[i].get(element);
+				}
+			}
+			rows.add(PropertyMap.row(index, values));
+		}
+		return rows;
+	}
+
+	/**
+	 * Drops the key indexes of {@link #asMap(Object)}, whose accessors depend
+	 * on the access strategies, called when a strategy changes
+	 */
+	static void clearKeyIndexes() {
+		keyIndexCache.clear();
+	}
+
+	private static KeyIndex getKeyIndexFromCache(Class<?> type) {
+		KeyIndex index = keyIndexCache.get(type);
+		if (index == null) {
+			index = keyIndexCache.computeIfAbsent(type, key -> {
+				List<String> keys = new ArrayList<>();
+				List<PropertyAccessor> accessors = new ArrayList<>();
+				for (String property : ClassDescriptor.forClass(key).getPropertyNames()) {
+					PropertyAccessor accessor = PropertyAccessor.of(key, property);
+					// properties of non-public getters are left out
+					if (accessor.isResolved()) {
+						keys.add(property);
+						accessors.add(accessor);
+					}
+				}
+				return new KeyIndex(keys.toArray(new String[keys.size()]),
+						accessors.toArray(new PropertyAccessor[accessors.size()]));
+			});
+		}
+		return index;
+	}
+
+	/**
+	 * Resolves and caches identity, toString and accessor metadata of all
+	 * classes annotated with {@link Identity} or {@link ToString} in given
+	 * package and its subpackages, so that the first calls on these classes
+	 * do not pay for it
+	 *
+	 * @param basePackage
+	 * @return report of warmed classes and paths that could not be resolved
+	 */
+	public static WarmUpReport warmUp(String basePackage) {
+		WarmUpReport report = new WarmUpReport();
+		for (Class<?> type : getWarmUpClasses(basePackage)) {
+			warmUp(type, report);
+		}
+		return report;
+	}
+
+	/**
+	 * Same as {@link #warmUp(String)} but warms every class as a separate task
+	 * on given executor
+	 *
+	 * @param basePackage
+	 * @param executor
+	 * @return future of the report, completed when all classes are warmed
+	 */
+	public static CompletableFuture<WarmUpReport> warmUp(String basePackage, Executor executor) {
+		WarmUpReport report = new WarmUpReport();
+		return CompletableFuture.supplyAsync(() -> getWarmUpClasses(basePackage), executor).thenCompose(types -> {
+			List<CompletableFuture<Void>> tasks = new ArrayList<>(types.size());
+			for (Class<?> type : types) {
+				tasks.add(CompletableFuture.runAsync(() -> warmUp(type, report), executor));
+			}
+			return CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[tasks.size()]));
+		}).thenApply(ignored -> report);
+	}
+
+	private static Set<Class<?>> getWarmUpClasses(String basePackage) {
+		Set<Class<?>> types = new LinkedHashSet<>(UtilsForPackageScan.getAnnotatedClasses(basePackage, Identity.class));
+		types.addAll(UtilsForPackageScan.getAnnotatedClasses(basePackage, ToString.class));
+		return types;
+	}
+
+	private static void warmUp(Class<?> type, WarmUpReport report) {
+		try {
+			ClassDescriptor.forClass(type);
+			for (PropertyAccessor accessor : getIdentityConfigFromCache(type).accessors) {
+				if (accessor.hasMissingGetter()) {
+					report.addUnresolvedPath(type, accessor.getPath());
+				}
+			}
+			for (PropertyAccessor accessor : getToStringConfigFromCache(type).accessors) {
+				if (accessor.hasMissingGetter()) {
+					report.addUnresolvedPath(type, accessor.getPath());
+				}
+			}
+			report.addClass(type);
+		} catch (RuntimeException e) {
+			report.addFailure(type, e);
+		}
+	}
+
 	private static class ToStringConfig {
-		public String[] properties;
-		public ToStringStyle toStringStyle;
+		public final String[] properties;
+		public final PropertyAccessor[] accessors;
+		public final ToStringStyle toStringStyle;
 
-		public ToStringConfig(String[] properties, ToStringStyle toStringStyle) {
+		public ToStringConfig(Class<?> type, String[] properties, ToStringStyle toStringStyle) {
 			this.properties = properties;
+			this.accessors = getAccessors(type, properties);
 			this.toStringStyle = toStringStyle;
 		}
 	}
 
 	private static class IdentityConfig {
-		public String[] properties;
+		public final String[] properties;
+		public final PropertyAccessor[] accessors;
 
-		public IdentityConfig(String[] properties) {
+		public IdentityConfig(Class<?> type, String[] properties) {
 			this.properties = properties;
+			this.accessors = getAccessors(type, properties);
+		}
+	}
+
+	private static class SnapshotConfig {
+		public final List<String> paths;
+		public final PropertyAccessor[] accessors;
+
+		public SnapshotConfig(Class<?> type) {
+			Set<String> properties = new LinkedHashSet<>();
+			for (PropertyAccessor accessor : getIdentityConfigFromCache(type).accessors) {
+				properties.add(accessor.getPath());
+			}
+			for (PropertyAccessor accessor : getToStringConfigFromCache(type).accessors) {
+				properties.add(accessor.getPath());
+			}
+			this.paths = Collections.unmodifiableList(new ArrayList<>(properties));
+			this.accessors = getAccessors(type, properties.toArray(new String[properties.size()]));
 		}
 	}
 
-	private static final Map<Class<?>, IdentityConfig> identityCache = new HashMap<>();
-	private static final Map<Class<?>, ToStringConfig> toStringCache = new HashMap<>();
+	private static final Set<Class<?>> IMMUTABLE_LEAVES = new HashSet<>(Arrays.<Class<?>> asList(String.class,
+			Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+			Double.class, BigInteger.class, BigDecimal.class, UUID.class, LocalDate.class, LocalTime.class,
+			LocalDateTime.class, OffsetDateTime.class, ZonedDateTime.class, Instant.class, Duration.class));
+
+	private static final Map<Class<?>, IdentityConfig> identityCache = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, ToStringConfig> toStringCache = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, SnapshotConfig> snapshotCache = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, String[]> diffPathCache = new ConcurrentHashMap<>();
+	private static final Map<Class<?>, KeyIndex> keyIndexCache = new ConcurrentHashMap<>();
 
-	private static synchronized final String[] getIdentityKeysFromCache(Class<?> type) {
-		String[] properties = null;
+	private static PropertyAccessor[] getAccessors(Class<?> type, String[] properties) {
+		List<PropertyAccessor> accessors = new ArrayList<>(properties.length);
+		for (String property : properties) {
+			if (property.length() > 0) {
+				accessors.add(PropertyAccessor.of(type, property));
+			}
+		}
+		return accessors.toArray(new PropertyAccessor[accessors.size()]);
+	}
+
+	/**
+	 * @return accessors of the toString properties of given class
+	 */
+	static PropertyAccessor[] getToStringAccessors(Class<?> type) {
+		return getToStringConfigFromCache(type).accessors;
+	}
+
+	static String[] getIdentityProperties(Class<?> type) {
+		return getIdentityConfigFromCache(type).properties;
+	}
+
+	static String[] getToStringProperties(Class<?> type) {
+		return getToStringConfigFromCache(type).properties;
+	}
+
+	static ToStringStyle getToStringStyleOf(Class<?> type) {
+		return getToStringConfigFromCache(type).toStringStyle;
+	}
+
+	private static final IdentityConfig getIdentityConfigFromCache(Class<?> type) {
 		IdentityConfig config = identityCache.get(type);
 		if (config == null) {
-			properties = getIdentityKeys(type);
-			identityCache.put(type, new IdentityConfig(properties));
-		} else {
-			properties = config.properties;
+			config = identityCache.computeIfAbsent(type, key -> {
+				String[] properties = MetadataSnapshot.getIdentityProperties(key);
+				return new IdentityConfig(key, properties != null ? properties : getIdentityKeys(key));
+			});
 		}
-		return properties;
+		return config;
+	}
+
+	private static final SnapshotConfig getSnapshotConfigFromCache(Class<?> type) {
+		SnapshotConfig config = snapshotCache.get(type);
+		if (config == null) {
+			config = snapshotCache.computeIfAbsent(type, SnapshotConfig::new);
+		}
+		return config;
 	}
 
-	private static synchronized final ToStringConfig getToStringConfigFromCache(Class<?> type) {
+	private static final ToStringConfig getToStringConfigFromCache(Class<?> type) {
 		ToStringConfig config = toStringCache.get(type);
 		if (config == null) {
-			String[] properties = getToStringAttributes(type);
-			ToStringStyle toStringStyle = getToStringStyle(type);
-			config = new ToStringConfig(properties, toStringStyle);
-			toStringCache.put(type, config);
+			config = toStringCache.computeIfAbsent(type, key -> {
+				String[] properties = MetadataSnapshot.getToStringProperties(key);
+				org.jarchframework.core.model.ToStringStyle style = MetadataSnapshot.getToStringStyle(key);
+				return new ToStringConfig(key, properties != null ? properties : getToStringAttributes(key),
+						style != null ? style.getToStringStyle() : getToStringStyle(key));
+			});
 		}
 		return config;
 	}
@@ -2,13 +2,19 @@ package org.jarchframework.core.util;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.annotation.Annotation;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -23,6 +29,10 @@ public class UtilsForPackageScan {
 
 	private static Logger logger = LoggerFactory.getLogger(UtilsForPackageScan.class);
 
+	private static final String CLASS_SUFFIX = ".class";
+
+	private static volatile Executor scanExecutor = ForkJoinPool.commonPool();
+
 	private UtilsForPackageScan() {
 	}
 
@@ -39,16 +49,31 @@ public class UtilsForPackageScan {
 	private static List<Class<?>> getClasses(String packageName) throws ClassNotFoundException, IOException {
 		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
 		assert classLoader != null;
-		String path = packageName.replace('.', '/');
 
 		List<Class<?>> classes = new ArrayList<>();
+		for (File directory : getDirectories(packageName, classLoader)) {
+			classes.addAll(findClasses(directory, packageName));
+		}
+		return classes;
+	}
+
+	/**
+	 * @param packageName
+	 * @param classLoader
+	 * @return directories of given package in the class path of given class
+	 *         loader
+	 * @throws IOException
+	 */
+	static List<File> getDirectories(String packageName, ClassLoader classLoader) throws IOException {
+		String path = packageName.replace('.', '/');
+
+		List<File> directories = new ArrayList<>();
 		Enumeration<URL> resources = classLoader.getResources(path);
 		while (resources.hasMoreElements()) {
 			URL resource = resources.nextElement();
-			File directory = new File(resource.getFile());
-			classes.addAll(findClasses(directory, packageName));
+			directories.add(new File(resource.getFile()));
 		}
-		return classes;
+		return directories;
 	}
 
 	/**
@@ -101,4 +126,115 @@ public class UtilsForPackageScan {
 		}
 		return classes;
 	}
+
+	/**
+	 * Scans the package in background on the
+	 * {@link #setScanExecutor(Executor) scan executor} and finds classes with
+	 * any of specified annotations in one pass. Classes are loaded by the
+	 * context class loader of the calling thread.
+	 *
+	 * @param sourcePackage
+	 * @param annotationClasses
+	 * @return a future of the result, completed exceptionally only if the
+	 *         package directories can not be read
+	 * @see #scan(String, ClassLoader, Class...)
+	 */
+	@SafeVarargs
+	public static CompletableFuture<ScanResult> getAnnotatedClassesAsync(String sourcePackage,
+			Class<? extends Annotation>... annotationClasses) {
+		return getAnnotatedClassesAsync(sourcePackage, scanExecutor, annotationClasses);
+	}
+
+	/**
+	 * Scans the package in background on given executor and finds classes
+	 * with any of specified annotations in one pass. Classes are loaded by the
+	 * context class loader of the calling thread.
+	 *
+	 * @param sourcePackage
+	 * @param executor
+	 * @param annotationClasses
+	 * @return a future of the result, completed exceptionally only if the
+	 *         package directories can not be read
+	 */
+	@SafeVarargs
+	public static CompletableFuture<ScanResult> getAnnotatedClassesAsync(String sourcePackage, Executor executor,
+			Class<? extends Annotation>... annotationClasses) {
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		return CompletableFuture.supplyAsync(() -> scan(sourcePackage, classLoader, annotationClasses), executor);
+	}
+
+	/**
+	 * Scans the package and finds classes with any of specified annotations in
+	 * one pass. Classes are loaded without being initialized, a class which can
+	 * not be loaded or whose annotations can not be read is reported in the
+	 * result and the scan goes on.
+	 *
+	 * @param sourcePackage
+	 * @param classLoader
+	 * @param annotationClasses
+	 * @return the result
+	 * @throws UncheckedIOException
+	 *             if the package directories can not be read
+	 */
+	@SafeVarargs
+	public static ScanResult scan(String sourcePackage, ClassLoader classLoader,
+			Class<? extends Annotation>... annotationClasses) {
+		Map<Class<? extends Annotation>, Set<Class<?>>> annotated = new LinkedHashMap<>();
+		for (Class<? extends Annotation> annotationClass : annotationClasses) {
+			annotated.put(annotationClass, new LinkedHashSet<>());
+		}
+		Set<Class<?>> allAnnotated = new LinkedHashSet<>();
+		Map<String, Throwable> failures = new LinkedHashMap<>();
+		List<String> classNames = new ArrayList<>();
+		try {
+			for (File directory : getDirectories(sourcePackage, classLoader)) {
+				findClassNames(directory, sourcePackage, classNames);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		for (String className : classNames) {
+			try {
+				Class<?> clazz = Class.forName(className, false, classLoader);
+				for (Map.Entry<Class<? extends Annotation>, Set<Class<?>>> entry : annotated.entrySet()) {
+					if (clazz.isAnnotationPresent(entry.getKey())) {
+						entry.getValue().add(clazz);
+						allAnnotated.add(clazz);
+					}
+				}
+			} catch (ClassNotFoundException | LinkageError | RuntimeException e) {
+				logger.debug(String.format("Class could not be scanned: %s", className), e);
+				failures.put(className, e);
+			}
+		}
+		return new ScanResult(classNames.size(), annotated, allAnnotated, failures);
+	}
+
+	private static void findClassNames(File directory, String packageName, List<String> classNames) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String filename = file.getName();
+			if (file.isDirectory()) {
+				findClassNames(file, packageName + "." + filename, classNames);
+			} else if (filename.endsWith(CLASS_SUFFIX)) {
+				classNames.add(packageName + '.' + filename.substring(0, filename.length() - CLASS_SUFFIX.length()));
+			}
+		}
+	}
+
+	/**
+	 * Sets the executor of {@link #getAnnotatedClassesAsync(String, Class...)},
+	 * which is the common fork join pool by default
+	 *
+	 * @param executor
+	 */
+	public static void setScanExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor should not be null");
+		}
+		scanExecutor = executor;
+	}
 }
@@ -3,25 +3,27 @@ package org.jarchframework.core.util;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jarchframework.core.function.ToStringFunction;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.jarchframework.core.util.ReflectionDiagnostics.Kind;
 
 /**
  * Utility class for helping various reflection operations like getting nested
@@ -38,26 +40,55 @@ import org.slf4j.LoggerFactory;
  */
 public class UtilsForReflection {
 
-	private static final Logger logger = LoggerFactory.getLogger(UtilsForReflection.class);
-
 	private static final String NO_GETTER = "No getter found with isXXX syntax: %s for Class: %s";
-	private static final String NO_SETTER = "No setter found with isXXX syntax: %s for Class: %s";
+
+	private static final Object NOT_FOUND = new Object();
+	private static final ConcurrentMap<Class<?>, Map<Class<? extends Annotation>, Annotation>> annotationCache = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> getterCache = new ConcurrentHashMap<>();
+	private static final ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> methodCache = new ConcurrentHashMap<>();
 
 	private UtilsForReflection() {
 	}
 
 	public static Method getGetterMethod(Class type, String property) throws NoSuchMethodException {
-		hasLength(property);
-		String name = "get" + StringUtils.capitalize(property);
-		Method method = findMethod(type, name, ArrayUtils.EMPTY_CLASS_ARRAY);
+		Method method = findGetterMethod(type, property);
 		if (method == null) {
-			name = "is" + StringUtils.capitalize(property);
-			method = findMethod(type, name, ArrayUtils.EMPTY_CLASS_ARRAY);
+			throw new NoSuchMethodException(String.format(NO_GETTER, property, type));
+		}
+		return method;
+	}
+
+	/**
+	 * Finds the getter of given property with getXXX or isXXX syntax. Results,
+	 * including the ones not found, are cached per class and property.
+	 * 
+	 * @param type
+	 * @param property
+	 * @return the getter method, or {@code null} if not found
+	 */
+	public static Method findGetterMethod(Class type, String property) {
+		hasLength(property);
+		ConcurrentMap<String, Object> getters = methodsOf(getterCache, type);
+		Object getter = getters.get(property);
+		if (getter == null) {
+			String capitalized = StringUtils.capitalize(property);
+			Method method = findMethod(type, "get" + capitalized, ArrayUtils.EMPTY_CLASS_ARRAY);
 			if (method == null) {
-				throw new NoSuchMethodException(String.format(NO_GETTER, property, type));
+				method = findMethod(type, "is" + capitalized, ArrayUtils.EMPTY_CLASS_ARRAY);
 			}
+			getter = method == null ? NOT_FOUND : method;
+			getters.put(property, getter);
 		}
-		return method;
+		return getter == NOT_FOUND ? null : (Method) getter;
+	}
+
+	private static ConcurrentMap<String, Object> methodsOf(
+			ConcurrentMap<Class<?>, ConcurrentMap<String, Object>> cache, Class<?> type) {
+		ConcurrentMap<String, Object> methods = cache.get(type);
+		if (methods == null) {
+			methods = cache.computeIfAbsent(type, key -> new ConcurrentHashMap<>());
+		}
+		return methods;
 	}
 
 	private static void hasLength(String property) {
@@ -76,20 +107,12 @@ public class UtilsForReflection {
 		Method method = null;
 		try {
 			hasLength(property);
-			String name = "get" + StringUtils.capitalize(getterName);
-			method = findMethod(type, name, ArrayUtils.EMPTY_CLASS_ARRAY);
+			method = findGetterMethod(type, getterName);
 			if (method == null) {
-				name = "is" + StringUtils.capitalize(getterName);
-				method = findMethod(type, name, ArrayUtils.EMPTY_CLASS_ARRAY);
-				if (method == null) {
-					if (logger.isWarnEnabled()) {
-						logger.warn(String.format(NO_GETTER, getterName, type));
-					}
-					throw new RuntimeException(String.format(NO_GETTER, getterName, type));
-				}
+				ReflectionDiagnostics.record(type, getterName, Kind.NO_GETTER);
 			}
 		} catch (Exception e) {
-			logger.warn(e.getMessage(), e);
+			ReflectionDiagnostics.record(type, property, Kind.NO_GETTER, e);
 		}
 
 		if (index != -1 && method != null) {
@@ -123,16 +146,47 @@ public class UtilsForReflection {
 			hasLength(property);
 			String name = "set" + StringUtils.capitalize(setterName);
 			method = findMethod(type, name, new Class[] { parameterType });
-			if (method == null && logger.isWarnEnabled()) {
-				logger.warn(String.format(NO_SETTER, setterName, type));
+			if (method == null) {
+				ReflectionDiagnostics.record(type, setterName, Kind.NO_SETTER);
 			}
 		} catch (Exception e) {
-			logger.info(e.getMessage(), e);
+			ReflectionDiagnostics.record(type, property, Kind.NO_SETTER, e);
 		}
 		return method;
 	}
 
+	/**
+	 * @return public method of given class or a method of {@link Object},
+	 *         {@code null} if not found; results are cached per class and
+	 *         signature so that missing methods are not looked up again
+	 */
 	private static final Method findMethod(Class type, String name, Class[] parameterTypes) {
+		ConcurrentMap<String, Object> methods = methodsOf(methodCache, type);
+		String signature = signature(name, parameterTypes);
+		Object method = methods.get(signature);
+		if (method == null) {
+			Method found = resolveMethod(type, name, parameterTypes);
+			method = found == null ? NOT_FOUND : found;
+			methods.put(signature, method);
+		}
+		return method == NOT_FOUND ? null : (Method) method;
+	}
+
+	private static String signature(String name, Class[] parameterTypes) {
+		if (parameterTypes == null || parameterTypes.length == 0) {
+			return name;
+		}
+		StringBuilder builder = new StringBuilder(name).append('(');
+		for (int i = 0; i < parameterTypes.length; i++) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append(parameterTypes[i] == null ? null : parameterTypes[i].getName());
+		}
+		return builder.append(')').toString();
+	}
+
+	private static Method resolveMethod(Class type, String name, Class[] parameterTypes) {
 		try {
 			return type.getMethod(name, parameterTypes);
 		} catch (NoSuchMethodException e) {
@@ -146,15 +200,15 @@ public class UtilsForReflection {
 		try {
 			return Object.class.getDeclaredMethod(name, parameterTypes);
 		} catch (NoSuchMethodException | SecurityException e) {
-			logger.info(e.getMessage(), e);
+			// not found, callers record the failure with its class
+			return null;
 		}
-		return null;
 	}
 
 	public static Method getMethod(Class type, String name, Class[] parameterTypes) {
 		Method method = findMethod(type, name, parameterTypes);
-		if (method == null && logger.isInfoEnabled()) {
-			logger.info(String.format("No method with given name %s found in type %s", name, type));
+		if (method == null) {
+			ReflectionDiagnostics.record(type, name, Kind.NO_METHOD);
 		}
 		return method;
 	}
@@ -225,20 +279,21 @@ public class UtilsForReflection {
 				value = getPreviousInstanceOfProperty(item, methodName);
 			}
 			if (item != null) {
-				Method nestedSetterMethod = UtilsForReflection.getNestedSetterMethod(item.getClass(), methodName);
+				Method nestedGetterMethod = getNestedGetterMethod(item.getClass(), methodName);
+				Method nestedSetterMethod = nestedGetterMethod == null ? null
+						: getNestedSetterMethod(item.getClass(), methodName, nestedGetterMethod.getReturnType());
 				if (nestedSetterMethod != null) {
 					nestedSetterMethod.setAccessible(true);
 					nestedSetterMethod.invoke(value, valueToSet);
 				} else {
-					if (logger.isWarnEnabled()) {
-						logger.warn(String.format(NO_SETTER, methodName, item.getClass()));
-					}
+					ReflectionDiagnostics.record(item.getClass(), methodName, Kind.NO_SETTER);
 				}
 			} else {
 				throw new RuntimeException("item must not be null");
 			}
 		} catch (Exception e) {
-			logger.warn(e.getMessage(), e);
+			ReflectionDiagnostics.record(item == null ? null : item.getClass(), methodName, Kind.INVOCATION_FAILED,
+					e);
 		}
 	}
 
@@ -246,18 +301,14 @@ public class UtilsForReflection {
 		hasLength(property);
 		String name = "set" + StringUtils.capitalize(property);
 		Method method = findMethod(type, name, new Class[] { parameterType });
-		if (method == null && logger.isWarnEnabled()) {
-			logger.warn(String.format(NO_SETTER, property, type));
+		if (method == null) {
+			ReflectionDiagnostics.record(type, property, Kind.NO_SETTER);
 		}
 		return method;
 	}
 
 	public static boolean isGetterMethod(Class clazz, Method method) {
-		try {
-			return getGetterMethod(clazz, method.getName()) != null;
-		} catch (NoSuchMethodException e) {
-			return false;
-		}
+		return findGetterMethod(clazz, method.getName()) != null;
 	}
 
 	public static Object getValue(Object obj, String fieldPath) {
@@ -268,9 +319,17 @@ public class UtilsForReflection {
 			return getValueByExpression(obj, fieldPath);
 		}
 
-		Object value = null;
 		hasLength(fieldPath);
+		return PropertyAccessor.of(obj.getClass(), fieldPath).get(obj);
+	}
 
+	/**
+	 * Resolves the value of given path through the runtime class of every
+	 * value on the path, used by {@link PropertyAccessor} where the declared
+	 * types are not sufficient
+	 */
+	static Object getValueDynamically(Object obj, String fieldPath) {
+		Object value = null;
 		int index = fieldPath.indexOf('.');
 		String field = index > -1 ? fieldPath.substring(0, index) : fieldPath;
 		Object fieldValue = getFieldValue(obj, field);
@@ -342,10 +401,13 @@ public class UtilsForReflection {
 			return items;
 		}
 
-		Method method = null;
-		try {
-			method = getGetterMethod(obj.getClass(), fieldName);
-		} catch (NoSuchMethodException e) {
+		if (PropertyAccessor.getAccessStrategy(obj.getClass()) != AccessStrategy.GETTER_ONLY) {
+			// fields are read by the accessor of the runtime class
+			return PropertyAccessor.of(obj.getClass(), fieldName).get(obj);
+		}
+
+		Method method = findGetterMethod(obj.getClass(), fieldName);
+		if (method == null) {
 			method = getMethod(obj.getClass(), fieldName, null);
 		}
 
@@ -356,7 +418,7 @@ public class UtilsForReflection {
 			method.setAccessible(true);
 			return method.invoke(obj, null);
 		} catch (Exception e) {
-			logger.warn("object : " + obj + " fieldName : " + fieldName, e);
+			ReflectionDiagnostics.record(obj.getClass(), fieldName, Kind.INVOCATION_FAILED, e);
 		}
 
 		return null;
@@ -374,56 +436,100 @@ public class UtilsForReflection {
 		return items;
 	}
 
-	public static List<Field> getAllFields(Class type) {
-		List<Field> fields = new LinkedList<>();
-		for (Field field : type.getDeclaredFields()) {
-			fields.add(field);
+	/**
+	 * Lazily streams the leaf values of given path. Unlike
+	 * {@link #getValue(Object, String)}, collections met on the path are not
+	 * collected into intermediate sets but flattened into the stream, so
+	 * nothing is materialized until the stream is consumed. Null values are
+	 * skipped.<br>
+	 * <b>Example:</b><br>
+	 * <code>
+	 * UtilsForReflection.streamValues(customer, "orders.lines.product.code").distinct().count();
+	 * </code>
+	 *
+	 * @param obj
+	 * @param fieldPath
+	 *            a dot separated property path, expressions are not supported
+	 * @return a sequential stream of leaf values
+	 */
+	public static Stream<Object> streamValues(Object obj, String fieldPath) {
+		return streamValues(obj, fieldPath, false, false);
+	}
+
+	/**
+	 * Lazily streams the leaf values of given path, see
+	 * {@link #streamValues(Object, String)}. A parallel stream is split over
+	 * the first collection met on the path.
+	 *
+	 * @param obj
+	 * @param fieldPath
+	 *            a dot separated property path, expressions are not supported
+	 * @param distinct
+	 *            true for set semantics, false for list semantics
+	 * @param parallel
+	 *            true to return a parallel stream
+	 * @return stream of leaf values
+	 */
+	public static Stream<Object> streamValues(Object obj, String fieldPath, boolean distinct, boolean parallel) {
+		hasLength(fieldPath);
+		if (fieldPath.contains("[")) {
+			throw new IllegalArgumentException("Expressions are not supported: " + fieldPath);
 		}
-		if (type.getSuperclass() != null) {
-			fields.addAll(getAllFields(type.getSuperclass()));
+		String[] fields = StringUtils.split(fieldPath, '.');
+
+		// navigate single values eagerly until the first collection
+		Object value = obj;
+		int index = 0;
+		while (value != null && !(value instanceof Collection) && index < fields.length) {
+			value = getFieldValue(value, fields[index++]);
 		}
-		return fields;
-	}
 
-	public static List<Method> getGetterMethods(Class clazz) {
-		LinkedList<Method> getterMethods = new LinkedList<>();
-		for (Method method : getAllDeclaredMethods(clazz)) {
-			String methodName = method.getName();
-			if (methodName.startsWith("get") || methodName.startsWith("is")) {
-
-				// skip getClass() method
-				if ("class".equalsIgnoreCase(methodName.replace("get", ""))) {
-					continue;
-				}
+		Stream<Object> stream = flatten(value);
+		for (; index < fields.length; index++) {
+			String field = fields[index];
+			stream = stream.flatMap(item -> flatten(getFieldValue(item, field)));
+		}
 
-				getterMethods.add(method);
-			}
+		if (distinct) {
+			stream = stream.distinct();
 		}
-		return getterMethods;
+		return parallel ? stream.parallel() : stream;
 	}
 
-	public static Collection<String> getFieldNames(Class clazz) {
-		List<Field> fields = getAllFields(clazz);
-		Set<String> names = new LinkedHashSet<>();
-		for (Field field : fields) {
-			names.add(field.getName());
+	private static Stream<Object> flatten(Object value) {
+		if (value == null) {
+			return Stream.empty();
+		} else if (value instanceof Collection) {
+			Collection<?> collection = (Collection<?>) value;
+			return collection.stream().flatMap(UtilsForReflection::flatten);
 		}
-		return names;
+		return Stream.of(value);
+	}
+
+	/**
+	 * @param type
+	 * @return all fields of the class hierarchy, as an unmodifiable view of
+	 *         the cached {@link ClassDescriptor}
+	 */
+	public static List<Field> getAllFields(Class type) {
+		return ClassDescriptor.forClass(type).getFields();
+	}
+
+	/**
+	 * @param clazz
+	 * @return all getter methods of the class hierarchy, as an unmodifiable
+	 *         view of the cached {@link ClassDescriptor}
+	 */
+	public static List<Method> getGetterMethods(Class clazz) {
+		return ClassDescriptor.forClass(clazz).getGetterMethods();
+	}
+
+	public static Collection<String> getFieldNames(Class clazz) {
+		return ClassDescriptor.forClass(clazz).getFieldNames();
 	}
 
 	public static List<String> getFieldNamesByGetterMethod(Class clazz) {
-		List<Method> getters = getGetterMethods(clazz);
-		List<String> names = new LinkedList<>();
-		for (Method method : getters) {
-			String propertyName = null;
-			if (method.getName().startsWith("is")) {
-				propertyName = StringUtils.replaceOnce(method.getName(), "is", "");
-			} else {
-				propertyName = StringUtils.replaceOnce(method.getName(), "get", "");
-			}
-			names.add(StringUtils.uncapitalize(propertyName));
-		}
-		return names;
+		return ClassDescriptor.forClass(clazz).getPropertyNames();
 	}
 
 	public static String baseNameOfGetterMethod(String name) {
@@ -454,9 +560,7 @@ public class UtilsForReflection {
 		if (nestedGetterMethod != null) {
 			return nestedGetterMethod.getReturnType();
 		}
-		if (logger.isWarnEnabled()) {
-			logger.warn(String.format(NO_GETTER, path, clazz));
-		}
+		ReflectionDiagnostics.record(clazz, path, Kind.NO_GETTER);
 		return null;
 	}
 
@@ -476,23 +580,47 @@ public class UtilsForReflection {
 		return clz.getGenericInterfaces();
 	}
 
+	/**
+	 * Returns the type arguments of given property, resolved against the
+	 * given class. Type variables, wildcards and nested parameterizations are
+	 * resolved to their raw classes, see {@link #getPropertyType(Class, String)}
+	 * for the full description.
+	 * 
+	 * @param clazz
+	 * @param propertyName
+	 * @return raw classes of the type arguments, empty if the property is not
+	 *         parameterized or does not exist
+	 */
 	public static Type[] getGenericTypesOfProperty(Class clazz, String propertyName) {
-		Method nestedGetterMethod = getNestedGetterMethod(clazz, propertyName);
-		if (nestedGetterMethod != null) {
-			return ((ParameterizedType) nestedGetterMethod.getGenericReturnType()).getActualTypeArguments();
+		TypeDescriptor propertyType = getPropertyType(clazz, propertyName);
+		if (propertyType == null) {
+			return new Type[0];
 		}
-		return new Type[0];
+		List<TypeDescriptor> arguments = propertyType.getTypeArguments();
+		Type[] types = new Type[arguments.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = arguments.get(i).getRawType();
+		}
+		return types;
+	}
+
+	/**
+	 * Resolves the generic type of given property path against given class,
+	 * the result is cached per class and path
+	 * 
+	 * @param clazz
+	 * @param propertyPath
+	 * @return the resolved type or null if a getter on the path does not exist
+	 * @see TypeDescriptor#forProperty(Class, String)
+	 */
+	public static TypeDescriptor getPropertyType(Class<?> clazz, String propertyPath) {
+		hasLength(propertyPath);
+		return TypeDescriptor.forProperty(clazz, propertyPath);
 	}
 
 	public static boolean isAnnotationDeclaredLocally(Class<? extends Annotation> annotationType, Class<?> clazz) {
-		boolean declaredLocally = false;
-		for (Annotation annotation : clazz.getDeclaredAnnotations()) {
-			if (annotation.annotationType().equals(annotationType)) {
-				declaredLocally = true;
-				break;
-			}
-		}
-		return declaredLocally;
+		// unlike getDeclaredAnnotations(), does not copy the annotations array
+		return clazz.getDeclaredAnnotation(annotationType) != null;
 	}
 
 	/**
@@ -520,6 +648,10 @@ public class UtilsForReflection {
 	 * search process continues by returning to step #1 with the current
 	 * interface, annotation, or superclass as the class to look for annotations
 	 * on.
+	 * <p>
+	 * The lookup is served by the {@link #getMergedAnnotations(Class) merged
+	 * view} of the class, so an annotation type not found is not searched
+	 * again.
 	 * 
 	 * @param clazz
 	 *            the class to look for annotations on
@@ -528,7 +660,61 @@ public class UtilsForReflection {
 	 * @return the annotation if found, or {@code null} if not found
 	 */
 	public static <A extends Annotation> A findAnnotation(Class<?> clazz, Class<A> annotationType) {
-		return findAnnotation(clazz, annotationType, new HashSet<Annotation>());
+		return annotationType.cast(getMergedAnnotations(clazz).get(annotationType));
+	}
+
+	/**
+	 * Merged view of the annotations of given class and its hierarchy: each
+	 * annotation type declared on the class, its interfaces, annotations or
+	 * superclasses is mapped to the annotation
+	 * {@link #findAnnotation(Class, Class)} finds for it, nearest types first.
+	 * The view is resolved once per class.
+	 * 
+	 * @param clazz
+	 * @return unmodifiable map of the annotations by their types
+	 */
+	public static Map<Class<? extends Annotation>, Annotation> getMergedAnnotations(Class<?> clazz) {
+		Map<Class<? extends Annotation>, Annotation> annotations = annotationCache.get(clazz);
+		if (annotations == null) {
+			annotations = annotationCache.computeIfAbsent(clazz, UtilsForReflection::mergeAnnotations);
+		}
+		return annotations;
+	}
+
+	private static Map<Class<? extends Annotation>, Annotation> mergeAnnotations(Class<?> clazz) {
+		Set<Class<? extends Annotation>> annotationTypes = new LinkedHashSet<>();
+		collectAnnotationTypes(clazz, annotationTypes, new HashSet<Class<?>>());
+		Map<Class<? extends Annotation>, Annotation> annotations = new LinkedHashMap<>();
+		for (Class<? extends Annotation> annotationType : annotationTypes) {
+			Annotation annotation = findAnnotation(clazz, annotationType, new HashSet<Annotation>());
+			if (annotation != null) {
+				annotations.put(annotationType, annotation);
+			}
+		}
+		return annotations.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(annotations);
+	}
+
+	/**
+	 * Collects the annotation types reachable by the search algorithm of
+	 * {@link #findAnnotation(Class, Class, Set)}
+	 */
+	private static void collectAnnotationTypes(Class<?> clazz, Set<Class<? extends Annotation>> annotationTypes,
+			Set<Class<?>> visited) {
+		if (clazz == null || clazz.equals(Object.class) || !visited.add(clazz)) {
+			return;
+		}
+		for (Annotation ann : clazz.getDeclaredAnnotations()) {
+			annotationTypes.add(ann.annotationType());
+		}
+		for (Class<?> ifc : clazz.getInterfaces()) {
+			collectAnnotationTypes(ifc, annotationTypes, visited);
+		}
+		for (Annotation ann : clazz.getDeclaredAnnotations()) {
+			if (!ann.annotationType().getName().startsWith("java.lang.annotation")) {
+				collectAnnotationTypes(ann.annotationType(), annotationTypes, visited);
+			}
+		}
+		collectAnnotationTypes(clazz.getSuperclass(), annotationTypes, visited);
 	}
 
 	/**
@@ -571,22 +757,4 @@ public class UtilsForReflection {
 		return findAnnotation(superclass, annotationType, visited);
 	}
 
-	private static List<Method> getAllDeclaredMethods(Class clazz) {
-		ArrayList<Method> methodList = new ArrayList<>();
-		Method[] methods = clazz.getDeclaredMethods();
-		for (Method method : methods) {
-			methodList.add(method);
-		}
-
-		if (clazz.getSuperclass() != null) {
-			methodList.addAll(getAllDeclaredMethods(clazz.getSuperclass()));
-		} else if (clazz.isInterface()) {
-			for (Class<?> superIfc : clazz.getInterfaces()) {
-				methodList.addAll(getAllDeclaredMethods(superIfc));
-			}
-		}
-
-		return methodList;
-	}
-
 }
@@ -0,0 +1,74 @@
+package org.jarchframework.core.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Result of {@link UtilsForObject#warmUp(String)}, holding the warmed classes
+ * and the property paths which could not be resolved
+ *
+ * @author Yavuz S.Tas
+ * @since 1.0
+ * @version 1.0
+ */
+public class WarmUpReport {
+
+	private final List<Class<?>> classes = new ArrayList<>();
+	private final Map<Class<?>, List<String>> unresolvedPaths = new LinkedHashMap<>();
+	private final Map<Class<?>, RuntimeException> failures = new LinkedHashMap<>();
+
+	synchronized void addClass(Class<?> type) {
+		classes.add(type);
+	}
+
+	synchronized void addUnresolvedPath(Class<?> type, String path) {
+		List<String> paths = unresolvedPaths.get(type);
+		if (paths == null) {
+			paths = new ArrayList<>();
+			unresolvedPaths.put(type, paths);
+		}
+		paths.add(path);
+	}
+
+	synchronized void addFailure(Class<?> type, RuntimeException failure) {
+		failures.put(type, failure);
+	}
+
+	/**
+	 * @return classes whose metadata is cached
+	 */
+	public synchronized List<Class<?>> getClasses() {
+		return Collections.unmodifiableList(new ArrayList<>(classes));
+	}
+
+	/**
+	 * @return identity and toString paths with a missing getter, by class
+	 */
+	public synchronized Map<Class<?>, List<String>> getUnresolvedPaths() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(unresolvedPaths));
+	}
+
+	/**
+	 * @return classes whose metadata could not be resolved, with the cause
+	 */
+	public synchronized Map<Class<?>, RuntimeException> getFailures() {
+		return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+	}
+
+	/**
+	 * @return true if all paths of all classes are resolved
+	 */
+	public synchronized boolean isSuccessful() {
+		return unresolvedPaths.isEmpty() && failures.isEmpty();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "WarmUpReport[classes=" + classes.size() + ", unresolvedPaths=" + unresolvedPaths + ", failures="
+				+ failures.keySet() + "]";
+	}
+
+}
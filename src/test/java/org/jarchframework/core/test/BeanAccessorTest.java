@@ -0,0 +1,79 @@
+package org.jarchframework.core.test;
+
+import java.util.Arrays;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.util.BeanAccessor;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class BeanAccessorTest {
+
+	public static class Group extends BaseObject {
+
+		private String name;
+
+		public Group(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static class User extends BaseObject {
+
+		private long id;
+		private boolean active;
+		private Group group;
+
+		public User(long id, boolean active, Group group) {
+			this.id = id;
+			this.active = active;
+			this.group = group;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public Group getGroup() {
+			return group;
+		}
+	}
+
+	@Test
+	public void accessTest() {
+		BeanAccessor<User> accessor = BeanAccessor.of(User.class, "id", "active", "group.name");
+		Assert.assertEquals(3, accessor.getColumnCount());
+		Assert.assertEquals(long.class, accessor.getValueType(0));
+		Assert.assertEquals("group.name", accessor.getPath(2));
+
+		User user = new User(7, true, new Group("admin"));
+		Assert.assertEquals("admin", accessor.get(user, 2));
+		Object[] cells = new Object[4];
+		Assert.assertSame(cells, accessor.getAll(user, cells));
+		Assert.assertEquals(Arrays.asList(7L, true, "admin", null), Arrays.asList(cells));
+
+		accessor.getAll(new User(8, false, null), cells);
+		Assert.assertEquals(Arrays.asList(8L, false, null, null), Arrays.asList(cells));
+		Assert.assertEquals(Arrays.asList(null, null, null), Arrays.asList(accessor.getAll(null)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shortArrayTest() {
+		BeanAccessor.of(User.class, "id", "active").getAll(new User(1, true, null), new Object[1]);
+	}
+
+}
@@ -0,0 +1,128 @@
+package org.jarchframework.core.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jarchframework.core.export.DelimitedExporter;
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.util.UtilsForReflection;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class DelimitedExporterTest {
+
+	public static class Group extends BaseObject {
+
+		private String code;
+		private String name;
+
+		public Group(String code, String name) {
+			this.code = code;
+			this.name = name;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static class User extends BaseObject {
+
+		private long id;
+		private String name;
+		private Double score;
+		private Group group;
+
+		public User(long id, String name, Double score, Group group) {
+			this.id = id;
+			this.name = name;
+			this.score = score;
+			this.group = group;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Double getScore() {
+			return score;
+		}
+
+		public Group getGroup() {
+			return group;
+		}
+	}
+
+	private static String export(DelimitedExporter exporter, List<?> rows) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Assert.assertEquals(rows.size(), exporter.export(rows, Channels.newChannel(out)));
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void csvTest() throws IOException {
+		Group group = new Group("G1", "Admins, \"root\"");
+		List<User> users = Arrays.asList(new User(-42, "Şule", 1.5, group), new User(7, "a\nb", null, null), null);
+		DelimitedExporter exporter = DelimitedExporter.csv("id", "name", "score", "[group.code] - [group.name]")
+				.header("Id", "Name", "Score", "Group");
+		Assert.assertEquals("Id,Name,Score,Group\n-42,Şule,1.5,\"G1 - Admins, \"\"root\"\"\"\n7,\"a\nb\",, - \n,,,\n",
+				export(exporter, users));
+		Assert.assertEquals(UtilsForReflection.getValueByExpression(users.get(0), "[group.code] - [group.name]"),
+				"G1 - Admins, \"root\"");
+	}
+
+	@Test
+	public void tsvTest() throws IOException {
+		List<User> users = Arrays.asList(new User(1, "tab\there\\", null, null));
+		DelimitedExporter exporter = DelimitedExporter.tsv("id", "name", "score").nullValue("NULL").header();
+		Assert.assertEquals("id\tname\tscore\n1\ttab\\there\\\\\tNULL\n", export(exporter, users));
+	}
+
+	@Test
+	public void parallelTest() throws IOException {
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 10000; i++) {
+			users.add(new User(i, "user \"" + i + "\" ğ", i / 3.0, new Group("G" + i % 7, "group")));
+		}
+		String[] columns = { "id", "name", "score", "group.code" };
+		String expected = export(DelimitedExporter.csv(columns).header().bufferSize(64), users);
+		Assert.assertEquals(10001, expected.split("\n").length);
+		Assert.assertEquals(expected, export(DelimitedExporter.csv(columns).header().parallel(333), users));
+
+		Path file = Files.createTempFile("export", ".csv");
+		try {
+			DelimitedExporter exporter = DelimitedExporter.csv(columns).header().parallel(1000);
+			Assert.assertEquals(users.size(), exporter.export(users, file));
+			Assert.assertEquals(expected, new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void headerTest() {
+		DelimitedExporter.csv("id", "name").header("Id");
+	}
+
+}
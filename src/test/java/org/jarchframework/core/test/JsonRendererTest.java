@@ -0,0 +1,94 @@
+package org.jarchframework.core.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.model.ToStringStyle;
+import org.jarchframework.core.util.JsonRenderer;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class JsonRendererTest {
+
+	@ToString(style = ToStringStyle.JSON, value = { "name", "weight", "children" })
+	public static class Node extends BaseObject {
+
+		private String name;
+		private Double weight;
+		private List<Node> children = new ArrayList<>();
+
+		public Node(String name, Double weight) {
+			this.name = name;
+			this.weight = weight;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Double getWeight() {
+			return weight;
+		}
+
+		public List<Node> getChildren() {
+			return children;
+		}
+	}
+
+	@Test
+	public void toStringTest() {
+		Node root = new Node("root \"1\"", 1.5);
+		root.getChildren().add(new Node("leaf", null));
+		Assert.assertEquals("{\"name\":\"root \\\"1\\\"\",\"weight\":1.5,\"children\":"
+				+ "[{\"name\":\"leaf\",\"weight\":null,\"children\":[]}]}", root.toString());
+	}
+
+	@Test
+	public void cycleTest() {
+		Node root = new Node("root", null);
+		root.getChildren().add(root);
+		Assert.assertEquals("{\"name\":\"root\",\"weight\":null,\"children\":[\"<cycle>\"]}", root.toString());
+	}
+
+	@Test
+	public void limitsTest() {
+		Node root = new Node("a", null);
+		Node child = new Node("b", null);
+		root.getChildren().add(child);
+		child.getChildren().add(new Node("c", null));
+		JsonRenderer renderer = new JsonRenderer(3, 1, 1000);
+		Assert.assertEquals("{\"name\":\"a\",\"weight\":null,\"children\":[{\"name\":\"b\",\"weight\":null,"
+				+ "\"children\":\"...\"}]}", renderer.render(root));
+
+		Assert.assertEquals("[1,\"...\"]", renderer.render(Arrays.asList(1, 2, 3)));
+		Assert.assertEquals("[1,2,...", new JsonRenderer(3, 10, 8).render(new int[] { 1, 2, 3, 4, 5 }));
+	}
+
+	@Test
+	public void streamTest() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		JsonRenderer.DEFAULT.write(Arrays.asList(new Node("ç", 2.0), "x\n"), out);
+		Assert.assertEquals("[{\"name\":\"ç\",\"weight\":2.0,\"children\":[]},\"x\\n\"]",
+				new String(out.toByteArray(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void dateTest() {
+		Assert.assertEquals("[\"1970-01-01T00:00:01Z\",\"1970-01-01T00:00:02Z\",\"1970-01-01T00:00:03Z\"]",
+				JsonRenderer.DEFAULT.render(Arrays.asList(new java.util.Date(1000), new java.sql.Date(2000),
+						new java.sql.Time(3000))));
+	}
+
+}
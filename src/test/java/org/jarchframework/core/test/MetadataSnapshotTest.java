@@ -0,0 +1,210 @@
+package org.jarchframework.core.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.model.ToStringStyle;
+import org.jarchframework.core.util.AccessStrategy;
+import org.jarchframework.core.util.MetadataSnapshot;
+import org.jarchframework.core.util.PropertyAccessor;
+import org.jarchframework.core.util.UtilsForReflection;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class MetadataSnapshotTest {
+
+	public static class Group extends BaseObject {
+
+		private String name;
+
+		public Group(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return "Group " + name;
+		}
+	}
+
+	@Identity("code")
+	@ToString(value = { "code", "group.name" }, style = ToStringStyle.SIMPLE)
+	public static class Member extends BaseObject {
+
+		private String code;
+		private Group group;
+
+		public Member(String code, Group group) {
+			this.code = code;
+			this.group = group;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public Group getGroup() {
+			return group;
+		}
+	}
+
+	@Identity("name")
+	@ToString("name")
+	public static class Person extends BaseObject {
+
+		private String name;
+
+		public Person(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	private static byte[] save(MetadataSnapshot snapshot, String buildVersion) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		snapshot.save(out, buildVersion);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void saveLoadTest() throws IOException {
+		Member member = new Member("m1", new Group("admins"));
+		Assert.assertEquals("m1,Group admins", member.toString());
+		// toString may reuse accessors resolved before a strategy change, reading the path caches it
+		Assert.assertEquals("Group admins", UtilsForReflection.getValue(member, "group.name"));
+		byte[] saved = save(MetadataSnapshot.capture(Collections.<Class<?>> singletonList(Member.class)), "1.0");
+
+		Assert.assertNull(MetadataSnapshot.load(new ByteArrayInputStream(saved), "1.1"));
+		MetadataSnapshot snapshot = MetadataSnapshot.load(new ByteArrayInputStream(saved), "1.0");
+		Assert.assertEquals(1, snapshot.size());
+		Assert.assertTrue(Arrays.equals(saved, save(snapshot, "1.0")));
+
+		try {
+			MetadataSnapshot.install(snapshot);
+			// drops the resolved accessors, which are resolved again from the snapshot
+			PropertyAccessor.setAccessStrategy(AccessStrategy.GETTER_ONLY);
+			Assert.assertEquals("Group admins", UtilsForReflection.getValue(member, "group.name"));
+			Assert.assertEquals(1, snapshot.getValidatedCount());
+			Assert.assertEquals(0, snapshot.getRejectedCount());
+
+			// members resolved by another strategy are not used
+			PropertyAccessor.setAccessStrategy(Group.class, AccessStrategy.FIELD_FIRST);
+			Assert.assertEquals("admins", UtilsForReflection.getValue(member, "group.name"));
+			Assert.assertEquals(1, snapshot.getRejectedCount());
+		} finally {
+			MetadataSnapshot.install(null);
+			PropertyAccessor.setAccessStrategy(Group.class, null);
+		}
+	}
+
+	private static int indexOf(byte[] bytes, String value) {
+		byte[] target = value.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i + target.length <= bytes.length; i++) {
+			if (Arrays.equals(target, Arrays.copyOfRange(bytes, i, i + target.length))) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(value);
+	}
+
+	@Test
+	public void corruptTest() throws IOException {
+		byte[] saved = save(MetadataSnapshot.capture(Collections.<Class<?>> singletonList(Member.class)), "1.0");
+		// the style follows the last toString property
+		byte[] style = saved.clone();
+		style[indexOf(style, "group.name") + "group.name".length()] = 100;
+		// the class count follows the magic, format and build version
+		byte[] count = saved.clone();
+		Arrays.fill(count, 13, 17, (byte) 0x7f);
+		byte[] negative = saved.clone();
+		Arrays.fill(negative, 13, 17, (byte) 0xff);
+
+		Path file = Files.createTempFile("metadata", ".bin");
+		try {
+			for (byte[] corrupt : Arrays.asList(style, count, negative)) {
+				try {
+					MetadataSnapshot.load(new ByteArrayInputStream(corrupt), "1.0");
+					Assert.fail("corrupt snapshot should not be loaded");
+				} catch (IOException e) {
+					// expected
+				}
+				Files.write(file, corrupt);
+				Assert.assertNull(MetadataSnapshot.load(file, "1.0"));
+			}
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static Class<?> isolated(Class<?> type) throws Exception {
+		String resource = type.getName().replace('.', '/') + ".class";
+		byte[] bytes;
+		try (InputStream in = type.getClassLoader().getResourceAsStream(resource)) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+			bytes = out.toByteArray();
+		}
+		return new ClassLoader(type.getClassLoader()) {
+			{
+				defineClass(type.getName(), bytes, 0, bytes.length);
+			}
+		}.loadClass(type.getName());
+	}
+
+	@Test
+	public void trustedTest() throws Exception {
+		byte[] saved = save(MetadataSnapshot.capture(Collections.<Class<?>> singletonList(Member.class)), "1.0");
+		// metadata of Member saved for Person, the annotations of Person are not read
+		int name = indexOf(saved, Member.class.getName());
+		System.arraycopy(Person.class.getName().getBytes(StandardCharsets.UTF_8), 0, saved, name,
+				Person.class.getName().length());
+		MetadataSnapshot snapshot = MetadataSnapshot.load(new ByteArrayInputStream(saved), "1.0");
+		try {
+			MetadataSnapshot.install(snapshot);
+			// a fresh copy of Person, not resolved by other tests yet
+			Constructor<?> constructor = isolated(Person.class).getConstructor(String.class);
+			Object person = constructor.newInstance("john");
+			// identity by code and toString of code and group.name in the simple style
+			Assert.assertEquals(person, constructor.newInstance("jane"));
+			Assert.assertFalse(person.toString(), person.toString().contains("john"));
+		} finally {
+			MetadataSnapshot.install(null);
+		}
+	}
+
+	@Test
+	public void fileTest() throws IOException {
+		Path file = Files.createTempFile("metadata", ".bin");
+		try {
+			Assert.assertNull(MetadataSnapshot.load(file, "1.0"));
+			MetadataSnapshot.capture(Collections.<Class<?>> singletonList(Member.class)).save(file, "1.0");
+			Assert.assertEquals(1, MetadataSnapshot.load(file, "1.0").size());
+		} finally {
+			Files.delete(file);
+		}
+		Assert.assertNull(MetadataSnapshot.load(file, "1.0"));
+	}
+
+}
@@ -0,0 +1,130 @@
+package org.jarchframework.core.test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.offheap.OffHeapIdentitySet;
+import org.junit.Assume;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class OffHeapIdentitySetTest {
+
+	@Identity("id")
+	public static class Account extends BaseObject {
+
+		private long id;
+
+		public Account(long id) {
+			this.id = id;
+		}
+
+		public long getId() {
+			return id;
+		}
+	}
+
+	@Identity({ "code", "version" })
+	public static class Product extends BaseObject {
+
+		private String code;
+		private Integer version;
+
+		public Product(String code, Integer version) {
+			this.code = code;
+			this.version = version;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public Integer getVersion() {
+			return version;
+		}
+	}
+
+	@Test
+	public void fixedWidthTest() {
+		try (OffHeapIdentitySet<Account> set = OffHeapIdentitySet.create(Account.class, 16)) {
+			Assert.assertTrue(set.isFixedWidth());
+			for (int i = 0; i < 10000; i++) {
+				Assert.assertTrue(set.addIfAbsent(new Account(i)));
+			}
+			long memoryUsage = set.getMemoryUsage();
+			for (int i = 0; i < 10000; i++) {
+				Assert.assertFalse(set.addIfAbsent(new Account(i)));
+			}
+			Assert.assertEquals(10000, set.size());
+			Assert.assertEquals(memoryUsage, set.getMemoryUsage());
+			Assert.assertTrue(set.contains(new Account(9999)));
+			Assert.assertFalse(set.contains(new Account(10000)));
+		}
+	}
+
+	@Test
+	public void variableWidthTest() {
+		try (OffHeapIdentitySet<Product> set = OffHeapIdentitySet.create(Product.class, 16)) {
+			Assert.assertFalse(set.isFixedWidth());
+			for (int i = 0; i < 1000; i++) {
+				Assert.assertTrue(set.addIfAbsent(new Product("product-" + i, i % 3)));
+			}
+			Assert.assertFalse(set.addIfAbsent(new Product("product-10", 1)));
+			Assert.assertTrue(set.addIfAbsent(new Product("product-10", 2)));
+			Assert.assertTrue(set.addIfAbsent(new Product("product-10", null)));
+			Assert.assertTrue(set.addIfAbsent(new Product(null, null)));
+			Assert.assertFalse(set.addIfAbsent(new Product(null, null)));
+			Assert.assertEquals(1003, set.size());
+			Assert.assertTrue(set.getKeyBytes() > 0);
+		}
+	}
+
+	@Test
+	public void noBoxingTest() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+		threads.setThreadAllocatedMemoryEnabled(true);
+		Account[] accounts = new Account[1000];
+		for (int i = 0; i < accounts.length; i++) {
+			// outside of the Long cache, boxing would allocate for each read
+			accounts[i] = new Account(1000000L + i);
+		}
+		try (OffHeapIdentitySet<Account> set = OffHeapIdentitySet.create(Account.class, accounts.length)) {
+			for (int round = 0; round < 20; round++) {
+				for (Account account : accounts) {
+					set.addIfAbsent(account);
+					set.contains(account);
+				}
+			}
+			long threadId = Thread.currentThread().getId();
+			long before = threads.getThreadAllocatedBytes(threadId);
+			for (int round = 0; round < 10; round++) {
+				for (Account account : accounts) {
+					Assert.assertFalse(set.addIfAbsent(account));
+					Assert.assertTrue(set.contains(account));
+				}
+			}
+			long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+			// 20000 boxed reads would allocate at least 320000 bytes
+			Assert.assertTrue("allocated " + allocated + " bytes", allocated < 32 * 1024);
+		}
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void closedTest() {
+		OffHeapIdentitySet<Account> set = OffHeapIdentitySet.create(Account.class, 16);
+		set.close();
+		set.addIfAbsent(new Account(1));
+	}
+
+}
@@ -0,0 +1,120 @@
+package org.jarchframework.core.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.offheap.OffHeapObjectStore;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class OffHeapObjectStoreTest {
+
+	public interface CityView {
+		String getName();
+
+		long getId();
+	}
+
+	@Identity("id")
+	public static class City extends BaseObject {
+
+		private long id;
+		private String name;
+		private Integer population;
+		private Date founded;
+
+		public City() {
+		}
+
+		public City(long id, String name, Integer population) {
+			this.id = id;
+			this.name = name;
+			this.population = population;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public void setId(long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Integer getPopulation() {
+			return population;
+		}
+
+		public void setPopulation(Integer population) {
+			this.population = population;
+		}
+
+		public Date getFounded() {
+			return founded;
+		}
+
+		public void setFounded(Date founded) {
+			this.founded = founded;
+		}
+	}
+
+	@Test
+	public void appendAndReopenTest() throws IOException {
+		File file = File.createTempFile("cities", ".store");
+		file.deleteOnExit();
+		file.delete();
+
+		try (OffHeapObjectStore<City> store = OffHeapObjectStore.open(file.toPath(), City.class, 32, 4)) {
+			for (int i = 0; i < 100; i++) {
+				store.append(new City(i, "city" + i, i % 3 == 0 ? null : i * 1000));
+			}
+			Assert.assertEquals(100, store.size());
+			Assert.assertEquals("city42", store.view(42).get("name"));
+			Assert.assertEquals(new City(7, null, null), store.get(7));
+		}
+
+		try (OffHeapObjectStore<City> store = OffHeapObjectStore.open(file.toPath(), City.class, 32, 4)) {
+			Assert.assertEquals(100, store.size());
+			Assert.assertEquals(55, store.indexOf(55L));
+			Assert.assertEquals(-1, store.indexOf(555L));
+
+			City city = store.findByIdentity(10L);
+			Assert.assertEquals("city10", city.getName());
+			Assert.assertEquals(Integer.valueOf(10000), city.getPopulation());
+			Assert.assertNull(store.get(9).getPopulation());
+
+			CityView view = store.findViewByIdentity(20L).as(CityView.class);
+			Assert.assertEquals("city20", view.getName());
+			Assert.assertEquals(20L, view.getId());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void duplicateIdentityTest() throws IOException {
+		File file = File.createTempFile("cities", ".store");
+		file.deleteOnExit();
+		file.delete();
+
+		try (OffHeapObjectStore<City> store = OffHeapObjectStore.open(file.toPath(), City.class)) {
+			store.append(new City(1, "first", null));
+			store.append(new City(1, "second", null));
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.jarchframework.core.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.util.PackageWatcher;
+import org.jarchframework.core.util.PackageWatcher.Delta;
+import org.junit.Assume;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class PackageWatcherTest {
+
+	private static final String PACKAGE = "watched";
+
+	private static void compile(Path root, String className, boolean annotated) throws IOException {
+		Path source = Files.createTempDirectory("sources").resolve(className + ".java");
+		String annotation = annotated ? "@" + Identity.class.getName() + "(\"id\") " : "";
+		Files.write(source, ("package " + PACKAGE + "; " + annotation + "public class " + className + " { }")
+				.getBytes(StandardCharsets.UTF_8));
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		int result = compiler.run(null, null, null, "-d", root.toString(), "-cp", System.getProperty("java.class.path"),
+				source.toString());
+		Assert.assertEquals(0, result);
+	}
+
+	private static Delta awaitChanges(PackageWatcher watcher) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		Delta delta = watcher.poll(1, TimeUnit.SECONDS);
+		while (delta.isEmpty() && System.currentTimeMillis() < deadline) {
+			delta = watcher.poll(1, TimeUnit.SECONDS);
+		}
+		return delta;
+	}
+
+	private static List<String> names(Iterable<Class<?>> classes) {
+		List<String> names = new ArrayList<>();
+		for (Class<?> clazz : classes) {
+			names.add(clazz.getSimpleName());
+		}
+		return names;
+	}
+
+	@Test
+	public void watchTest() throws Exception {
+		Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+		Path root = Files.createTempDirectory("classes");
+		compile(root, "First", true);
+		URL[] urls = new URL[] { root.toUri().toURL() };
+		ClassLoader parent = getClass().getClassLoader();
+
+		List<Delta> pushed = new ArrayList<>();
+		try (PackageWatcher watcher = PackageWatcher.watch(PACKAGE, Identity.class,
+				() -> new URLClassLoader(urls, parent))) {
+			watcher.addListener(pushed::add);
+			Assert.assertEquals(1, watcher.getAnnotatedClasses().size());
+
+			compile(root, "Second", true);
+			compile(root, "Plain", false);
+			Delta delta = awaitChanges(watcher);
+			Assert.assertEquals(names(delta.getAdded()).toString(), 1, delta.getAdded().size());
+			Assert.assertEquals("Second", delta.getAdded().iterator().next().getSimpleName());
+			Assert.assertEquals(2, watcher.getAnnotatedClasses().size());
+
+			Files.delete(root.resolve(PACKAGE + File.separator + "First.class"));
+			delta = awaitChanges(watcher);
+			Assert.assertEquals("First", delta.getRemoved().iterator().next().getSimpleName());
+			Assert.assertEquals(names(watcher.getAnnotatedClasses()).toString(), 1,
+					watcher.getAnnotatedClasses().size());
+			Assert.assertEquals(2, pushed.size());
+		}
+	}
+
+	@Test
+	public void failingListenerTest() throws Exception {
+		Assume.assumeNotNull(ToolProvider.getSystemJavaCompiler());
+		Path root = Files.createTempDirectory("classes");
+		compile(root, "First", true);
+		URL[] urls = new URL[] { root.toUri().toURL() };
+		ClassLoader parent = getClass().getClassLoader();
+
+		List<Delta> pushed = new ArrayList<>();
+		try (PackageWatcher watcher = PackageWatcher.watch(PACKAGE, Identity.class,
+				() -> new URLClassLoader(urls, parent))) {
+			watcher.addListener(delta -> {
+				throw new IllegalStateException("listener failed");
+			});
+			watcher.addListener(pushed::add);
+
+			compile(root, "Second", true);
+			Delta delta = awaitChanges(watcher);
+			Assert.assertEquals(1, delta.getAdded().size());
+			Assert.assertEquals(1, pushed.size());
+			Assert.assertSame(delta, pushed.get(0));
+
+			compile(root, "Third", true);
+			// late events of the previous write may come first as a modification
+			do {
+				delta = awaitChanges(watcher);
+			} while (delta.getAdded().isEmpty() && !delta.isEmpty());
+			Assert.assertEquals("Third", delta.getAdded().iterator().next().getSimpleName());
+			Assert.assertEquals(3, watcher.getAnnotatedClasses().size());
+			Assert.assertSame(delta, pushed.get(pushed.size() - 1));
+		}
+	}
+
+}
@@ -0,0 +1,205 @@
+package org.jarchframework.core.test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.query.Index;
+import org.jarchframework.core.query.Operator;
+import org.jarchframework.core.query.Query;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class QueryTest {
+
+	public static class Group extends BaseObject {
+
+		private String name;
+
+		public Group(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	public static class Item extends BaseObject {
+
+		private int no;
+		private String type;
+		private double amount;
+		private Group group;
+
+		public Item(int no, String type, double amount, Group group) {
+			this.no = no;
+			this.type = type;
+			this.amount = amount;
+			this.group = group;
+		}
+
+		public int getNo() {
+			return no;
+		}
+
+		public String getType() {
+			return type;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+
+		public Group getGroup() {
+			return group;
+		}
+	}
+
+	public static class Entry extends BaseObject {
+
+		private int no;
+		private Number value;
+		private List<Number> values;
+
+		public Entry(int no, Number value, Number... values) {
+			this.no = no;
+			this.value = value;
+			this.values = Arrays.asList(values);
+		}
+
+		public int getNo() {
+			return no;
+		}
+
+		public Number getValue() {
+			return value;
+		}
+
+		public List<Number> getValues() {
+			return values;
+		}
+	}
+
+	private static List<Item> items() {
+		Group admin = new Group("admin");
+		Group users = new Group("users");
+		return Arrays.asList(new Item(1, "a", 5, admin), new Item(2, "b", 15, admin), new Item(3, "a", 25, admin),
+				new Item(4, "a", 35, users), new Item(5, null, 45, null));
+	}
+
+	private static List<Integer> numbers(List<Item> items) {
+		List<Integer> numbers = new ArrayList<>();
+		for (Item item : items) {
+			numbers.add(item.getNo());
+		}
+		return numbers;
+	}
+
+	@Test
+	public void filterTest() {
+		List<Item> items = items();
+		Query<Item> query = Query.from(items).where("group.name", Operator.EQ, "admin").and("amount", Operator.GT, 10);
+		Assert.assertEquals(Arrays.asList(2, 3), numbers(query.list()));
+		Assert.assertEquals(2, query.count());
+		Assert.assertEquals(2, query.first().getNo());
+
+		Assert.assertEquals(Arrays.asList(1, 4, 5), numbers(Query.from(items).where("amount", Operator.LT, 10)
+				.or("amount", Operator.GE, 35).list()));
+		Assert.assertEquals(Arrays.asList(1, 2),
+				numbers(Query.from(items).where("no", Operator.IN, Arrays.asList(1L, 2L)).list()));
+		Assert.assertEquals(Arrays.asList(5), numbers(Query.from(items).where("group", Operator.IS_NULL, null).list()));
+		Assert.assertFalse(Query.from(items).where("type", Operator.EQ, "c").exists());
+		Assert.assertEquals(5, Query.from(items).list().size());
+	}
+
+	@Test
+	public void groupByTest() {
+		Map<Object, List<Item>> groups = Query.from(items()).where("amount", Operator.GT, 10).groupBy("type");
+		Assert.assertEquals(Arrays.asList("b", "a", null), new ArrayList<>(groups.keySet()));
+		Assert.assertEquals(Arrays.asList(3, 4), numbers(groups.get("a")));
+	}
+
+	@Test
+	public void parallelTest() {
+		List<Item> items = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			items.add(new Item(i, i % 2 == 0 ? "even" : "odd", i, null));
+		}
+		List<Item> found = Query.from(items).parallelThreshold(100).where("type", Operator.EQ, "even").list();
+		Assert.assertEquals(500, found.size());
+		Assert.assertEquals(998, found.get(499).getNo());
+	}
+
+	@Test
+	public void indexTest() {
+		List<Item> items = items();
+		Index<Item> byType = Index.hash(items, "type");
+		Assert.assertEquals(Arrays.asList(1, 3, 4), numbers(byType.get("a")));
+		Assert.assertEquals(Arrays.asList(3, 4), numbers(Query.from(items).using(byType)
+				.where("amount", Operator.GT, 10).and("type", Operator.EQ, "a").list()));
+
+		Index<Item> byAmount = Index.sorted(items, "amount");
+		Assert.assertEquals(Arrays.asList(2, 3), numbers(byAmount.range(15, true, 35, false)));
+		Assert.assertEquals(Arrays.asList(4, 5), numbers(Query.from(items).using(byAmount)
+				.where("amount", Operator.GE, 35).list()));
+
+		try {
+			byType.range("a", true, "b", true);
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+		try {
+			Query.from(items()).using(byType);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	private static List<Integer> entryNumbers(List<Entry> entries) {
+		List<Integer> numbers = new ArrayList<>();
+		for (Entry entry : entries) {
+			numbers.add(entry.getNo());
+		}
+		Collections.sort(numbers);
+		return numbers;
+	}
+
+	@Test
+	public void indexEquivalenceTest() {
+		List<Entry> entries = Arrays.asList(new Entry(1, 10.0, 10.0, null), new Entry(2, 10L, 2.5f),
+				new Entry(3, new BigDecimal("10.00"), new BigDecimal("2.50")), new Entry(4, 2.5, 7, 7),
+				new Entry(5, new BigDecimal("2.5")), new Entry(6, null, 10), new Entry(7, (byte) 7, (Number) null));
+		Object[][] conditions = { { Operator.EQ, 10 }, { Operator.EQ, 10.0f }, { Operator.EQ, new BigDecimal("2.5") },
+				{ Operator.EQ, 2.5 }, { Operator.EQ, 7L }, { Operator.IS_NULL, null },
+				{ Operator.IN, Arrays.asList(10, 10L, new BigDecimal("2.500")) } };
+		for (String path : new String[] { "value", "values" }) {
+			List<Index<Entry>> indexes = Arrays.asList(Index.hash(entries, path), Index.sorted(entries, path));
+			for (Object[] condition : conditions) {
+				Operator operator = (Operator) condition[0];
+				List<Integer> scanned = entryNumbers(
+						Query.from(entries).where(path, operator, condition[1]).list());
+				for (Index<Entry> index : indexes) {
+					List<Integer> found = entryNumbers(
+							Query.from(entries).using(index).where(path, operator, condition[1]).list());
+					Assert.assertEquals(path + " " + operator + " " + condition[1] + " " + index, scanned, found);
+				}
+			}
+		}
+		Assert.assertEquals(Arrays.asList(1, 2, 3), entryNumbers(Index.hash(entries, "value").get(10)));
+		Assert.assertEquals(Arrays.asList(1, 7), entryNumbers(Index.hash(entries, "values").get(null)));
+	}
+
+}
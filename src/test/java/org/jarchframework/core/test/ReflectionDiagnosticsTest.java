@@ -0,0 +1,76 @@
+package org.jarchframework.core.test;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.util.ReflectionDiagnostics;
+import org.jarchframework.core.util.ReflectionDiagnostics.Diagnostic;
+import org.jarchframework.core.util.ReflectionDiagnostics.Kind;
+import org.jarchframework.core.util.UtilsForReflection;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class ReflectionDiagnosticsTest {
+
+	public static class Row extends BaseObject {
+
+		private String name = "row";
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	@Test
+	public void aggregateTest() {
+		ReflectionDiagnostics.reset();
+		Row row = new Row();
+		for (int i = 0; i < 100; i++) {
+			Assert.assertNull(UtilsForReflection.getValue(row, "missing"));
+		}
+		Diagnostic diagnostic = ReflectionDiagnostics.getDiagnostic(Row.class, "missing", Kind.NO_GETTER);
+		Assert.assertEquals(100, diagnostic.getCount());
+		Assert.assertEquals(Row.class, diagnostic.getType());
+
+		UtilsForReflection.setValue(row, "name", "changed");
+		Assert.assertEquals("changed", row.getName());
+		Assert.assertNull(UtilsForReflection.getNestedSetterMethod(Row.class, "other", String.class));
+		Assert.assertNull(UtilsForReflection.getNestedSetterMethod(Row.class, "other", String.class));
+		Assert.assertEquals(2, ReflectionDiagnostics.getDiagnostic(Row.class, "other", Kind.NO_SETTER).getCount());
+
+		Assert.assertEquals(2, ReflectionDiagnostics.getDiagnostics().size());
+		Assert.assertSame(diagnostic, ReflectionDiagnostics.getDiagnostics().get(0));
+	}
+
+	@Test
+	public void negativeCacheTest() throws Exception {
+		ReflectionDiagnostics.reset();
+		Assert.assertNull(UtilsForReflection.findGetterMethod(Row.class, "missing"));
+		Assert.assertNull(UtilsForReflection.findGetterMethod(Row.class, "missing"));
+		Assert.assertSame(UtilsForReflection.findGetterMethod(Row.class, "name"),
+				UtilsForReflection.getGetterMethod(Row.class, "name"));
+		try {
+			UtilsForReflection.getGetterMethod(Row.class, "missing");
+			Assert.fail("missing getter should throw");
+		} catch (NoSuchMethodException e) {
+			Assert.assertTrue(e.getMessage().contains("missing"));
+		}
+
+		for (int i = 0; i < 3; i++) {
+			Assert.assertNull(UtilsForReflection.getNestedGetterMethod(Row.class, "missing"));
+			UtilsForReflection.setValue(new Row(), "missing", "value");
+		}
+		Assert.assertEquals(6, ReflectionDiagnostics.getDiagnostic(Row.class, "missing", Kind.NO_GETTER).getCount());
+		Assert.assertEquals(3, ReflectionDiagnostics.getDiagnostic(Row.class, "missing", Kind.NO_SETTER).getCount());
+		Assert.assertNull(ReflectionDiagnostics.getDiagnostic(Row.class, "missing", Kind.INVOCATION_FAILED));
+	}
+
+}
@@ -0,0 +1,151 @@
+package org.jarchframework.core.test;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.util.RenderCache;
+import org.jarchframework.core.util.UtilsForObject;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class RenderCacheTest {
+
+	@ToString({ "name", "version" })
+	public static class Item extends BaseObject {
+
+		private String name;
+		private long version;
+
+		public Item(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+			version++;
+		}
+
+		public long getVersion() {
+			return version;
+		}
+	}
+
+	@ToString("code")
+	public static class Tag extends BaseObject {
+
+		public String getCode() {
+			return "t";
+		}
+	}
+
+	public static class Plain extends BaseObject {
+	}
+
+	@Test
+	public void memoizeTest() {
+		RenderCache cache = new RenderCache(100, 1 << 20);
+		Item item = new Item("first");
+		Assert.assertEquals("first", cache.getValueByExpression(item, "[name]"));
+		item.setName("second");
+		Assert.assertEquals("first", cache.getValueByExpression(item, "[name]"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		// identity keys, an equal instance does not share the entry
+		Assert.assertEquals("second", cache.getValueByExpression(new Item("second"), "[name]"));
+
+		cache.invalidate(item);
+		Assert.assertEquals("second", cache.getValueByExpression(item, "[name]"));
+		Assert.assertNull(cache.getValueByExpression(null, "[name]"));
+	}
+
+	@Test
+	public void versionTest() {
+		RenderCache cache = new RenderCache(100, 1 << 20).versioned(Item.class, Item::getVersion);
+		Item item = new Item("first");
+		Assert.assertEquals("first", cache.getValueByExpression(item, "[name]"));
+		Assert.assertEquals("first", cache.getValueByExpression(item, "[name]"));
+		item.setName("second");
+		Assert.assertEquals("second", cache.getValueByExpression(item, "[name]"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(2, cache.getMissCount());
+		Assert.assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void reRenderMemoryTest() {
+		RenderCache cache = new RenderCache(100, 1 << 20).versioned(Item.class, Item::getVersion);
+		Item item = new Item("first");
+		cache.getValueByExpression(item, "[name]");
+		long memory = cache.getMemoryUsage();
+		for (String name : new String[] { "third", "fifth", "sixth" }) {
+			item.setName(name);
+			Assert.assertEquals(name, cache.getValueByExpression(item, "[name]"));
+			Assert.assertEquals(memory, cache.getMemoryUsage());
+		}
+		cache.invalidate(item);
+		Assert.assertEquals(0, cache.getMemoryUsage());
+		Assert.assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void evictionTest() {
+		RenderCache cache = new RenderCache(2, 1 << 20);
+		Item first = new Item("first");
+		Item second = new Item("second");
+		Item third = new Item("third");
+		cache.getValueByExpression(first, "[name]");
+		cache.getValueByExpression(second, "[name]");
+		cache.getValueByExpression(first, "[name]");
+		cache.getValueByExpression(third, "[name]");
+		Assert.assertEquals(2, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+
+		// second is the least recently used one
+		cache.getValueByExpression(first, "[name]");
+		Assert.assertEquals(2, cache.getHitCount());
+		cache.getValueByExpression(second, "[name]");
+		Assert.assertEquals(2, cache.getHitCount());
+
+		RenderCache small = new RenderCache(100, 200);
+		small.getValueByExpression(first, "[name]");
+		small.getValueByExpression(second, "[name]");
+		small.getValueByExpression(third, "[name]");
+		Assert.assertTrue(small.getMemoryUsage() <= 200);
+		Assert.assertTrue(small.getEvictionCount() > 0);
+	}
+
+	@Test
+	public void toStringTest() {
+		RenderCache cache = new RenderCache(100, 1 << 20).versioned(Item.class, Item::getVersion);
+		UtilsForObject.setRenderCache(cache);
+		try {
+			Item item = new Item("first");
+			String rendered = item.toString();
+			Assert.assertSame(rendered, item.toString());
+			item.setName("second");
+			Assert.assertTrue(item.toString().contains("second"));
+			Assert.assertEquals(1, cache.getHitCount());
+			Assert.assertEquals(2, cache.getMissCount());
+
+			// the version function applies to its class only
+			Assert.assertEquals("RenderCacheTest.Tag[code=t]", new Tag().toString());
+			// default values are not cached
+			Plain plain = new Plain();
+			Assert.assertEquals("first", UtilsForObject.toString(plain, "first"));
+			Assert.assertEquals("other", UtilsForObject.toString(plain, "other"));
+		} finally {
+			UtilsForObject.setRenderCache(null);
+		}
+	}
+
+}
@@ -0,0 +1,413 @@
+package org.jarchframework.core.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.util.MetadataSnapshot;
+import org.jarchframework.core.util.UtilsForCollections;
+import org.jarchframework.core.util.UtilsForReflection;
+import org.junit.Assume;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ * Throughput of {@link BaseObject} operations from 1 to N threads over many
+ * distinct classes, to reveal contention in the static caches. Skipped unless
+ * run with {@code -Pscalability} or {@code -Djarch.scalability=true}.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>{@code jarch.scalability.threads}: max threads, defaults to available
+ * processors</li>
+ * <li>{@code jarch.scalability.millis}: measurement time of each step,
+ * defaults to 1000</li>
+ * <li>{@code jarch.scalability.minEfficiency}: min ratio of the throughput on
+ * max threads to the single thread throughput times the threads, defaults to
+ * 0.5</li>
+ * <li>{@code jarch.scalability.rounds}: fresh loads of the entity classes
+ * measured for the metadata snapshot, defaults to 200</li>
+ * </ul>
+ * The array conversions of {@link UtilsForCollections} are measured against
+ * the stream based code they replaced on a single thread in the same run.
+ * The first use of freshly loaded entity classes, as after a restart, is
+ * measured with and without an installed {@link MetadataSnapshot}.
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class ScalabilityTest {
+
+	public static class Owner extends BaseObject {
+
+		private final String name;
+
+		public Owner(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	@Identity({ "id", "code" })
+	@ToString({ "id", "code", "owner.name" })
+	public abstract static class Entity extends BaseObject {
+
+		private final long id;
+		private final String code;
+		private final Owner owner;
+
+		protected Entity(long id) {
+			this.id = id;
+			this.code = "code-" + id;
+			this.owner = new Owner("owner-" + id % 10);
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public Owner getOwner() {
+			return owner;
+		}
+	}
+
+	public static class Entity0 extends Entity {
+		public Entity0(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity1 extends Entity {
+		public Entity1(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity2 extends Entity {
+		public Entity2(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity3 extends Entity {
+		public Entity3(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity4 extends Entity {
+		public Entity4(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity5 extends Entity {
+		public Entity5(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity6 extends Entity {
+		public Entity6(long id) {
+			super(id);
+		}
+	}
+
+	public static class Entity7 extends Entity {
+		public Entity7(long id) {
+			super(id);
+		}
+	}
+
+	private static final int OBJECTS = 1024;
+
+	private static volatile int sink;
+
+	private static Entity[] entities() {
+		Entity[] entities = new Entity[OBJECTS];
+		for (int i = 0; i < OBJECTS; i++) {
+			switch (i % 8) {
+			case 0:
+				entities[i] = new Entity0(i);
+				break;
+			case 1:
+				entities[i] = new Entity1(i);
+				break;
+			case 2:
+				entities[i] = new Entity2(i);
+				break;
+			case 3:
+				entities[i] = new Entity3(i);
+				break;
+			case 4:
+				entities[i] = new Entity4(i);
+				break;
+			case 5:
+				entities[i] = new Entity5(i);
+				break;
+			case 6:
+				entities[i] = new Entity6(i);
+				break;
+			default:
+				entities[i] = new Entity7(i);
+			}
+		}
+		return entities;
+	}
+
+	private static Map<String, ToIntFunction<Entity>> operations(Entity[] entities) {
+		Map<String, ToIntFunction<Entity>> operations = new LinkedHashMap<>();
+		operations.put("equals", entity -> entity.equals(entities[(int) (entity.getId() + 8) % OBJECTS]) ? 1 : 0);
+		operations.put("hashCode", Entity::hashCode);
+		operations.put("toString", entity -> entity.toString().length());
+		operations.put("getValue", entity -> UtilsForReflection.getValue(entity, "owner.name").hashCode());
+		return operations;
+	}
+
+	@Test
+	public void scalabilityTest() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("jarch.scalability"));
+		int maxThreads = Integer.getInteger("jarch.scalability.threads", Runtime.getRuntime().availableProcessors());
+		long millis = Long.getLong("jarch.scalability.millis", 1000);
+		double minEfficiency = Double.parseDouble(System.getProperty("jarch.scalability.minEfficiency", "0.5"));
+
+		Entity[] entities = entities();
+		List<String> failures = new ArrayList<>();
+		ExecutorService executor = Executors.newFixedThreadPool(maxThreads);
+		try {
+			for (Map.Entry<String, ToIntFunction<Entity>> operation : operations(entities).entrySet()) {
+				// warm up the caches and the compiler
+				measure(executor, 1, millis, entities, operation.getValue());
+				double single = measure(executor, 1, millis, entities, operation.getValue());
+				double efficiency = 1;
+				for (int threads = 1; threads <= maxThreads; threads = next(threads, maxThreads)) {
+					double throughput = threads == 1 ? single
+							: measure(executor, threads, millis, entities, operation.getValue());
+					efficiency = throughput / (single * threads);
+					System.out.println(String.format(
+							"%-10s threads: %3d ops/sec: %,15.0f speedup: %6.2f efficiency: %.2f", operation.getKey(),
+							threads, throughput, throughput / single, efficiency));
+				}
+				if (maxThreads > 1 && efficiency < minEfficiency) {
+					failures.add(String.format("%s efficiency %.2f on %d threads", operation.getKey(), efficiency,
+							maxThreads));
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		Assert.assertTrue("Does not scale: " + failures, failures.isEmpty());
+	}
+
+	/**
+	 * Defines the nested classes of this test again, so that their metadata
+	 * is not cached yet
+	 */
+	private static final class FreshLoader extends ClassLoader {
+
+		private FreshLoader() {
+			super(ScalabilityTest.class.getClassLoader());
+		}
+
+		@Override
+		protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+			if (!name.startsWith(ScalabilityTest.class.getName() + "$")) {
+				return super.loadClass(name, resolve);
+			}
+			synchronized (getClassLoadingLock(name)) {
+				Class<?> loaded = findLoadedClass(name);
+				if (loaded == null) {
+					byte[] bytes = bytesOf(name);
+					loaded = defineClass(name, bytes, 0, bytes.length);
+				}
+				return loaded;
+			}
+		}
+
+		private byte[] bytesOf(String name) throws ClassNotFoundException {
+			try (InputStream in = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream();
+				byte[] buffer = new byte[4096];
+				for (int read = in.read(buffer); read != -1; read = in.read(buffer)) {
+					out.write(buffer, 0, read);
+				}
+				return out.toByteArray();
+			} catch (IOException e) {
+				throw new ClassNotFoundException(name, e);
+			}
+		}
+	}
+
+	@Test
+	public void metadataSnapshotBenchmark() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("jarch.scalability"));
+		int rounds = Integer.getInteger("jarch.scalability.rounds", 200);
+		List<Class<?>> types = new ArrayList<>();
+		for (Entity entity : Arrays.copyOf(entities(), 8)) {
+			firstUse(entity);
+			types.add(entity.getClass());
+		}
+		// saved and loaded as on a restart
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		MetadataSnapshot.capture(types).save(out, "benchmark");
+		MetadataSnapshot snapshot = MetadataSnapshot.load(new ByteArrayInputStream(out.toByteArray()), "benchmark");
+
+		// warm up the compiler
+		coldStart(types, rounds, null);
+		coldStart(types, rounds, snapshot);
+		double without = coldStart(types, rounds, null);
+		double with = coldStart(types, rounds, snapshot);
+		System.out.println(String.format("first use of %d classes without snapshot: %8.1f us with snapshot: %8.1f us"
+				+ " speedup: %6.2f", types.size(), without, with, without / with));
+		Assert.assertEquals(0, snapshot.getRejectedCount());
+	}
+
+	private static int firstUse(Object entity) {
+		return entity.toString().length() + entity.hashCode()
+				+ UtilsForReflection.getValue(entity, "owner.name").hashCode();
+	}
+
+	/**
+	 * @return average microseconds to load and first use given classes once
+	 */
+	private static double coldStart(List<Class<?>> types, int rounds, MetadataSnapshot snapshot) throws Exception {
+		MetadataSnapshot.install(snapshot);
+		try {
+			long begin = System.nanoTime();
+			int result = 0;
+			for (int i = 0; i < rounds; i++) {
+				ClassLoader loader = new FreshLoader();
+				for (Class<?> type : types) {
+					Object entity = loader.loadClass(type.getName()).getConstructor(long.class).newInstance(i);
+					result += firstUse(entity);
+				}
+			}
+			sink += result;
+			return (System.nanoTime() - begin) / 1e3 / rounds;
+		} finally {
+			MetadataSnapshot.install(null);
+		}
+	}
+
+	@Test
+	public void collectionsBenchmark() {
+		Assume.assumeTrue(Boolean.getBoolean("jarch.scalability"));
+		long millis = Long.getLong("jarch.scalability.millis", 1000);
+		int[] primitives = new int[1 << 20];
+		Integer[] boxed = new Integer[primitives.length];
+		for (int i = 0; i < primitives.length; i++) {
+			primitives[i] = i * 31 % primitives.length;
+			boxed[i] = primitives[i];
+		}
+
+		compare("toList(int[])", millis, () -> Arrays.stream(primitives).boxed().collect(Collectors.toList()),
+				() -> UtilsForCollections.toList(primitives));
+		compare("toList(T[])", millis, () -> Arrays.stream(boxed).collect(Collectors.toList()),
+				() -> UtilsForCollections.toList(boxed));
+		compare("asUnmodifiableList", millis, () -> Arrays.stream(boxed).collect(Collectors.toList()),
+				() -> UtilsForCollections.asUnmodifiableList(boxed));
+		compare("toSet(int[])", millis, () -> Arrays.stream(primitives).boxed().collect(Collectors.toSet()),
+				() -> UtilsForCollections.toSet(primitives));
+		compare("toSet(T[])", millis, () -> Arrays.stream(boxed).collect(Collectors.toSet()),
+				() -> UtilsForCollections.toSet(boxed));
+		compare("toSet(T[], threshold)", millis, () -> Arrays.stream(boxed).collect(Collectors.toSet()),
+				() -> UtilsForCollections.toSet(boxed, UtilsForCollections.DEFAULT_PARALLEL_THRESHOLD));
+		compare("toSetByPreserveOrder", millis,
+				() -> Arrays.stream(boxed).collect(Collectors.toCollection(LinkedHashSet::new)),
+				() -> UtilsForCollections.toSetByPreserveOrder(boxed));
+	}
+
+	private static void compare(String name, long millis, Supplier<Collection<?>> stream,
+			Supplier<Collection<?>> current) {
+		// warm up the compiler
+		measure(millis, stream);
+		measure(millis, current);
+		double before = measure(millis, stream);
+		double after = measure(millis, current);
+		System.out.println(String.format("%-22s stream ops/sec: %,12.1f current ops/sec: %,14.1f speedup: %6.2f", name,
+				before, after, after / before));
+	}
+
+	/**
+	 * @return conversions per second on the current thread
+	 */
+	private static double measure(long millis, Supplier<Collection<?>> conversion) {
+		long begin = System.nanoTime();
+		long deadline = begin + millis * 1000000;
+		long count = 0;
+		int result = 0;
+		while (System.nanoTime() < deadline) {
+			result += conversion.get().size();
+			count++;
+		}
+		sink += result;
+		return count / ((System.nanoTime() - begin) / 1e9);
+	}
+
+	/**
+	 * @return 1, 2, 4 ... doubling up to max threads, which is always included
+	 */
+	private static int next(int threads, int maxThreads) {
+		return threads == maxThreads ? maxThreads + 1 : Math.min(threads * 2, maxThreads);
+	}
+
+	/**
+	 * @return total operations per second of given threads
+	 */
+	private static double measure(ExecutorService executor, int threads, long millis, Entity[] entities,
+			ToIntFunction<Entity> operation) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Long>> counts = new ArrayList<>(threads);
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * (OBJECTS / threads);
+			counts.add(executor.submit(() -> {
+				start.await();
+				long deadline = System.nanoTime() + millis * 1000000;
+				long count = 0;
+				int result = 0;
+				while (System.nanoTime() < deadline) {
+					for (int i = 0; i < 64; i++) {
+						result += operation.applyAsInt(entities[(offset + (int) (count + i)) % OBJECTS]);
+					}
+					count += 64;
+				}
+				sink += result;
+				return count;
+			}));
+		}
+		long begin = System.nanoTime();
+		start.countDown();
+		long total = 0;
+		for (Future<Long> count : counts) {
+			total += count.get();
+		}
+		return total / ((System.nanoTime() - begin) / 1e9);
+	}
+
+}
@@ -1,6 +1,10 @@
 package org.jarchframework.core.test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.jarchframework.core.util.UtilsForCollections;
 import org.junit.Test;
@@ -71,4 +75,62 @@ public class UtilsForCollectionsTest {
 
 	}
 
+	@Test
+	public void objectArrayToSetTest() {
+
+		Integer[] array = new Integer[] { 3, 1, 3, 2 };
+
+		Assert.assertEquals(Arrays.asList(3, 1, 2), new ArrayList<>(UtilsForCollections.toSetByPreserveOrder(array)));
+		Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), UtilsForCollections.toSet(array));
+		Assert.assertEquals(new HashSet<>(Arrays.asList(1, 2, 3)), UtilsForCollections.toSet(array, 2));
+
+		List<Integer> view = UtilsForCollections.asUnmodifiableList(array);
+		array[0] = 4;
+		Assert.assertEquals(4, view.get(0).intValue());
+		try {
+			view.set(0, 5);
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void joinToTest() {
+		List<Object> list = Arrays.asList("a", 1, null);
+		Assert.assertEquals("a, 1, null", UtilsForCollections.joinTo(new StringBuilder(), list, ", ").toString());
+		Assert.assertEquals("1-2",
+				UtilsForCollections.joinTo(new StringBuilder(), new Integer[] { 1, 2 }, "-").toString());
+		Assert.assertEquals("a, 1...",
+				UtilsForCollections.joinTo(new StringBuilder(), list.iterator(), ", ", 4).toString());
+	}
+
+	@Test
+	public void toStringByPropertyTest() {
+		ConcurrentLinkedQueue<String> queue = new ConcurrentLinkedQueue<>(Arrays.asList("ab", "c", "def"));
+		Assert.assertEquals("[2, 1, ...]", UtilsForCollections.toStringByProperty(queue, "length", 2));
+		Assert.assertEquals("[ab, c, def]", UtilsForCollections.toStringByProperty(queue, null));
+		Assert.assertEquals("[ab, c, def]",
+				UtilsForCollections.toStringByPropertyTo(new StringBuilder(), queue, null, 5).toString());
+		Assert.assertEquals("[ab, ...", UtilsForCollections
+				.toStringByPropertyTo(new StringBuilder(), queue.iterator(), null, 5, 5).toString());
+	}
+
+	@Test
+	public void toStringByPropertyLimitTest() {
+		List<String> list = Arrays.asList("ab", "c");
+		Assert.assertEquals("[, ...]", UtilsForCollections.toStringByProperty(list, null, 0));
+		Assert.assertEquals("[]", UtilsForCollections.toStringByProperty(new ArrayList<String>(), null, 0));
+		try {
+			UtilsForCollections.toStringByProperty(list, null, -1);
+			Assert.fail("negative limit should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertEquals("[...]",
+				UtilsForCollections.toStringByPropertyTo(new StringBuilder(), list, null, 0).toString());
+		Assert.assertEquals("[ab, c]",
+				UtilsForCollections.toStringByPropertyTo(new StringBuilder(), list, null, -1).toString());
+	}
+
 }
@@ -0,0 +1,420 @@
+package org.jarchframework.core.test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.jarchframework.core.model.BaseObject;
+import org.jarchframework.core.model.Change.Kind;
+import org.jarchframework.core.model.ChangeSet;
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.Snapshot;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.util.AccessStrategy;
+import org.jarchframework.core.util.Hash64;
+import org.jarchframework.core.util.PropertyAccessor;
+import org.jarchframework.core.util.UtilsForObject;
+import org.jarchframework.core.util.WarmUpReport;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class UtilsForObjectTest {
+
+	public static class Group extends BaseObject {
+
+		private String name;
+
+		public Group(String name) {
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+	}
+
+	@Identity("id")
+	@ToString({ "id", "name", "group.name" })
+	public static class User extends BaseObject {
+
+		private long id;
+		private String name;
+		private Group group;
+
+		public User(long id, String name, Group group) {
+			this.id = id;
+			this.name = name;
+			this.group = group;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public Group getGroup() {
+			return group;
+		}
+	}
+
+	@Identity("no")
+	public static class Line extends BaseObject {
+
+		private int no;
+		private double amount;
+
+		public Line(int no, double amount) {
+			this.no = no;
+			this.amount = amount;
+		}
+
+		public int getNo() {
+			return no;
+		}
+
+		public double getAmount() {
+			return amount;
+		}
+	}
+
+	@Identity("id")
+	@ToString("status")
+	public static class Order extends BaseObject {
+
+		private long id;
+		private String status;
+		private User owner;
+		private List<Line> lines = new ArrayList<>();
+
+		public Order(long id, String status, User owner) {
+			this.id = id;
+			this.status = status;
+			this.owner = owner;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public String getStatus() {
+			return status;
+		}
+
+		public void setStatus(String status) {
+			this.status = status;
+		}
+
+		public User getOwner() {
+			return owner;
+		}
+
+		public List<Line> getLines() {
+			return lines;
+		}
+	}
+
+	@Identity({ "id", "version", "active", "ratio", "code" })
+	public static class Key extends BaseObject {
+
+		private long id;
+		private int version;
+		private boolean active;
+		private double ratio;
+		private String code;
+
+		public Key(long id, int version, boolean active, double ratio, String code) {
+			this.id = id;
+			this.version = version;
+			this.active = active;
+			this.ratio = ratio;
+			this.code = code;
+		}
+
+		public long getId() {
+			return id;
+		}
+
+		public int getVersion() {
+			return version;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public double getRatio() {
+			return ratio;
+		}
+
+		public String getCode() {
+			return code;
+		}
+	}
+
+	@ToString({ "name", "missing" })
+	public static class Broken extends BaseObject {
+
+		public String getName() {
+			return "broken";
+		}
+	}
+
+	@Test
+	public void identityTest() {
+		User user = new User(1, "john", new Group("admin"));
+		Assert.assertEquals(user, new User(1, "jane", null));
+		Assert.assertFalse(user.equals(new User(2, "john", null)));
+		Assert.assertEquals(user.hashCode(), new User(1, "jane", null).hashCode());
+		Assert.assertEquals(1L, UtilsForObject.getIdentityValues(user)[0]);
+	}
+
+	@Test
+	public void toStringTest() {
+		User user = new User(1, "john", new Group("admin"));
+		Assert.assertEquals("UtilsForObjectTest.User[id=1,name=john,group.name=admin]", user.toString());
+		Assert.assertEquals("UtilsForObjectTest.User[id=1,name=john,group.name=<null>]",
+				new User(1, "john", null).toString());
+	}
+
+	@Test
+	public void warmUpTest() throws Exception {
+		WarmUpReport report = UtilsForObject.warmUp(getClass().getPackage().getName());
+		Assert.assertTrue(report.getClasses().contains(User.class));
+		Assert.assertFalse(report.isSuccessful());
+
+		List<String> paths = report.getUnresolvedPaths().get(Broken.class);
+		Assert.assertEquals(1, paths.size());
+		Assert.assertEquals("missing", paths.get(0));
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			report = UtilsForObject.warmUp(getClass().getPackage().getName(), executor).get();
+			Assert.assertTrue(report.getClasses().contains(User.class));
+			Assert.assertTrue(report.getUnresolvedPaths().containsKey(Broken.class));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void diffTest() {
+		Order before = new Order(1, "new", new User(1, "john", new Group("admin")));
+		before.getLines().add(new Line(1, 10));
+		before.getLines().add(new Line(2, 20));
+
+		Order after = new Order(1, "paid", new User(1, "john", new Group("users")));
+		after.getLines().add(new Line(2, 25));
+		after.getLines().add(new Line(3, 30));
+
+		ChangeSet changes = UtilsForObject.diff(before, after);
+		Assert.assertEquals(5, changes.size());
+		Assert.assertEquals("paid", changes.getChange("status").getNewValue());
+		Assert.assertEquals("users", changes.getChange("owner.group.name").getNewValue());
+		Assert.assertEquals(25.0, changes.getChange("lines[2].amount").getNewValue());
+		Assert.assertEquals(Kind.ADDED, changes.getChange("lines[3]").getKind());
+		Assert.assertEquals(Kind.REMOVED, changes.getChange("lines[1]").getKind());
+
+		Assert.assertEquals(1, UtilsForObject.diff(before, after, "status", "id").size());
+		Assert.assertTrue(UtilsForObject.diff(before, before).isEmpty());
+
+		Order other = new Order(1, "new", new User(2, "jane", null));
+		Assert.assertEquals(Kind.MODIFIED, UtilsForObject.diff(before, other, "owner").getChange("owner").getKind());
+	}
+
+	@Test
+	public void snapshotTest() {
+		Order order = new Order(1, "new", null);
+		Snapshot snapshot = UtilsForObject.snapshot(order);
+		Assert.assertEquals(Arrays.asList("id", "status"), snapshot.getPaths());
+		Assert.assertFalse(snapshot.isDirty(order));
+
+		order.setStatus("paid");
+		ChangeSet changes = UtilsForObject.diff(snapshot, order);
+		Assert.assertEquals(1, changes.size());
+		Assert.assertEquals("new", changes.getChange("status").getOldValue());
+
+		try {
+			UtilsForObject.diff(snapshot, new User(1, "new", null));
+			Assert.fail("snapshot of another class should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void copyAllTest() {
+		Group group = new Group("admin");
+		List<User> users = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			users.add(new User(i, "user" + i, group));
+		}
+		users.add(users.get(0));
+
+		List<User> copies = UtilsForObject.copyAll(users, 4);
+		Assert.assertEquals(users, copies);
+		Assert.assertNotSame(users.get(1), copies.get(1));
+		Assert.assertSame(copies.get(0), copies.get(10));
+		Assert.assertNotSame(group, copies.get(0).getGroup());
+		// shared within a chunk, immutable leaves are not copied
+		Assert.assertSame(copies.get(0).getGroup(), copies.get(3).getGroup());
+		// but not across chunks, unlike copyObject on the whole list
+		Assert.assertNotSame(copies.get(0).getGroup(), copies.get(4).getGroup());
+		@SuppressWarnings("unchecked")
+		List<User> graph = (List<User>) UtilsForObject.copyObject(users);
+		Assert.assertSame(graph.get(0).getGroup(), graph.get(4).getGroup());
+		Assert.assertSame(users.get(1).getName(), copies.get(1).getName());
+
+		User[] array = UtilsForObject.copyAll(new User[] { users.get(1) });
+		Assert.assertEquals("user1", array[0].getName());
+	}
+
+	@Test
+	public void primitiveIdentityTest() {
+		Key key = new Key(-5000000000L, -3, true, 0.5, "a");
+		int expected = new HashCodeBuilder().append(Long.valueOf(-5000000000L)).append(Integer.valueOf(-3))
+				.append(Boolean.TRUE).append(Double.valueOf(0.5)).append("a").toHashCode();
+		Assert.assertEquals(expected, key.hashCode());
+
+		Assert.assertEquals(key, new Key(-5000000000L, -3, true, 0.5, "a"));
+		Assert.assertFalse(key.equals(new Key(-5000000000L, -3, false, 0.5, "a")));
+		Assert.assertFalse(key.equals(new Key(-5000000000L, -3, true, -0.5, "a")));
+		Assert.assertTrue(UtilsForObject.compareTo(key, new Key(-5000000000L, -2, false, 0, "a")) < 0);
+		Assert.assertTrue(UtilsForObject.compareTo(key, new Key(-5000000000L, -3, true, 0.5, "0")) > 0);
+
+		long hash64 = UtilsForObject.hashCode64(key);
+		Assert.assertEquals(hash64, UtilsForObject.hashCode64(new Key(-5000000000L, -3, true, 0.5, "a")));
+		Assert.assertFalse(hash64 == UtilsForObject.hashCode64(new Key(-5000000000L, -3, true, 0.5, "b")));
+		Assert.assertFalse(hash64 == UtilsForObject.hashCode64(key, new Hash64() {
+
+			@Override
+			public long start() {
+				return 0;
+			}
+
+			@Override
+			public long mix(long hash, long value) {
+				return hash * 31 + value;
+			}
+
+			@Override
+			public long finish(long hash, int count) {
+				return hash;
+			}
+		}));
+	}
+
+	@Identity("value")
+	public static class Token extends BaseObject {
+
+		private Object value;
+
+		public Token(Object value) {
+			this.value = value;
+		}
+
+		public Object getValue() {
+			return value;
+		}
+	}
+
+	@Test
+	public void fullStateHashTest() {
+		// pairs with equal 32-bit hash codes
+		Object[][] pairs = { { new UUID(1, 1), new UUID(2, 2) }, { new Date(0), new Date(0x100000001L) },
+				{ new BigDecimal("0.1"), BigDecimal.valueOf(0, 32) },
+				{ BigInteger.ONE.shiftLeft(96), BigInteger.valueOf(31).shiftLeft(64) } };
+		for (Object[] pair : pairs) {
+			Assert.assertEquals(pair[0].getClass().getSimpleName(), pair[0].hashCode(), pair[1].hashCode());
+			Assert.assertFalse(pair[0].toString(),
+					UtilsForObject.hashCode64(new Token(pair[0])) == UtilsForObject.hashCode64(new Token(pair[1])));
+		}
+		Assert.assertEquals(UtilsForObject.hashCode64(new Token(new UUID(7, 9))),
+				UtilsForObject.hashCode64(new Token(new UUID(7, 9))));
+		Assert.assertEquals(UtilsForObject.hashCode64(new Token(new BigDecimal("12.50"))),
+				UtilsForObject.hashCode64(new Token(new BigDecimal("12.50"))));
+	}
+
+	@Test
+	public void asMapTest() {
+		Group group = new Group("admin");
+		User user = new User(1, "john", group);
+		Map<String, Object> map = UtilsForObject.asMap(user);
+		Assert.assertEquals(3, map.size());
+		Assert.assertEquals(1L, map.get("id"));
+		Assert.assertSame(group, map.get("group"));
+		Assert.assertTrue(map.containsKey("name"));
+		Assert.assertNull(map.get("missing"));
+
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("id", 2L);
+		expected.put("name", "jane");
+		expected.put("group", null);
+		Assert.assertEquals(expected, UtilsForObject.asMap(new User(2, "jane", null)));
+		Assert.assertEquals(expected.hashCode(), UtilsForObject.asMap(new User(2, "jane", null)).hashCode());
+		Assert.assertTrue(UtilsForObject.asMap(null).isEmpty());
+		try {
+			map.put("name", "jane");
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			// read-only view
+		}
+	}
+
+	public static class Label extends BaseObject {
+
+		private String text;
+
+		public Label(String text) {
+			this.text = text;
+		}
+
+		public String getText() {
+			return text.toUpperCase();
+		}
+	}
+
+	@Test
+	public void asMapStrategyTest() {
+		Label label = new Label("draft");
+		Assert.assertEquals("DRAFT", UtilsForObject.asMap(label).get("text"));
+		try {
+			PropertyAccessor.setAccessStrategy(Label.class, AccessStrategy.FIELD_FIRST);
+			Assert.assertEquals("draft", UtilsForObject.asMap(label).get("text"));
+		} finally {
+			PropertyAccessor.setAccessStrategy(Label.class, null);
+		}
+		Assert.assertEquals("DRAFT", UtilsForObject.asMap(label).get("text"));
+	}
+
+	@Test
+	public void flattenTest() {
+		List<User> users = Arrays.asList(new User(1, "john", new Group("admin")), null, new User(2, "jane", null));
+		List<Map<String, Object>> rows = UtilsForObject.flatten(users, "id", "group.name", "[name] - [id]");
+		Assert.assertEquals(3, rows.size());
+		Assert.assertEquals(Arrays.asList("id", "group.name", "[name] - [id]"),
+				new ArrayList<>(rows.get(0).keySet()));
+		Assert.assertEquals(Arrays.asList(1L, "admin", "john - 1"), new ArrayList<>(rows.get(0).values()));
+		Assert.assertEquals(Arrays.asList(null, null, null), new ArrayList<>(rows.get(1).values()));
+		Assert.assertEquals("jane - 2", rows.get(2).get("[name] - [id]"));
+		Assert.assertNull(rows.get(2).get("group.name"));
+	}
+
+}
@@ -0,0 +1,72 @@
+package org.jarchframework.core.test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.util.ScanResult;
+import org.jarchframework.core.util.UtilsForPackageScan;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class UtilsForPackageScanTest {
+
+	private static final String PACKAGE = UtilsForPackageScanTest.class.getPackage().getName();
+
+	@Test
+	public void asyncScanTest() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ScanResult result = UtilsForPackageScan
+					.getAnnotatedClassesAsync(PACKAGE, executor, Identity.class, ToString.class)
+					.get(10, TimeUnit.SECONDS);
+			Assert.assertFalse(result.toString(), result.hasFailures());
+			Assert.assertEquals(UtilsForPackageScan.getAnnotatedClasses(PACKAGE, Identity.class),
+					result.getAnnotatedClasses(Identity.class));
+			Assert.assertEquals(UtilsForPackageScan.getAnnotatedClasses(PACKAGE, ToString.class),
+					result.getAnnotatedClasses(ToString.class));
+			Assert.assertTrue(result.getAnnotatedClasses().size() >= result.getAnnotatedClasses(Identity.class).size());
+			Assert.assertTrue(result.getScannedCount() > result.getAnnotatedClasses().size());
+			// not grouped by annotation, the union keeps the scan order
+			ScanResult swapped = UtilsForPackageScan.scan(PACKAGE, Thread.currentThread().getContextClassLoader(),
+					ToString.class, Identity.class);
+			Assert.assertEquals(new ArrayList<>(result.getAnnotatedClasses()),
+					new ArrayList<>(swapped.getAnnotatedClasses()));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void failureTest() throws Exception {
+		Path root = Files.createTempDirectory("classes");
+		Files.createDirectories(root.resolve("broken"));
+		Files.write(root.resolve("broken").resolve("Broken.class"), new byte[] { 1, 2, 3 });
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { root.toUri().toURL() }, null)) {
+			ScanResult result = UtilsForPackageScan.scan("broken", classLoader, Identity.class);
+			Assert.assertEquals(1, result.getScannedCount());
+			Assert.assertTrue(result.getAnnotatedClasses(Identity.class).isEmpty());
+			Assert.assertTrue(result.getFailures().get("broken.Broken") instanceof ClassFormatError);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void notScannedTest() {
+		UtilsForPackageScan.scan(PACKAGE, getClass().getClassLoader(), Identity.class)
+				.getAnnotatedClasses(ToString.class);
+	}
+
+}
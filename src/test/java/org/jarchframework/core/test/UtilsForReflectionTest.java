@@ -0,0 +1,280 @@
+package org.jarchframework.core.test;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.jarchframework.core.model.Identity;
+import org.jarchframework.core.model.ToString;
+import org.jarchframework.core.util.AccessStrategy;
+import org.jarchframework.core.util.ClassDescriptor;
+import org.jarchframework.core.util.PropertyAccessor;
+import org.jarchframework.core.util.TypeDescriptor;
+import org.jarchframework.core.util.UtilsForReflection;
+import org.junit.Test;
+
+import junit.framework.Assert;
+
+/**
+ *
+ * @author Yavuz S.Tas
+ *
+ */
+public class UtilsForReflectionTest {
+
+	@ToString("name")
+	public interface Named {
+	}
+
+	public static class Person implements Named {
+
+		private String name;
+		private boolean active;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+	}
+
+	public static class Employee extends Person {
+
+		private String title;
+
+		@Override
+		public String getName() {
+			return "Employee " + super.getName();
+		}
+
+		public String getTitle() {
+			return title;
+		}
+
+		public String getTitle(String prefix) {
+			return prefix + title;
+		}
+	}
+
+	@Identity("name")
+	public static class Manager extends Employee {
+	}
+
+	public static class Department {
+
+		private List<Employee> employees;
+
+		public Department(Employee... employees) {
+			this.employees = Arrays.asList(employees);
+		}
+
+		public List<Employee> getEmployees() {
+			return employees;
+		}
+	}
+
+	public static class Company {
+
+		private List<Department> departments;
+
+		public Company(Department... departments) {
+			this.departments = Arrays.asList(departments);
+		}
+
+		public List<Department> getDepartments() {
+			return departments;
+		}
+	}
+
+	public static class BaseEntity<ID> {
+
+		public ID getId() {
+			return null;
+		}
+
+		public List<ID> getIds() {
+			return null;
+		}
+
+		public Map<String, ? extends List<ID>> getIdsByName() {
+			return null;
+		}
+	}
+
+	public static class Account extends BaseEntity<Long> {
+
+		public List<Department> getDepartments() {
+			return null;
+		}
+	}
+
+	public static class Point {
+
+		public int x;
+		private String label;
+
+		public Point(int x, String label) {
+			this.x = x;
+			this.label = label;
+		}
+	}
+
+	public static class Line {
+
+		public Point from;
+		private long length;
+
+		public Line(Point from, long length) {
+			this.from = from;
+			this.length = length;
+		}
+
+		public long getLength() {
+			return length * 10;
+		}
+	}
+
+	public static class Payment {
+
+		public LocalDate date = LocalDate.of(2020, 5, 17);
+		public BigDecimal amount = new BigDecimal("12.50");
+	}
+
+	private static Employee employee(String name, String title) {
+		Employee employee = new Employee();
+		employee.setName(name);
+		employee.title = title;
+		return employee;
+	}
+
+	@Test
+	public void classDescriptorTest() {
+		ClassDescriptor descriptor = ClassDescriptor.forClass(Employee.class);
+		Assert.assertSame(descriptor, ClassDescriptor.forClass(Employee.class));
+
+		Assert.assertEquals(new HashSet<>(Arrays.asList("name", "title", "active")),
+				new HashSet<>(descriptor.getPropertyNames()));
+		Assert.assertEquals(Employee.class, descriptor.getProperty("name").getGetter().getDeclaringClass());
+		Assert.assertEquals(Person.class, descriptor.getProperty("name").getSetter().getDeclaringClass());
+		Assert.assertEquals("name", descriptor.getProperty("name").getField().getName());
+		Assert.assertNull(descriptor.getProperty("title").getSetter());
+		Assert.assertNull(descriptor.getProperty("class"));
+	}
+
+	@Test
+	public void fieldNamesTest() {
+		List<String> names = UtilsForReflection.getFieldNamesByGetterMethod(Employee.class);
+		Assert.assertEquals(3, names.size());
+		Assert.assertEquals(3, UtilsForReflection.getGetterMethods(Employee.class).size());
+		Assert.assertEquals(Arrays.asList("title", "name", "active"),
+				Arrays.asList(UtilsForReflection.getFieldNames(Employee.class).toArray()));
+		Assert.assertEquals(3, UtilsForReflection.getAllFields(Employee.class).size());
+	}
+
+	@Test
+	public void streamValuesTest() {
+		Company company = new Company(new Department(employee("a", "dev"), employee("b", "ops")),
+				new Department(employee("c", "dev"), employee("d", null)));
+
+		List<Object> titles = UtilsForReflection.streamValues(company, "departments.employees.title")
+				.collect(Collectors.toList());
+		Assert.assertEquals(Arrays.asList("dev", "ops", "dev"), titles);
+
+		Assert.assertEquals(2,
+				UtilsForReflection.streamValues(company, "departments.employees.title", true, true).count());
+		Assert.assertEquals(0, UtilsForReflection.streamValues(null, "departments").count());
+	}
+
+	@Test
+	public void findAnnotationTest() {
+		ToString toString = UtilsForReflection.findAnnotation(Employee.class, ToString.class);
+		Assert.assertNotNull(toString);
+		Assert.assertSame(toString, UtilsForReflection.findAnnotation(Employee.class, ToString.class));
+		Assert.assertEquals("name", toString.value()[0]);
+
+		Assert.assertNull(UtilsForReflection.findAnnotation(Employee.class, Identity.class));
+		Assert.assertNull(UtilsForReflection.findAnnotation(Employee.class, Identity.class));
+		Assert.assertFalse(UtilsForReflection.isAnnotationDeclaredLocally(ToString.class, Employee.class));
+		Assert.assertTrue(UtilsForReflection.isAnnotationDeclaredLocally(ToString.class, Named.class));
+
+		Map<Class<? extends Annotation>, Annotation> annotations = UtilsForReflection
+				.getMergedAnnotations(Manager.class);
+		// meta-annotations of @Identity come before the annotations of the superclass
+		Assert.assertEquals(Identity.class, annotations.keySet().iterator().next());
+		Assert.assertTrue(annotations.containsKey(Retention.class));
+		Assert.assertSame(toString, annotations.get(ToString.class));
+		Assert.assertSame(annotations, UtilsForReflection.getMergedAnnotations(Manager.class));
+		Assert.assertSame(annotations.get(Identity.class),
+				UtilsForReflection.findAnnotation(Manager.class, Identity.class));
+		Assert.assertTrue(UtilsForReflection.getMergedAnnotations(Object.class).isEmpty());
+	}
+
+	@Test
+	public void propertyTypeTest() {
+		Assert.assertEquals(Long.class, UtilsForReflection.getPropertyType(Account.class, "id").getRawType());
+		Assert.assertEquals(Long.class, UtilsForReflection.getGenericTypeOfProperty(Account.class, "ids"));
+
+		TypeDescriptor idsByName = UtilsForReflection.getPropertyType(Account.class, "idsByName");
+		Assert.assertEquals(Map.class, idsByName.getRawType());
+		Assert.assertEquals("java.util.List<java.lang.Long>", idsByName.getTypeArgument(1).toString());
+		Assert.assertEquals(Long.class, idsByName.as(Map.class).getTypeArgument(1).getTypeArgument(0).getRawType());
+
+		Assert.assertEquals(String.class,
+				UtilsForReflection.getPropertyType(Account.class, "departments.employees.title").getRawType());
+		Assert.assertEquals(Object.class, UtilsForReflection.getPropertyType(BaseEntity.class, "id").getRawType());
+		Assert.assertNull(UtilsForReflection.getPropertyType(Account.class, "missing"));
+		Assert.assertEquals(0, UtilsForReflection.getGenericTypesOfProperty(Account.class, "id").length);
+	}
+
+	@Test
+	public void accessStrategyTest() {
+		Line line = new Line(new Point(3, "start"), 4);
+		Assert.assertNull(UtilsForReflection.getValue(line, "from.x"));
+		try {
+			PropertyAccessor.setAccessStrategy(AccessStrategy.GETTER_THEN_FIELD);
+			Assert.assertEquals(3, UtilsForReflection.getValue(line, "from.x"));
+			Assert.assertEquals("start", UtilsForReflection.getValue(line, "from.label"));
+			Assert.assertEquals(40L, UtilsForReflection.getValue(line, "length"));
+			Assert.assertEquals(int.class, PropertyAccessor.of(Line.class, "from.x").getValueType());
+			Map<String, Point> points = Collections.singletonMap("p", line.from);
+			Assert.assertEquals("start", UtilsForReflection.getValue(points, "p.label"));
+			Assert.assertEquals("3 start", UtilsForReflection.getValueByExpression(line, "[from.x] [from.label]"));
+
+			PropertyAccessor.setAccessStrategy(Line.class, AccessStrategy.FIELD_FIRST);
+			Assert.assertEquals(AccessStrategy.FIELD_FIRST, PropertyAccessor.getAccessStrategy(Line.class));
+			Assert.assertEquals(4L, UtilsForReflection.getValue(line, "length"));
+			Assert.assertEquals("Employee Bob", UtilsForReflection.getValue(employee("Bob", null), "name"));
+
+			PropertyAccessor.setAccessStrategy(Person.class, AccessStrategy.FIELD_FIRST);
+			Assert.assertEquals("Bob", UtilsForReflection.getValue(employee("Bob", null), "name"));
+
+			// private fields of JDK classes are not accessible, their getters are used
+			PropertyAccessor.setAccessStrategy(AccessStrategy.FIELD_FIRST);
+			Assert.assertEquals(2020, UtilsForReflection.getValue(new Payment(), "date.year"));
+			Assert.assertEquals(2, UtilsForReflection.getValue(new Payment(), "amount.scale"));
+		} finally {
+			PropertyAccessor.setAccessStrategy(Line.class, null);
+			PropertyAccessor.setAccessStrategy(Person.class, null);
+			PropertyAccessor.setAccessStrategy(AccessStrategy.GETTER_ONLY);
+		}
+		Assert.assertNull(UtilsForReflection.getValue(line, "from.x"));
+	}
+
+}